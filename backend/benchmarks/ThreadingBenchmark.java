@@ -0,0 +1,97 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a fixed number of requests in flight against a running backend and prints the throughput and the
+ * latencies, once per concurrency level. compare-threading.sh runs it against the platform and the virtual
+ * thread configurations.
+ * <p>
+ * java benchmarks/ThreadingBenchmark.java <base url> <bearer token> <path> <seconds per level> <concurrency>...
+ */
+public class ThreadingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 5) {
+            System.err.println("usage: ThreadingBenchmark <base url> <token> <path> <seconds> <concurrency>...");
+            System.exit(1);
+        }
+        URI uri = URI.create(args[0] + args[2]);
+        String token = args[1];
+        Duration duration = Duration.ofSeconds(Long.parseLong(args[3]));
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+
+        System.out.printf("%-12s %10s %10s %10s %10s %8s%n", "concurrency", "req/s", "p50 ms", "p99 ms", "max ms", "errors");
+        for (int i = 4; i < args.length; i++) {
+            int concurrency = Integer.parseInt(args[i]);
+            // A short warm up at this level, then the measurement
+            run(client, request, concurrency, Duration.ofSeconds(2));
+            Result result = run(client, request, concurrency, duration);
+            System.out.printf("%-12d %10.0f %10.1f %10.1f %10.1f %8d%n", concurrency,
+                    result.requests() / (double) duration.toSeconds(),
+                    result.percentile(0.50), result.percentile(0.99), result.percentile(1.0), result.errors());
+        }
+    }
+
+    private static Result run(HttpClient client, HttpRequest request, int concurrency, Duration duration) {
+        long end = System.nanoTime() + duration.toNanos();
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        AtomicInteger errors = new AtomicInteger();
+
+        CompletableFuture<?>[] clients = new CompletableFuture<?>[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            clients[i] = loop(client, request, end, latencies, errors);
+        }
+        CompletableFuture.allOf(clients).join();
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        return new Result(sorted, errors.get());
+    }
+
+    // One client: sends the next request as soon as the previous one completed, until the end
+    private static CompletableFuture<Void> loop(HttpClient client, HttpRequest request, long end,
+                                                ConcurrentLinkedQueue<Long> latencies, AtomicInteger errors) {
+        if (System.nanoTime() >= end) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long start = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, e) -> {
+                    if (e != null || response.statusCode() != 200) {
+                        errors.incrementAndGet();
+                    } else {
+                        latencies.add(System.nanoTime() - start);
+                    }
+                    return null;
+                })
+                .thenCompose(ignored -> loop(client, request, end, latencies, errors));
+    }
+
+    private record Result(long[] latencies, int errors) {
+
+        int requests() {
+            return latencies.length;
+        }
+
+        double percentile(double p) {
+            if (latencies.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.min(latencies.length - 1, Math.ceil(p * latencies.length) - 1);
+            return latencies[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+}
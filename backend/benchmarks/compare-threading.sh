@@ -0,0 +1,40 @@
+#!/bin/sh
+# Compares the platform thread (default) and the virtual thread (virtual-threads profile) configurations
+# under the same load. Needs Java 21 for the second run, a database on localhost:5332 and a packaged jar:
+#   ./mvnw package -DskipTests -Djib.skip && benchmarks/compare-threading.sh
+# Options through the environment: PATH_UNDER_TEST, SECONDS_PER_LEVEL, CONCURRENCY, PORT
+set -e
+cd "$(dirname "$0")/.."
+
+PORT=${PORT:-8080}
+BASE_URL=http://localhost:$PORT
+PATH_UNDER_TEST=${PATH_UNDER_TEST:-/api/v1/customers?limit=100}
+SECONDS_PER_LEVEL=${SECONDS_PER_LEVEL:-20}
+CONCURRENCY=${CONCURRENCY:-"50 200 1000 2000"}
+JAR=$(ls target/*-SNAPSHOT.jar | head -1)
+
+run() {
+  profiles=$1
+  echo "== ${profiles:-platform threads}"
+  java -jar "$JAR" --server.port="$PORT" --spring.profiles.active="$profiles" --spring.jpa.show-sql=false > "target/benchmark-${profiles:-platform}.log" 2>&1 &
+  app=$!
+  trap 'kill $app 2>/dev/null' EXIT
+  until curl -sf "$BASE_URL/ping" > /dev/null; do
+    kill -0 $app 2> /dev/null || { tail -20 "target/benchmark-${profiles:-platform}.log"; exit 1; }
+    sleep 1
+  done
+
+  email="benchmark-$(date +%s%N)@groovanoscode.com"
+  token=$(curl -s -D - -o /dev/null -H 'Content-Type: application/json' \
+    -d "{\"name\":\"Benchmark\",\"email\":\"$email\",\"password\":\"password\",\"age\":30,\"gender\":\"MALE\"}" \
+    "$BASE_URL/api/v1/customers" | tr -d '\r' | sed -n 's/^[Aa]uthorization: //p')
+
+  # shellcheck disable=SC2086
+  java benchmarks/ThreadingBenchmark.java "$BASE_URL" "$token" "$PATH_UNDER_TEST" "$SECONDS_PER_LEVEL" $CONCURRENCY
+  kill $app
+  wait $app 2>/dev/null || true
+  trap - EXIT
+}
+
+run ""
+run "virtual-threads"
@@ -0,0 +1,92 @@
+package com.groovanoscode.customer;
+
+import com.groovanoscode.Main;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The application, without its web server, for the benchmarks that go to the database.
+ * <p>
+ * The database is a Testcontainers Postgres, or the one of BENCHMARK_DATASOURCE_URL, BENCHMARK_DATASOURCE_USERNAME
+ * and BENCHMARK_DATASOURCE_PASSWORD when they are set.
+ */
+final class BenchmarkApplication implements AutoCloseable {
+
+    private final PostgreSQLContainer<?> postgres;
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkApplication(PostgreSQLContainer<?> postgres, ConfigurableApplicationContext context) {
+        this.postgres = postgres;
+        this.context = context;
+    }
+
+    /**
+     * Starts the application with these properties on top of the database ones, e.g. "customer.cache.ttl=1m".
+     */
+    static BenchmarkApplication start(String... properties) {
+        String url = System.getenv("BENCHMARK_DATASOURCE_URL");
+        String username = System.getenv("BENCHMARK_DATASOURCE_USERNAME");
+        String password = System.getenv("BENCHMARK_DATASOURCE_PASSWORD");
+        PostgreSQLContainer<?> postgres = null;
+        if(url == null){
+            postgres = new PostgreSQLContainer<>("postgres:latest")
+                    .withDatabaseName("groovanoscode-benchmark")
+                    .withUsername("groovanoscode")
+                    .withPassword("password");
+            postgres.start();
+            url = postgres.getJdbcUrl();
+            username = postgres.getUsername();
+            password = postgres.getPassword();
+        }
+
+        // As command line arguments: unlike default properties they override application.yml
+        List<String> arguments = new ArrayList<>(List.of(
+                "spring.datasource.url=" + url,
+                "spring.datasource.username=" + username,
+                "spring.datasource.password=" + password,
+                // Every trial starts the application, none of them should add a random customer to the database
+                "startup.random-customer=false",
+                "spring.jpa.show-sql=false",
+                "spring.main.banner-mode=off",
+                "logging.level.root=WARN"));
+        arguments.addAll(List.of(properties));
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Main.class)
+                .web(WebApplicationType.NONE)
+                // Like a Spring Boot test, without the test configurations found on the test classpath
+                .initializers(applicationContext -> applicationContext.getBeanFactory().registerSingleton("excludeTestConfigurations",
+                        new TypeExcludeFilter() {
+                            @Override
+                            public boolean match(MetadataReader reader, MetadataReaderFactory factory) {
+                                return reader.getAnnotationMetadata().hasAnnotation(TestConfiguration.class.getName());
+                            }
+                        }))
+                .run(arguments.stream().map(argument -> "--" + argument).toArray(String[]::new));
+        return new BenchmarkApplication(postgres, context);
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    <T> T getBean(String name, Class<T> type) {
+        return context.getBean(name, type);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        if(postgres != null){
+            postgres.stop();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.groovanoscode.customer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The same workloads against every {@link CustomerDao} bean, each in a fresh application context.
+ * Throughput and SampleTime (p50, p99, p999...) are reported for each operation.
+ * <p>
+ * The database is the one of {@link BenchmarkApplication}. The benchmark only touches the customers it creates
+ * (dao-benchmark-*) and deletes them at the end.
+ * <p>
+ * The threads, the dataset sizes and the mix are JMH options, e.g. -t 8 -p datasetSize=100000 -p writePercent=50.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class CustomerDaoBenchmark {
+
+    private static final String EMAIL_PREFIX = "dao-benchmark-";
+    private static final int PAGE_SIZE = 100;
+
+    @State(Scope.Benchmark)
+    public static class Dataset {
+
+        @Param({"jdbc", "jpa", "list", "cached"})
+        public String dao;
+
+        @Param({"10000"})
+        public int datasetSize;
+
+        private BenchmarkApplication application;
+        private JdbcTemplate jdbcTemplate;
+
+        CustomerDao customerDao;
+        int[] ids;
+        String[] emails;
+        // The digest of the page after ids[i * PAGE_SIZE], what a client polling that page would send
+        String[] pageDigests;
+
+        // The list DAO is a plain ArrayList: with more than one thread its calls take turns
+        private Object lock;
+
+        private final AtomicLong insertedCustomers = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            application = BenchmarkApplication.start();
+            jdbcTemplate = application.getBean(JdbcTemplate.class);
+            customerDao = application.getBean(dao, CustomerDao.class);
+            lock = "list".equals(dao) ? new Object() : null;
+
+            deleteBenchmarkCustomers();
+            seed();
+            pageDigests = new String[Math.max(1, ids.length / PAGE_SIZE)];
+            for(int page = 0; page < pageDigests.length; page++){
+                pageDigests[page] = CustomerPage.digest(customerDao.selectVersionedCustomersAfterId(ids[page * PAGE_SIZE], PAGE_SIZE));
+            }
+        }
+
+        private void seed() {
+            boolean list = "list".equals(dao);
+            // The list DAO keeps the ids it is given, JPA would take them for detached customers
+            int lastId = list ? customerDao.selectAllCustomers().stream().mapToInt(Customer::getId).max().orElse(0) : 0;
+            List<Customer> customers = new ArrayList<>(datasetSize);
+            for(int i = 0; i < datasetSize; i++){
+                Customer customer = new Customer("Customer " + i, EMAIL_PREFIX + i + "@groovanoscode.com",
+                        "password", 18 + i % 80, i % 2 == 0 ? Gender.MALE : Gender.FEMALE);
+                if(list){
+                    customer.setId(lastId + 1 + i);
+                }
+                customers.add(customer);
+            }
+            customerDao.insertCustomers(customers);
+
+            if(list){
+                ids = customers.stream().mapToInt(Customer::getId).toArray();
+                emails = customers.stream().map(Customer::getEmail).toArray(String[]::new);
+            } else {
+                var rows = jdbcTemplate.queryForList(
+                        "SELECT id, email FROM customer WHERE email LIKE ? ORDER BY id", EMAIL_PREFIX + "%");
+                ids = rows.stream().mapToInt(row -> ((Number) row.get("id")).intValue()).toArray();
+                emails = rows.stream().map(row -> (String) row.get("email")).toArray(String[]::new);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            deleteBenchmarkCustomers();
+            application.close();
+        }
+
+        private void deleteBenchmarkCustomers() {
+            jdbcTemplate.update("DELETE FROM customer WHERE email LIKE ?", EMAIL_PREFIX + "%");
+        }
+
+        <T> T call(Supplier<T> operation) {
+            if(lock == null){
+                return operation.get();
+            }
+            synchronized (lock) {
+                return operation.get();
+            }
+        }
+
+        int randomIndex() {
+            return ThreadLocalRandom.current().nextInt(ids.length);
+        }
+
+        Customer newCustomer() {
+            long n = insertedCustomers.incrementAndGet();
+            return new Customer(EMAIL_PREFIX + "new-" + n, EMAIL_PREFIX + "new-" + n + "-" + System.nanoTime() + "@groovanoscode.com",
+                    "password", 30, Gender.FEMALE);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Mix {
+
+        // Percentage of updates, the rest are lookups by id
+        @Param({"10"})
+        public int writePercent;
+    }
+
+    @State(Scope.Thread)
+    public static class CustomerToDelete {
+
+        Integer customerId;
+
+        // Not measured, but with a round trip per invocation: the delete numbers are the least precise
+        @Setup(Level.Invocation)
+        public void insert(Dataset dataset) {
+            customerId = dataset.call(() -> dataset.customerDao.insertCustomer(dataset.newCustomer())).orElseThrow();
+        }
+    }
+
+    @Benchmark
+    public Optional<Customer> selectById(Dataset dataset) {
+        int id = dataset.ids[dataset.randomIndex()];
+        return dataset.call(() -> dataset.customerDao.selectCustomerById(id));
+    }
+
+    @Benchmark
+    public Optional<Customer> selectByEmail(Dataset dataset) {
+        String email = dataset.emails[dataset.randomIndex()];
+        return dataset.call(() -> dataset.customerDao.selectUserByEmail(email));
+    }
+
+    @Benchmark
+    public List<Customer> selectPage(Dataset dataset) {
+        int afterId = dataset.ids[dataset.randomIndex()];
+        return dataset.call(() -> dataset.customerDao.selectCustomersAfterId(afterId, PAGE_SIZE));
+    }
+
+    // The page as the API reads it, without the password column and the Customer in between
+    @Benchmark
+    public List<VersionedCustomer> selectDTOPage(Dataset dataset) {
+        int afterId = dataset.ids[dataset.randomIndex()];
+        return dataset.call(() -> dataset.customerDao.selectVersionedCustomersAfterId(afterId, PAGE_SIZE));
+    }
+
+    // What a conditional GET of an unchanged page costs instead of selectDTOPage: the digest of the page alone
+    @Benchmark
+    public VersionedCustomerPage selectUnchangedPage(Dataset dataset) {
+        int page = ThreadLocalRandom.current().nextInt(dataset.pageDigests.length);
+        int afterId = dataset.ids[page * PAGE_SIZE];
+        Set<String> digests = Set.of(dataset.pageDigests[page]);
+        return dataset.call(() -> dataset.customerDao.selectVersionedCustomersAfterIdUnlessDigest(afterId, PAGE_SIZE, digests));
+    }
+
+    @Benchmark
+    public Optional<Integer> insert(Dataset dataset) {
+        Customer customer = dataset.newCustomer();
+        return dataset.call(() -> dataset.customerDao.insertCustomer(customer));
+    }
+
+    @Benchmark
+    public Optional<Customer> update(Dataset dataset) {
+        return update(dataset, dataset.ids[dataset.randomIndex()]);
+    }
+
+    @Benchmark
+    public boolean delete(Dataset dataset, CustomerToDelete customer) {
+        return dataset.call(() -> dataset.customerDao.deleteCustomerById(customer.customerId));
+    }
+
+    @Benchmark
+    public Optional<Customer> readWriteMix(Dataset dataset, Mix mix) {
+        int id = dataset.ids[dataset.randomIndex()];
+        if(ThreadLocalRandom.current().nextInt(100) < mix.writePercent){
+            return update(dataset, id);
+        }
+        return dataset.call(() -> dataset.customerDao.selectCustomerById(id));
+    }
+
+    private static Optional<Customer> update(Dataset dataset, int id) {
+        // A new age most of the time, otherwise the DAO finds nothing to change
+        Customer update = new Customer(id, null, null, null, ThreadLocalRandom.current().nextInt(18, 98), null);
+        try {
+            return dataset.call(() -> dataset.customerDao.updateCustomer(update, null));
+        } catch (ConcurrencyFailureException e) {
+            // JPA checks the version even without an expected one: two threads updated the same customer
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.groovanoscode.customer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The two mappings every customer we return goes through: the row to the entity and the entity to the DTO.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CustomerMappingBenchmark {
+
+    private final CustomerRowMapper rowMapper = new CustomerRowMapper();
+    private final CustomerDTOMapper dtoMapper = new CustomerDTOMapper();
+
+    private ResultSet resultSet;
+    private Customer customer;
+
+    @Setup
+    public void setUp() {
+        // A proxy rather than a Mockito mock: a stubbed call costs more than the whole mapping
+        Map<String, Object> row = Map.of(
+                "id", 1,
+                "name", "Jamila",
+                "email", "jamila@gmail.com",
+                "password", "password",
+                "age", 19,
+                "gender", "FEMALE",
+                "version", 3L);
+        resultSet = (ResultSet) Proxy.newProxyInstance(
+                ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> row.get((String) args[0]));
+        customer = new Customer(1, "Jamila", "jamila@gmail.com", "password" , 19, Gender.FEMALE, 3L);
+    }
+
+    @Benchmark
+    public Customer mapRow() throws SQLException {
+        return rowMapper.mapRow(resultSet, 1);
+    }
+
+    @Benchmark
+    public CustomerDTO toDTO() {
+        return dtoMapper.apply(customer);
+    }
+}
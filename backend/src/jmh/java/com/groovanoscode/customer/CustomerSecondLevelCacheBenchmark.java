@@ -0,0 +1,100 @@
+package com.groovanoscode.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.search.Search;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The lookup of the auth path, {@link CustomerUserDetailsService#loadUserByUsername} on the jpa DAO, without and
+ * with the second-level cache (customer.second-level-cache.enabled). The hit rates of the two regions over the
+ * trial, warmup included, are printed at its end.
+ * <p>
+ * The database is the one of {@link BenchmarkApplication}. The benchmark only touches the customers it creates
+ * (l2-benchmark-*) and deletes them at the end.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CustomerSecondLevelCacheBenchmark {
+
+    private static final String EMAIL_PREFIX = "l2-benchmark-";
+
+    @Param({"false", "true"})
+    public boolean secondLevelCache;
+
+    // The customers logging in, fewer than customer.second-level-cache.max-size
+    @Param({"1000"})
+    public int customers;
+
+    private BenchmarkApplication application;
+    private JdbcTemplate jdbcTemplate;
+    private CustomerUserDetailsService userDetailsService;
+    private String[] emails;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        application = BenchmarkApplication.start("customer.second-level-cache.enabled=" + secondLevelCache);
+        jdbcTemplate = application.getBean(JdbcTemplate.class);
+        userDetailsService = application.getBean(CustomerUserDetailsService.class);
+
+        deleteBenchmarkCustomers();
+        List<Customer> seed = new ArrayList<>(customers);
+        for(int i = 0; i < customers; i++){
+            seed.add(new Customer("Customer " + i, EMAIL_PREFIX + i + "@groovanoscode.com",
+                    "password", 18 + i % 80, i % 2 == 0 ? Gender.MALE : Gender.FEMALE));
+        }
+        application.getBean("jdbc", CustomerDao.class).insertCustomers(seed);
+        emails = seed.stream().map(Customer::getEmail).toArray(String[]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if(secondLevelCache){
+            MeterRegistry meterRegistry = application.getBean(MeterRegistry.class);
+            for(String region : List.of(CustomerSecondLevelCacheConfig.CUSTOMERS_BY_EMAIL, CustomerSecondLevelCacheConfig.CUSTOMERS_BY_ID)){
+                double hits = gets(meterRegistry, region, "hit");
+                double misses = gets(meterRegistry, region, "miss");
+                System.out.printf("%n%s: %.0f hits, %.0f misses, hit rate %.2f%%%n",
+                        region, hits, misses, 100 * hits / Math.max(1, hits + misses));
+            }
+        }
+        deleteBenchmarkCustomers();
+        application.close();
+    }
+
+    private static double gets(MeterRegistry meterRegistry, String region, String result) {
+        return Search.in(meterRegistry).name("cache.gets").tags("cache", region, "result", result)
+                .functionCounters().stream().mapToDouble(counter -> counter.count()).sum();
+    }
+
+    private void deleteBenchmarkCustomers() {
+        jdbcTemplate.update("DELETE FROM customer WHERE email LIKE ?", EMAIL_PREFIX + "%");
+    }
+
+    @Benchmark
+    public UserDetails loadUserByUsername() {
+        return userDetailsService.loadUserByUsername(emails[ThreadLocalRandom.current().nextInt(emails.length)]);
+    }
+}
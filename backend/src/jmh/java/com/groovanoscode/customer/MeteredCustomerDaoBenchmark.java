@@ -0,0 +1,70 @@
+package com.groovanoscode.customer;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the customer.dao timers add to a call: the in-memory list DAO with and without {@link MeteredCustomerDao},
+ * on a Prometheus registry with percentile histograms like in application.yml. All cores call it at once,
+ * as under full load. A database call takes at least a few hundred microseconds.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class MeteredCustomerDaoBenchmark {
+
+    private CustomerDao plain;
+    private CustomerDao metered;
+
+    @Setup
+    public void setUp() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                return DistributionStatisticConfig.builder()
+                        .percentilesHistogram(true)
+                        .build()
+                        .merge(config);
+            }
+        });
+        plain = new CustomerListDataAccessService();
+        metered = new MeteredCustomerDao(plain, "list", registry);
+    }
+
+    @Benchmark
+    public Optional<Customer> plain() {
+        return plain.selectCustomerById(2);
+    }
+
+    @Benchmark
+    public Optional<Customer> metered() {
+        return metered.selectCustomerById(2);
+    }
+
+    @Benchmark
+    public Optional<Customer> meteredNotFound() {
+        return metered.selectCustomerById(-1);
+    }
+}
@@ -0,0 +1,54 @@
+package com.groovanoscode.jwt;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Issuing a token at login, parsing it (a cache miss of {@link JWTUtil#verify}) and verifying a token we saw before.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JWTBenchmark {
+
+    private JWTUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JWTUtil(new SimpleMeterRegistry());
+        token = jwtUtil.issueToken("jamila@gmail.com", 1, List.of("ROLE_USER"));
+    }
+
+    @Benchmark
+    public String issueToken() {
+        return jwtUtil.issueToken("jamila@gmail.com", 1, List.of("ROLE_USER"));
+    }
+
+    @Benchmark
+    public Claims parseToken() {
+        return jwtUtil.getClaims(token);
+    }
+
+    @Benchmark
+    public Optional<VerifiedToken> verifyCachedToken() {
+        return jwtUtil.verify(token);
+    }
+}
@@ -0,0 +1,39 @@
+package com.groovanoscode;
+
+import com.groovanoscode.customer.CustomerImportResult;
+import com.groovanoscode.customer.CustomerImportService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Imports a CSV file of customers without opening an HTTP port, for files too big to upload:
+ * <pre>
+ * java -cp groovanoscode-api.jar -Dloader.main=com.groovanoscode.CustomerImport \
+ *      org.springframework.boot.loader.PropertiesLauncher customers.csv
+ * </pre>
+ */
+public class CustomerImport {
+
+    public static void main(String[] args) throws IOException {
+        if(args.length != 1){
+            System.err.println("usage: CustomerImport <customers.csv>");
+            System.exit(2);
+        }
+
+        try(ConfigurableApplicationContext context = new SpringApplicationBuilder(Main.class)
+                // The beans of the API still need the servlet context, port -1 only keeps Tomcat from listening.
+                // The management server has a port of its own, -1 turns it off, so the import also runs next to a
+                // running API. Without the random customer Main adds on every start
+                .run("--server.port=-1", "--management.server.port=-1", "--startup.random-customer=false");
+            Reader csv = Files.newBufferedReader(Path.of(args[0]), StandardCharsets.UTF_8)){
+            CustomerImportResult result = context.getBean(CustomerImportService.class).importCustomers(csv);
+            System.out.println(result);
+        }
+    }
+}
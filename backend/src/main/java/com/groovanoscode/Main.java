@@ -8,6 +8,7 @@ import com.groovanoscode.customer.Gender;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
@@ -21,7 +22,9 @@ public class Main {
         SpringApplication.run(Main.class, args);
     }
 
+    // Adds a random customer on every start, handy locally. Off for the CSV import, see CustomerImport
     @Bean
+    @ConditionalOnProperty(name = "startup.random-customer", havingValue = "true", matchIfMissing = true)
     CommandLineRunner runner(CustomerRepository customerRepository, PasswordEncoder passwordEncoder){
         return args -> {
             /*Customer alex = new Customer("Alex", "alex@gmail.com", 21);
@@ -1,5 +1,6 @@
 package com.groovanoscode.auth;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -7,7 +8,10 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
+@Profile("!reactive")
 @RequestMapping("api/v1/auth")
 public class AuthenticationController {
 
@@ -18,11 +22,12 @@ public class AuthenticationController {
     }
 
     @PostMapping("login")
-    public ResponseEntity<?> login(@RequestBody AuthenticationRequest request){
-        AuthenticationResponse response = authenticationService.login(request);
-        return ResponseEntity.ok()
-                .header(HttpHeaders.AUTHORIZATION, response.token())
-                .body(response);
+    public CompletableFuture<ResponseEntity<AuthenticationResponse>> login(@RequestBody AuthenticationRequest request){
+        // The request thread is released while the password is checked
+        return authenticationService.login(request)
+                .thenApply(response -> ResponseEntity.ok()
+                        .header(HttpHeaders.AUTHORIZATION, response.token())
+                        .body(response));
     }
 
 }
@@ -0,0 +1,30 @@
+package com.groovanoscode.auth;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ * The endpoints of {@link AuthenticationController} for the reactive profile, routed by {@link AuthenticationRouter}.
+ */
+@Component
+@Profile("reactive")
+public class AuthenticationHandler {
+
+    private final ReactiveAuthenticationService authenticationService;
+
+    public AuthenticationHandler(ReactiveAuthenticationService authenticationService) {
+        this.authenticationService = authenticationService;
+    }
+
+    public Mono<ServerResponse> login(ServerRequest request){
+        return request.bodyToMono(AuthenticationRequest.class)
+                .flatMap(authenticationService::login)
+                .flatMap(response -> ServerResponse.ok()
+                        .header(HttpHeaders.AUTHORIZATION, response.token())
+                        .bodyValue(response));
+    }
+}
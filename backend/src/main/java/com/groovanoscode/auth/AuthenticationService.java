@@ -4,25 +4,40 @@ import com.groovanoscode.customer.Customer;
 import com.groovanoscode.customer.CustomerDTO;
 import com.groovanoscode.customer.CustomerDTOMapper;
 import com.groovanoscode.jwt.JWTUtil;
+import com.groovanoscode.security.PasswordHashingExecutor;
+import org.springframework.context.annotation.Profile;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 @Service
+@Profile("!reactive")
 public class AuthenticationService {
 
     private final AuthenticationManager authenticationManager;
     private final CustomerDTOMapper customerDTOMapper;
     private final JWTUtil jwtUtil;
+    private final PasswordHashingExecutor passwordHashingExecutor;
 
-    public AuthenticationService(AuthenticationManager authenticationManager , CustomerDTOMapper customerDTOMapper , JWTUtil jwtUtil) {
+    public AuthenticationService(AuthenticationManager authenticationManager , CustomerDTOMapper customerDTOMapper , JWTUtil jwtUtil ,
+                                 PasswordHashingExecutor passwordHashingExecutor) {
         this.authenticationManager = authenticationManager;
         this.customerDTOMapper = customerDTOMapper;
         this.jwtUtil = jwtUtil;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+    }
+
+    /**
+     * Checks the password on a hashing thread. Fails right away with a 503 when too many logins are waiting.
+     */
+    public CompletableFuture<AuthenticationResponse> login(AuthenticationRequest request){
+        return passwordHashingExecutor.submit(() -> authenticate(request));
     }
 
-    public AuthenticationResponse login(AuthenticationRequest request){
+    private AuthenticationResponse authenticate(AuthenticationRequest request){
 
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(
@@ -33,7 +48,7 @@ public class AuthenticationService {
 
         Customer principal = (Customer)authentication.getPrincipal(); // This return a customer object
         CustomerDTO customerDTO = customerDTOMapper.apply(principal);
-        String jwtToken = jwtUtil.issueToken(customerDTO.username(), customerDTO.roles());
+        String jwtToken = jwtUtil.issueToken(customerDTO.username(), customerDTO.id(), customerDTO.roles());
 
         return new AuthenticationResponse(jwtToken, customerDTO);
     }
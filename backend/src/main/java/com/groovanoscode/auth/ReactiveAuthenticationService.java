@@ -0,0 +1,55 @@
+package com.groovanoscode.auth;
+
+import com.groovanoscode.customer.Customer;
+import com.groovanoscode.customer.CustomerDTO;
+import com.groovanoscode.customer.CustomerDTOMapper;
+import com.groovanoscode.customer.ReactiveCustomerUserDetailsService;
+import com.groovanoscode.jwt.JWTUtil;
+import com.groovanoscode.security.PasswordHashingExecutor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * {@link AuthenticationService} for the reactive profile.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveAuthenticationService {
+
+    private final ReactiveAuthenticationManager authenticationManager;
+    private final CustomerDTOMapper customerDTOMapper;
+    private final JWTUtil jwtUtil;
+
+    public ReactiveAuthenticationService(ReactiveCustomerUserDetailsService userDetailsService , PasswordEncoder passwordEncoder ,
+                                         PasswordHashingExecutor passwordHashingExecutor , CustomerDTOMapper customerDTOMapper , JWTUtil jwtUtil) {
+        var authenticationManager = new UserDetailsRepositoryReactiveAuthenticationManager(userDetailsService);
+        authenticationManager.setPasswordEncoder(passwordEncoder);
+        // A successful login rehashes the password when the cost factor changed
+        authenticationManager.setUserDetailsPasswordService(userDetailsService);
+        // The password is checked on the hashing threads, never on the event loop
+        authenticationManager.setScheduler(Schedulers.fromExecutor(passwordHashingExecutor.executor()));
+        this.authenticationManager = authenticationManager;
+        this.customerDTOMapper = customerDTOMapper;
+        this.jwtUtil = jwtUtil;
+    }
+
+    public Mono<AuthenticationResponse> login(AuthenticationRequest request){
+        return authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(
+                        request.username() ,
+                        request.password()))
+                .onErrorMap(RejectedExecutionException.class, e -> PasswordHashingExecutor.saturated())
+                .map(authentication -> {
+                    CustomerDTO customerDTO = customerDTOMapper.apply((Customer) authentication.getPrincipal());
+                    String jwtToken = jwtUtil.issueToken(customerDTO.username(), customerDTO.id(), customerDTO.roles());
+                    return new AuthenticationResponse(jwtToken, customerDTO);
+                });
+    }
+}
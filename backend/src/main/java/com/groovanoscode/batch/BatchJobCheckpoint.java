@@ -0,0 +1,21 @@
+package com.groovanoscode.batch;
+
+import java.time.Instant;
+
+/**
+ * How far a batch job got. lastId is the id of the last row of the last committed chunk,
+ * a job that did not finish resumes after it.
+ */
+public record BatchJobCheckpoint(
+        String jobName,
+        long lastId,
+        long processed,
+        long updated,
+        Instant startedAt,
+        Instant updatedAt,
+        Instant finishedAt
+) {
+    public boolean finished() {
+        return finishedAt != null;
+    }
+}
@@ -0,0 +1,94 @@
+package com.groovanoscode.batch;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public class BatchJobCheckpointDao {
+
+    private static final RowMapper<BatchJobCheckpoint> CHECKPOINT_ROW_MAPPER = (rs, rowNum) -> new BatchJobCheckpoint(
+            rs.getString("job_name"),
+            rs.getLong("last_id"),
+            rs.getLong("processed"),
+            rs.getLong("updated"),
+            toInstant(rs.getObject("started_at", OffsetDateTime.class)),
+            toInstant(rs.getObject("updated_at", OffsetDateTime.class)),
+            toInstant(rs.getObject("finished_at", OffsetDateTime.class))
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BatchJobCheckpointDao(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public List<BatchJobCheckpoint> selectAllCheckpoints() {
+        var sql = """
+                SELECT job_name, last_id, processed, updated, started_at, updated_at, finished_at
+                FROM batch_job_checkpoint
+                ORDER BY job_name
+                """;
+
+        return jdbcTemplate.query(sql, CHECKPOINT_ROW_MAPPER);
+    }
+
+    public Optional<BatchJobCheckpoint> selectCheckpoint(String jobName) {
+        var sql = """
+                SELECT job_name, last_id, processed, updated, started_at, updated_at, finished_at
+                FROM batch_job_checkpoint
+                WHERE job_name = ?
+                """;
+
+        return jdbcTemplate.query(sql, CHECKPOINT_ROW_MAPPER, jobName)
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Starts the job from the beginning, a previous checkpoint of the job is overwritten.
+     */
+    public BatchJobCheckpoint start(String jobName) {
+        var sql = """
+                INSERT INTO batch_job_checkpoint(job_name, last_id, processed, updated, started_at, updated_at, finished_at)
+                VALUES (?, 0, 0, 0, now(), now(), NULL)
+                ON CONFLICT (job_name) DO UPDATE
+                SET last_id = 0, processed = 0, updated = 0, started_at = now(), updated_at = now(), finished_at = NULL
+                RETURNING job_name, last_id, processed, updated, started_at, updated_at, finished_at
+                """;
+
+        return jdbcTemplate.queryForObject(sql, CHECKPOINT_ROW_MAPPER, jobName);
+    }
+
+    /**
+     * Records a committed chunk. Call it in the transaction of the chunk, so the checkpoint never gets ahead of the data.
+     */
+    public void advance(String jobName, long lastId, long processed, long updated) {
+        var sql = """
+                UPDATE batch_job_checkpoint
+                SET last_id = ?, processed = processed + ?, updated = updated + ?, updated_at = now()
+                WHERE job_name = ?
+                """;
+
+        jdbcTemplate.update(sql, lastId, processed, updated, jobName);
+    }
+
+    public void finish(String jobName) {
+        var sql = """
+                UPDATE batch_job_checkpoint
+                SET finished_at = now(), updated_at = now()
+                WHERE job_name = ?
+                """;
+
+        jdbcTemplate.update(sql, jobName);
+    }
+
+    private static Instant toInstant(OffsetDateTime dateTime) {
+        return dateTime == null ? null : dateTime.toInstant();
+    }
+}
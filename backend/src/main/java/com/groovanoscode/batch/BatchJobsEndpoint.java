@@ -0,0 +1,33 @@
+package com.groovanoscode.batch;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * The progress of the batch jobs: /actuator/batchjobs and /actuator/batchjobs/{jobName}.
+ */
+@Component
+@Endpoint(id = "batchjobs")
+public class BatchJobsEndpoint {
+
+    private final BatchJobCheckpointDao batchJobCheckpointDao;
+
+    public BatchJobsEndpoint(BatchJobCheckpointDao batchJobCheckpointDao) {
+        this.batchJobCheckpointDao = batchJobCheckpointDao;
+    }
+
+    @ReadOperation
+    public List<BatchJobCheckpoint> batchJobs() {
+        return batchJobCheckpointDao.selectAllCheckpoints();
+    }
+
+    // Returning null answers 404
+    @ReadOperation
+    public BatchJobCheckpoint batchJob(@Selector String jobName) {
+        return batchJobCheckpointDao.selectCheckpoint(jobName).orElse(null);
+    }
+}
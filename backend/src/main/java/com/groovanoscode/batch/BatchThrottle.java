@@ -0,0 +1,54 @@
+package com.groovanoscode.batch;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * Keeps batch jobs from hogging the connection pool. Jobs call {@link #pause()} between two chunks:
+ * it always waits a little, and longer as long as requests are waiting for a connection.
+ */
+@Component
+public class BatchThrottle {
+
+    // After that many backoffs the job goes on anyway, otherwise it could starve during a long peak
+    private static final int MAX_BACKOFFS = 50;
+
+    private final DataSource dataSource;
+    private final Duration pause;
+    private final Duration backoff;
+
+    public BatchThrottle(DataSource dataSource ,
+                         @Value("${batch.throttle.pause:20ms}") Duration pause ,
+                         @Value("${batch.throttle.backoff:200ms}") Duration backoff) {
+        this.dataSource = dataSource;
+        this.pause = pause;
+        this.backoff = backoff;
+    }
+
+    public void pause() throws InterruptedException {
+        Thread.sleep(pause.toMillis());
+
+        for (int i = 0; i < MAX_BACKOFFS && requestsAreWaitingForAConnection(); i++) {
+            Thread.sleep(backoff.toMillis());
+        }
+    }
+
+    private boolean requestsAreWaitingForAConnection() {
+        try {
+            if(!dataSource.isWrapperFor(HikariDataSource.class)){
+                return false;
+            }
+            // The pool is created with the first connection, before that nobody can wait for one
+            HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+            return pool != null && pool.getThreadsAwaitingConnection() > 0;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.groovanoscode.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the customers read by id or email in memory, in front of the jdbc DAO. The entries live in {@link CustomerCache}.
+ * <p>
+ * Our writes evict the customers they touch, the gender batch job clears the whole cache when it stops. Writes
+ * that bypass the DAO (another instance of the API, a manual fix in the database) are seen once the entry
+ * expires, so the TTL is the longest a read can be stale.
+ * Unknown ids and emails are not cached.
+ */
+@Repository("cached")
+public class CachingCustomerDao implements CustomerDao {
+
+    private final CustomerDao customerDao;
+    private final CustomerDTOMapper customerDTOMapper = new CustomerDTOMapper();
+
+    private final Cache<Integer, Customer> customersById;
+    private final Cache<String, Integer> idsByEmail;
+
+    public CachingCustomerDao(@Qualifier("jdbc") CustomerDao customerDao , CustomerCache customerCache) {
+        this.customerDao = customerDao;
+        this.customersById = customerCache.customersById();
+        this.idsByEmail = customerCache.idsByEmail();
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer customerId) {
+        if(customerId == null){
+            return Optional.empty();
+        }
+        // A null from the loader is not cached
+        return Optional.ofNullable(customersById.get(customerId,
+                id -> customerDao.selectCustomerById(id).orElse(null)));
+    }
+
+    // The cache holds whole customers, the authentication needs their password anyway. So a miss loads the
+    // customer rather than the projection, and the next read of either kind is a hit
+    @Override
+    public Optional<CustomerDTO> selectCustomerDTOById(Integer customerId) {
+        return selectCustomerById(customerId).map(customerDTOMapper);
+    }
+
+    // The GET of a customer by id: a cached customer is served from memory, a miss reads the projection, without
+    // the password hash, and is not cached (only the authentication loads and caches whole customers)
+    @Override
+    public Optional<VersionedCustomer> selectVersionedCustomerById(Integer customerId) {
+        if(customerId == null){
+            return Optional.empty();
+        }
+        Customer cached = customersById.getIfPresent(customerId);
+        if(cached != null){
+            return Optional.of(new VersionedCustomer(customerDTOMapper.apply(cached), cached.getVersion()));
+        }
+        return customerDao.selectVersionedCustomerById(customerId);
+    }
+
+    @Override
+    public Optional<Customer> selectUserByEmail(String email) {
+        String key = Customer.normalizeEmail(email);
+        if(key == null){
+            return Optional.empty();
+        }
+
+        Integer id = idsByEmail.getIfPresent(key);
+        if(id != null){
+            // The customer may have been deleted or changed its email since we cached the id
+            Optional<Customer> customer = selectCustomerById(id)
+                    .filter(c -> key.equals(Customer.normalizeEmail(c.getEmail())));
+            if(customer.isPresent()){
+                return customer;
+            }
+            idsByEmail.invalidate(key);
+        }
+
+        // Only the id is taken from the email lookup. The row goes through the loader of customersById: an
+        // eviction waits for a running load, so an update that commits meanwhile cannot leave its old row cached
+        Optional<Customer> customer = customerDao.selectUserByEmail(key)
+                .flatMap(c -> selectCustomerById(c.getId()))
+                .filter(c -> key.equals(Customer.normalizeEmail(c.getEmail())));
+        customer.ifPresent(c -> idsByEmail.put(key, c.getId()));
+        return customer;
+    }
+
+    @Override
+    public Optional<Integer> insertCustomer(Customer customer) {
+        Optional<Integer> id = customerDao.insertCustomer(customer);
+        idsByEmail.invalidate(Customer.normalizeEmail(customer.getEmail()));
+        return id;
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Customer update, Long expectedVersion) {
+        try {
+            return customerDao.updateCustomer(update, expectedVersion);
+        } finally {
+            // Also when nothing was updated: a stale version may mean our copy is the stale one
+            customersById.invalidate(update.getId());
+        }
+    }
+
+    @Override
+    public boolean updateCustomerPassword(Integer customerId, String password) {
+        try {
+            return customerDao.updateCustomerPassword(customerId, password);
+        } finally {
+            customersById.invalidate(customerId);
+        }
+    }
+
+    @Override
+    public boolean deleteCustomerById(Integer customerId) {
+        try {
+            return customerDao.deleteCustomerById(customerId);
+        } finally {
+            customersById.invalidate(customerId);
+        }
+    }
+
+    // Lists, streams and checks are not cached
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return customerDao.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer afterId, int limit) {
+        return customerDao.selectCustomersAfterId(afterId, limit);
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return customerDao.streamAllCustomers();
+    }
+
+    @Override
+    public List<VersionedCustomer> selectVersionedCustomersAfterId(Integer afterId, int limit) {
+        return customerDao.selectVersionedCustomersAfterId(afterId, limit);
+    }
+
+    // Never cached, it tells whether the page changed
+    @Override
+    public VersionedCustomerPage selectVersionedCustomersAfterIdUnlessDigest(Integer afterId, int limit, Collection<String> digests) {
+        return customerDao.selectVersionedCustomersAfterIdUnlessDigest(afterId, limit, digests);
+    }
+
+    @Override
+    public Stream<CustomerDTO> streamAllCustomerDTOs() {
+        return customerDao.streamAllCustomerDTOs();
+    }
+
+    @Override
+    public Set<String> insertCustomers(List<Customer> customers) {
+        return customerDao.insertCustomers(customers);
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return customerDao.existsPersonWithEmail(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return customerDao.selectExistingEmails(emails);
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer customer_id) {
+        return customerDao.existsCustomerWithId(customer_id);
+    }
+}
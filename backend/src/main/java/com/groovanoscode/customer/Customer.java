@@ -1,15 +1,26 @@
 package com.groovanoscode.customer;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 
 @Entity
+// Read and written through the second-level cache when it is enabled, see CustomerSecondLevelCacheConfig
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CustomerSecondLevelCacheConfig.CUSTOMERS_BY_ID)
+@NaturalIdCache(region = CustomerSecondLevelCacheConfig.CUSTOMERS_BY_EMAIL)
+// The database index is on lower(email), see V4__Add_Customer_Email_Unique_Index.sql
 @Table(
         name = "customer",
         uniqueConstraints = {
@@ -20,14 +31,18 @@ import java.util.Objects;
         }
 )
 public class Customer implements UserDetails {
+
+    // Every customer has the same single role, shared instead of built for each customer, DTO and token
+    public static final List<String> ROLES = List.of("ROLE_USER");
+    private static final List<GrantedAuthority> AUTHORITIES = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+
+    // One round trip for every 50 JPA inserts instead of one per insert, see CustomerIdGenerator
     @Id
-    @SequenceGenerator(
+    @GenericGenerator(
             name = "customer_id_seq",
-            sequenceName = "customer_id_seq",
-            allocationSize = 1
+            strategy = "com.groovanoscode.customer.CustomerIdGenerator"
     )
     @GeneratedValue(
-            strategy = GenerationType.SEQUENCE,
             generator = "customer_id_seq"
     )
     private Integer id;
@@ -37,6 +52,9 @@ public class Customer implements UserDetails {
     )
     private String name;
 
+    // The key of the email region of the second-level cache. Mutable, a customer can change its email: Hibernate
+    // then moves the cached id to the new email. Stored in lower case (V4), which is also the natural id
+    @NaturalId(mutable = true)
     @Column(
             nullable = false
     )
@@ -56,6 +74,11 @@ public class Customer implements UserDetails {
     @Column(nullable = false)
     private String password;
 
+    // Incremented by every update, so concurrent edits cannot silently overwrite each other
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     public Customer(){}
 
 
@@ -68,6 +91,11 @@ public class Customer implements UserDetails {
         this.gender = gender;
     }
 
+    public Customer(Integer id, String name, String email, String password , Integer age , Gender gender, Long version) {
+        this(id, name, email, password, age, gender);
+        this.version = version;
+    }
+
     public Customer(String name, String email, String password , Integer age , Gender gender) {
         this.name = name;
         this.email = email;
@@ -96,6 +124,10 @@ public class Customer implements UserDetails {
         return gender;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
     public void setId(int id) {
         this.id = id;
     }
@@ -108,6 +140,10 @@ public class Customer implements UserDetails {
         this.email = email;
     }
 
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
     public void setAge(int age) {
         this.age = age;
     }
@@ -116,6 +152,48 @@ public class Customer implements UserDetails {
         this.gender = gender;
     }
 
+    /**
+     * Emails are case insensitive, we keep them trimmed and in lower case.
+     */
+    public static String normalizeEmail(String email) {
+        return email == null ? null : email.strip().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Copies the non null fields of the update onto this customer.
+     * Returns false when the update does not change anything.
+     */
+    public boolean applyChanges(Customer update) {
+        boolean changes = false;
+
+        if(update.name != null && !update.name.equals(name)){
+            name = update.name;
+            changes = true;
+        }
+
+        if(update.email != null && !update.email.equals(email)){
+            email = update.email;
+            changes = true;
+        }
+
+        if(update.password != null && !update.password.equals(password)){
+            password = update.password;
+            changes = true;
+        }
+
+        if(update.age != null && !update.age.equals(age)){
+            age = update.age;
+            changes = true;
+        }
+
+        if(update.gender != null && update.gender != gender){
+            gender = update.gender;
+            changes = true;
+        }
+
+        return changes;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -131,7 +209,7 @@ public class Customer implements UserDetails {
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return List.of(new SimpleGrantedAuthority("ROLE_USER"));
+        return AUTHORITIES;
     }
 
     @Override
@@ -0,0 +1,40 @@
+package com.groovanoscode.customer;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("api/v1/admin/customers")
+public class CustomerAdminController {
+
+    private final CustomerImportService customerImportService;
+    private final CustomerGenderJob customerGenderJob;
+
+    public CustomerAdminController(CustomerImportService customerImportService , CustomerGenderJob customerGenderJob) {
+        this.customerImportService = customerImportService;
+        this.customerGenderJob = customerGenderJob;
+    }
+
+    // The CSV is the raw request body, we read it while the client is still uploading it
+    @PostMapping(value = "import", consumes = {"text/csv", "text/plain"})
+    public CustomerImportResult importCustomers(InputStream csv) throws IOException {
+        return customerImportService.importCustomers(new InputStreamReader(csv, StandardCharsets.UTF_8));
+    }
+
+    // The job runs in the background, its progress is on /actuator/batchjobs/update-gender-of-customers
+    @PostMapping("update-gender")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void updateGenderOfCustomers(){
+        customerGenderJob.start();
+    }
+}
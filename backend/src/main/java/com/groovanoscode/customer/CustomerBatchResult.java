@@ -0,0 +1,18 @@
+package com.groovanoscode.customer;
+
+/**
+ * The outcome of one registration of a batch. The index is the position of the request in the batch.
+ */
+public record CustomerBatchResult(
+        int index,
+        String email,
+        Status status
+) {
+    public enum Status {
+        CREATED,
+        // The email belongs to an existing customer or to an earlier request of the same batch
+        DUPLICATE,
+        // A field is missing
+        INVALID
+    }
+}
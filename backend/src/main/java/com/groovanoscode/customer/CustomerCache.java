@@ -0,0 +1,58 @@
+package com.groovanoscode.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * The customers kept in memory by {@link CachingCustomerDao}. A bean of its own so the writes that go around the
+ * DAO, like the gender batch job, can clear it: the DAO bean itself is wrapped by the metrics.
+ */
+@Component
+public class CustomerCache {
+
+    private final Cache<Integer, Customer> customersById;
+    // email -> id, the customer itself is only kept in customersById so an update has a single entry to evict
+    private final Cache<String, Integer> idsByEmail;
+
+    public CustomerCache(MeterRegistry meterRegistry ,
+                         @Value("${customer.cache.max-size:10000}") long maxSize ,
+                         @Value("${customer.cache.ttl:5m}") Duration ttl) {
+        // Caffeine evicts with W-TinyLFU, so a burst of one-off reads does not push out the hot profiles
+        this.customersById = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.idsByEmail = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        // cache.gets{result=hit|miss}, cache.evictions, cache.size... tagged with cache=customers.by.id|customers.by.email
+        CaffeineCacheMetrics.monitor(meterRegistry, customersById, "customers.by.id");
+        CaffeineCacheMetrics.monitor(meterRegistry, idsByEmail, "customers.by.email");
+    }
+
+    Cache<Integer, Customer> customersById() {
+        return customersById;
+    }
+
+    Cache<String, Integer> idsByEmail() {
+        return idsByEmail;
+    }
+
+    /**
+     * Forgets every customer, for the writes that go around the DAO.
+     */
+    public void invalidateAll() {
+        customersById.invalidateAll();
+        idsByEmail.invalidateAll();
+    }
+}
@@ -1,42 +1,154 @@
 package com.groovanoscode.customer;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.groovanoscode.exception.PreconditionFailedException;
 import com.groovanoscode.jwt.JWTUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("api/v1/customers")
 public class CustomerController {
 
+    private static final Logger log = LoggerFactory.getLogger(CustomerController.class);
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // Instead of the no-store of Spring Security: the browser keeps the response, sends its ETag back in
+    // If-None-Match and reuses it on a 304. Private, the responses depend on the token
+    static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     private final CustomerService customerService;
 
     private final JWTUtil jwtUtil;
 
-    public CustomerController(CustomerService customerService , JWTUtil jwtUtil) {
+    private final ObjectWriter exportWriter;
+
+    public CustomerController(CustomerService customerService , JWTUtil jwtUtil , ObjectMapper objectMapper) {
         this.customerService = customerService;
         this.jwtUtil = jwtUtil;
+        // One JSON document per line. We flush when the buffer is full instead of after every customer,
+        // and we leave the response stream open because the servlet container closes it
+        this.exportWriter = objectMapper.writerFor(CustomerDTO.class)
+                .withRootValueSeparator("\n")
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
 
     @GetMapping
-    public List<CustomerDTO> getCustomers(){
-        return customerService.getAllCustomers();
+    public ResponseEntity<List<CustomerDTO>> getCustomers(
+            @RequestParam(value = "after", required = false) Integer after,
+            @RequestParam(value = "limit", defaultValue = "" + CustomerService.MAX_PAGE_SIZE) int limit,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        // One query either way: a client polling an unchanged page gets the digest alone, no customer is read
+        // or serialized, and a changed page comes with its customers
+        Set<String> eTags = eTags(ifNoneMatch);
+        CustomerPage page = eTags.isEmpty()
+                ? customerService.getCustomers(after, limit)
+                : customerService.getCustomers(after, limit, eTags);
+        if(page.unchanged() || eTags.contains("*")){
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(page.eTag())
+                    .cacheControl(REVALIDATE)
+                    .build();
+        }
+
+        // The body stays a plain list for the existing clients, the cursor of the next page goes into a header
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(page.eTag())
+                .cacheControl(REVALIDATE);
+        if(page.nextCursor() != null){
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor().toString());
+        }
+        return response.body(page.customers());
+    }
+
+    @GetMapping(value = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCustomers(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding){
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = gzip ? new GZIPOutputStream(outputStream, 8192) : outputStream;
+            try(SequenceWriter writer = exportWriter.writeValues(out)){
+                customerService.exportCustomers(customer -> {
+                    try {
+                        writer.write(customer);
+                    } catch (IOException e) {
+                        // Throwing ends the export: the stream is closed and the transaction rolled back
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                if(out instanceof GZIPOutputStream gzipOutputStream){
+                    writer.flush();
+                    gzipOutputStream.finish();
+                }
+            } catch (UncheckedIOException e) {
+                // The client went away, there is nobody left to send an error to
+                log.debug("Customer export aborted: {}", e.getCause().getMessage());
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON);
+        if(gzip){
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    @GetMapping("me")
+    public CustomerDTO getAuthenticatedCustomer(Authentication authentication){
+        return customerService.getAuthenticatedCustomer(authentication);
     }
 
+    // Spring answers an If-None-Match with the version of the customer with a 304, without serializing it
     @GetMapping("{customerId}")
-    public CustomerDTO getCustomer(@PathVariable("customerId") Integer customerId){
-        return customerService.getCustomer(customerId);
+    public ResponseEntity<CustomerDTO> getCustomer(@PathVariable("customerId") Integer customerId){
+        VersionedCustomer customer = customerService.getVersionedCustomer(customerId);
+        return ResponseEntity.ok()
+                .eTag(customer.version().toString())
+                .cacheControl(REVALIDATE)
+                .body(customer.customer());
     }
 
     @PostMapping
-    public ResponseEntity<?> registerCustomer(@RequestBody CustomerRegistrationRequest request){
-        customerService.addCustomer(request);
-        String jwtToken = jwtUtil.issueToken(request.email(), "ROLE_USER"); // We use the email here because it is unique. We cannot have users with the same email
-        return ResponseEntity.ok()
-                .header(HttpHeaders.AUTHORIZATION, jwtToken)
-                .build();
+    public CompletableFuture<ResponseEntity<Void>> registerCustomer(@RequestBody CustomerRegistrationRequest request){
+        // The request thread is released while the password is hashed
+        return customerService.addCustomer(request).thenApply(customerId -> {
+            String jwtToken = jwtUtil.issueToken(request.email(), customerId, Customer.ROLES); // We use the email here because it is unique. We cannot have users with the same email
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.AUTHORIZATION, jwtToken)
+                    .build();
+        });
+    }
+
+    @PostMapping("batch")
+    public List<CustomerBatchResult> registerCustomers(@RequestBody List<CustomerRegistrationRequest> requests){
+        return customerService.addCustomers(requests);
     }
 
     @DeleteMapping("{customer_id}")
@@ -45,13 +157,54 @@ public class CustomerController {
     }
 
     @PutMapping("{customer_id}")
-    public void updateCustomerById(@PathVariable("customer_id") Integer customer_id,
-                                   @RequestBody CustomerUpdateRequest request){
-        customerService.updateCustomerById(customer_id, request);
+    public ResponseEntity<CustomerDTO> updateCustomerById(@PathVariable("customer_id") Integer customer_id,
+                                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                          @RequestBody CustomerUpdateRequest request){
+        VersionedCustomer updated = customerService.updateCustomerById(customer_id, request, parseVersion(ifMatch));
+        return ResponseEntity.ok()
+                .eTag(updated.version().toString())
+                .body(updated.customer());
     }
 
-    /*@PutMapping("/update/gender")
-    public void updateGenderOfCustomers(){
-        customerService.updateGenderOfCustomers();
-    }*/
+    // The ETag is the version of the customer, e.g. "3". Without If-Match (or with *) the version is not checked
+    static Long parseVersion(String ifMatch){
+        if(ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")){
+            return null;
+        }
+
+        String version = ifMatch.trim();
+        if(version.startsWith("W/")){
+            version = version.substring(2);
+        }
+        try {
+            return Long.valueOf(version.replace("\"", ""));
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("If-Match %s does not match the customer".formatted(ifMatch));
+        }
+    }
+
+    // If-None-Match is *, or one or more ETags such as "3", W/"3". Compared weakly, as RFC 9110 asks for GETs
+    static boolean matchesAny(String ifNoneMatch, String eTag){
+        Set<String> eTags = eTags(ifNoneMatch);
+        return eTags.contains("*") || eTags.contains(eTag);
+    }
+
+    // The tags of an If-None-Match header without quotes and weak prefixes, * included
+    static Set<String> eTags(String ifNoneMatch){
+        if(ifNoneMatch == null){
+            return Set.of();
+        }
+        Set<String> eTags = new HashSet<>();
+        for(String candidate : ifNoneMatch.split(",")){
+            String tag = candidate.trim();
+            if(tag.startsWith("W/")){
+                tag = tag.substring(2);
+            }
+            tag = tag.replace("\"", "");
+            if(!tag.isEmpty()){
+                eTags.add(tag);
+            }
+        }
+        return eTags;
+    }
 }
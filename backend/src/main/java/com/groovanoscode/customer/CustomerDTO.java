@@ -10,4 +10,12 @@ public record CustomerDTO (
         Integer age,
         List<String> roles,
         String username
-){ }
+){
+    /**
+     * The customer as read by the projection queries: the roles are those of every customer and the username
+     * is the email, see {@link Customer#getUsername()}.
+     */
+    public CustomerDTO(Integer id, String name, String email, Gender gender, Integer age) {
+        this(id, name, email, gender, age, Customer.ROLES, email);
+    }
+}
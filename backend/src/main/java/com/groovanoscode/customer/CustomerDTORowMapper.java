@@ -0,0 +1,29 @@
+package com.groovanoscode.customer;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the rows of the projection queries, {@code SELECT id, name, email, gender, age}, straight into a
+ * {@link CustomerDTO}. By column index, so the driver does not look up every column by its name on every row.
+ */
+final class CustomerDTORowMapper implements RowMapper<CustomerDTO> {
+
+    static final CustomerDTORowMapper INSTANCE = new CustomerDTORowMapper();
+
+    private CustomerDTORowMapper() {
+    }
+
+    @Override
+    public CustomerDTO mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new CustomerDTO(
+                rs.getInt(1),
+                rs.getString(2),
+                rs.getString(3),
+                Gender.valueOf(rs.getString(4)),
+                rs.getInt(5)
+        );
+    }
+}
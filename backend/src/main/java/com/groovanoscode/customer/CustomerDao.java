@@ -1,22 +1,97 @@
 package com.groovanoscode.customer;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public interface CustomerDao {
     List<Customer> selectAllCustomers();
 
+    /**
+     * Keyset pagination: returns at most {@code limit} customers whose id is greater than {@code afterId},
+     * ordered by id. Unlike OFFSET paging the cost does not grow with the page number.
+     */
+    List<Customer> selectCustomersAfterId(Integer afterId, int limit);
+
+    /**
+     * Streams every customer ordered by id without loading the table into memory.
+     * The stream holds a database connection until it is closed, so always use it in a try-with-resources
+     * block and inside a transaction (the Postgres driver only uses a server-side cursor when autocommit is off).
+     */
+    Stream<Customer> streamAllCustomers();
+
     Optional<Customer> selectCustomerById(Integer customerId);
 
-    void insertCustomer(Customer customer);
+    // The projections read only the columns of a CustomerDTO, straight into it: no password hash and no Customer
+    // in between. For the reads that end up in a response.
+
+    /**
+     * {@link #selectCustomersAfterId} as DTOs, with their versions for the ETag of the page.
+     */
+    List<VersionedCustomer> selectVersionedCustomersAfterId(Integer afterId, int limit);
+
+    /**
+     * {@link #streamAllCustomers} as DTOs, with the same rules: try-with-resources and a transaction.
+     */
+    Stream<CustomerDTO> streamAllCustomerDTOs();
+
+    Optional<CustomerDTO> selectCustomerDTOById(Integer customerId);
+
+    /**
+     * {@link #selectCustomerDTOById} with the version, for the ETag of the customer.
+     */
+    Optional<VersionedCustomer> selectVersionedCustomerById(Integer customerId);
+
+    /**
+     * {@link #selectVersionedCustomersAfterId}, for a client that already has some versions of the page: when the
+     * {@link CustomerPage#digest} of the page is one of {@code digests}, only the digest is returned. Either way
+     * in one round trip.
+     */
+    VersionedCustomerPage selectVersionedCustomersAfterIdUnlessDigest(Integer afterId, int limit, Collection<String> digests);
+
+    /**
+     * Inserts the customer and returns its id, or an empty optional when its email is already taken
+     * (emails are unique whatever their case).
+     */
+    Optional<Integer> insertCustomer(Customer customer);
+
+    /**
+     * Inserts all customers with JDBC batching instead of one round trip per customer and returns the emails of
+     * those inserted. A customer whose email was taken in the meantime (e.g. by a registration since
+     * {@link #selectExistingEmails}) is skipped, the others are still inserted.
+     */
+    Set<String> insertCustomers(List<Customer> customers);
 
     boolean existsPersonWithEmail(String email);
 
-    void deleteCustomerById(Integer customerId);
+    /**
+     * Returns those of the given emails that already belong to a customer, with a single query.
+     * The emails must be normalized (see {@link Customer#normalizeEmail(String)}).
+     */
+    Set<String> selectExistingEmails(Collection<String> emails);
+
+    /**
+     * Deletes the customer in one statement and returns false when there was no customer with this id.
+     */
+    boolean deleteCustomerById(Integer customerId);
 
     boolean existsCustomerWithId(Integer customer_id);
 
-    void updateCustomer(Customer customer);
+    /**
+     * Replaces the password hash of the customer, e.g. after a change of the cost factor.
+     * Returns false when there was no customer with this id.
+     */
+    boolean updateCustomerPassword(Integer customerId, String password);
+
+    /**
+     * Sets the non null fields of {@code update} on the customer with the same id and increments its version.
+     * When {@code expectedVersion} is not null the customer is only updated if it still has that version.
+     * Returns the updated customer, or an empty optional when nothing was updated: unknown id, stale version,
+     * no actual change or an email that belongs to another customer.
+     */
+    Optional<Customer> updateCustomer(Customer update, Long expectedVersion);
 
     Optional<Customer> selectUserByEmail(String email);
 
@@ -0,0 +1,178 @@
+package com.groovanoscode.customer;
+
+import com.groovanoscode.batch.BatchJobCheckpoint;
+import com.groovanoscode.batch.BatchJobCheckpointDao;
+import com.groovanoscode.batch.BatchThrottle;
+import com.groovanoscode.exception.DuplicateResourceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sets the gender of every customer from the parity of its age (even: FEMALE, odd: MALE).
+ * <p>
+ * The rule fits in SQL, so every chunk is one set-based UPDATE over the next {@code chunkSize} ids
+ * instead of one statement per customer. The chunk and its checkpoint commit together: after a crash
+ * the job resumes after the last committed chunk. Between chunks the {@link BatchThrottle} gives the
+ * connection pool back to the requests.
+ * <p>
+ * The updates go around the DAOs, so the customer caches are cleared once the job stops, finished or not.
+ */
+@Service
+public class CustomerGenderJob {
+
+    public static final String JOB_NAME = "update-gender-of-customers";
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerGenderJob.class);
+
+    // Only the rows whose gender really changes are written (and get a new version)
+    private static final String UPDATE_CHUNK = """
+            WITH chunk AS (
+                SELECT id, CASE WHEN age % 2 = 0 THEN 'FEMALE' ELSE 'MALE' END AS gender
+                FROM customer
+                WHERE id > ?
+                ORDER BY id
+                LIMIT ?
+            ), updated AS (
+                UPDATE customer c
+                SET gender = chunk.gender, version = c.version + 1
+                FROM chunk
+                WHERE c.id = chunk.id AND c.gender <> chunk.gender
+                RETURNING c.id
+            )
+            SELECT (SELECT count(*) FROM chunk) AS processed,
+                   (SELECT max(id) FROM chunk) AS last_id,
+                   (SELECT count(*) FROM updated) AS updated
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BatchJobCheckpointDao batchJobCheckpointDao;
+    private final BatchThrottle batchThrottle;
+    private final TaskExecutor taskExecutor;
+    private final CustomerCache customerCache;
+    private final ObjectProvider<CustomerSecondLevelCache> secondLevelCache;
+    private final int chunkSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public CustomerGenderJob(JdbcTemplate jdbcTemplate , TransactionTemplate transactionTemplate ,
+                             BatchJobCheckpointDao batchJobCheckpointDao , BatchThrottle batchThrottle ,
+                             TaskExecutor taskExecutor , CustomerCache customerCache ,
+                             ObjectProvider<CustomerSecondLevelCache> secondLevelCache ,
+                             @Value("${batch.chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.batchJobCheckpointDao = batchJobCheckpointDao;
+        this.batchThrottle = batchThrottle;
+        this.taskExecutor = taskExecutor;
+        this.customerCache = customerCache;
+        this.secondLevelCache = secondLevelCache;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Runs the job in the background, the progress is on /actuator/batchjobs.
+     */
+    public void start() {
+        acquire();
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    runChunks();
+                } catch (RuntimeException e) {
+                    log.error("Job {} failed, it resumes from its checkpoint on the next start", JOB_NAME, e);
+                } finally {
+                    release();
+                }
+            });
+        } catch (TaskRejectedException e) {
+            // Never started, so the next start must not find it running
+            running.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the job in the calling thread and returns the final checkpoint.
+     */
+    public BatchJobCheckpoint run() {
+        acquire();
+        try {
+            return runChunks();
+        } finally {
+            release();
+        }
+    }
+
+    private void acquire() {
+        if(!running.compareAndSet(false, true)){
+            throw new DuplicateResourceException("job %s is already running".formatted(JOB_NAME));
+        }
+    }
+
+    // Also after a failed or interrupted run, its committed chunks are written
+    private void release() {
+        try {
+            customerCache.invalidateAll();
+            secondLevelCache.ifAvailable(CustomerSecondLevelCache::evictAll);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private BatchJobCheckpoint runChunks() {
+        // A job that did not finish goes on where it stopped, a finished one starts over
+        BatchJobCheckpoint checkpoint = batchJobCheckpointDao.selectCheckpoint(JOB_NAME)
+                .filter(previous -> !previous.finished())
+                .orElseGet(() -> batchJobCheckpointDao.start(JOB_NAME));
+
+        long lastId = checkpoint.lastId();
+        while(true){
+            try {
+                batchThrottle.pause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.info("Job {} interrupted after id {}", JOB_NAME, lastId);
+                return batchJobCheckpointDao.selectCheckpoint(JOB_NAME).orElseThrow();
+            }
+
+            long afterId = lastId;
+            Long chunkLastId = transactionTemplate.execute(status -> updateChunk(afterId));
+            if(chunkLastId == null){
+                break;
+            }
+            lastId = chunkLastId;
+        }
+
+        batchJobCheckpointDao.finish(JOB_NAME);
+        return batchJobCheckpointDao.selectCheckpoint(JOB_NAME).orElseThrow();
+    }
+
+    // Returns the last id of the chunk, or null when there was nothing left to update
+    private Long updateChunk(long afterId) {
+        Chunk chunk = jdbcTemplate.queryForObject(UPDATE_CHUNK, (rs, rowNum) -> new Chunk(
+                rs.getLong("processed"),
+                rs.getLong("last_id"),
+                rs.getLong("updated")
+        ), afterId, chunkSize);
+
+        if(chunk == null || chunk.processed() == 0){
+            return null;
+        }
+
+        batchJobCheckpointDao.advance(JOB_NAME, chunk.lastId(), chunk.processed(), chunk.updated());
+        return chunk.lastId();
+    }
+
+    private record Chunk(long processed, long lastId, long updated) {
+    }
+}
@@ -0,0 +1,124 @@
+package com.groovanoscode.customer;
+
+import com.groovanoscode.exception.RequestValidationException;
+import com.groovanoscode.jwt.JWTUtil;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+
+/**
+ * The endpoints of {@link CustomerController} for the reactive profile, routed by {@link CustomerRouter}.
+ */
+@Component
+@Profile("reactive")
+public class CustomerHandler {
+
+    private final ReactiveCustomerService customerService;
+
+    private final JWTUtil jwtUtil;
+
+    public CustomerHandler(ReactiveCustomerService customerService , JWTUtil jwtUtil) {
+        this.customerService = customerService;
+        this.jwtUtil = jwtUtil;
+    }
+
+    public Mono<ServerResponse> getCustomers(ServerRequest request){
+        Integer after = request.queryParam("after").map(value -> toInteger("after", value)).orElse(null);
+        int limit = request.queryParam("limit").map(value -> toInteger("limit", value)).orElse(CustomerService.MAX_PAGE_SIZE);
+
+        return customerService.getCustomers(after, limit).flatMap(page -> {
+            if(notModified(request, page.eTag())){
+                return notModified(page.eTag());
+            }
+            ServerResponse.BodyBuilder response = ServerResponse.ok()
+                    .eTag(page.eTag())
+                    .cacheControl(CustomerController.REVALIDATE);
+            if(page.nextCursor() != null){
+                response.header(CustomerController.NEXT_CURSOR_HEADER, page.nextCursor().toString());
+            }
+            return response.bodyValue(page.customers());
+        });
+    }
+
+    public Mono<ServerResponse> exportCustomers(ServerRequest request){
+        // One JSON document per line, written as the rows arrive
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(customerService.exportCustomers(), CustomerDTO.class);
+    }
+
+    public Mono<ServerResponse> getAuthenticatedCustomer(ServerRequest request){
+        return request.principal()
+                .cast(Authentication.class)
+                .flatMap(customerService::getAuthenticatedCustomer)
+                .flatMap(customer -> ServerResponse.ok().bodyValue(customer));
+    }
+
+    public Mono<ServerResponse> getCustomer(ServerRequest request){
+        return customerService.getVersionedCustomer(customerId(request))
+                .flatMap(customer -> notModified(request, customer.version().toString())
+                        ? notModified(customer.version().toString())
+                        : ServerResponse.ok()
+                                .eTag(customer.version().toString())
+                                .cacheControl(CustomerController.REVALIDATE)
+                                .bodyValue(customer.customer()));
+    }
+
+    public Mono<ServerResponse> registerCustomer(ServerRequest request){
+        return request.bodyToMono(CustomerRegistrationRequest.class)
+                .flatMap(registration -> customerService.addCustomer(registration)
+                        .map(customerId -> jwtUtil.issueToken(registration.email(), customerId, Customer.ROLES)))
+                .flatMap(jwtToken -> ServerResponse.ok()
+                        .header(HttpHeaders.AUTHORIZATION, jwtToken)
+                        .build());
+    }
+
+    public Mono<ServerResponse> deleteCustomer(ServerRequest request){
+        return customerService.deleteCustomer(customerId(request))
+                .then(ServerResponse.ok().build());
+    }
+
+    public Mono<ServerResponse> updateCustomer(ServerRequest request){
+        Integer customerId = customerId(request);
+        Long expectedVersion = CustomerController.parseVersion(request.headers().firstHeader(HttpHeaders.IF_MATCH));
+
+        return request.bodyToMono(CustomerUpdateRequest.class)
+                .flatMap(update -> customerService.updateCustomerById(customerId, update, expectedVersion))
+                .flatMap(updated -> ServerResponse.ok()
+                        .eTag(updated.version().toString())
+                        .bodyValue(updated.customer()));
+    }
+
+    // Unlike the controllers, the functional endpoints do not check If-None-Match on their own. The customers
+    // are read anyway, but neither serialized nor sent
+    private static boolean notModified(ServerRequest request, String eTag){
+        return CustomerController.matchesAny(request.headers().firstHeader(HttpHeaders.IF_NONE_MATCH), eTag);
+    }
+
+    private static Mono<ServerResponse> notModified(String eTag){
+        return ServerResponse.status(HttpStatus.NOT_MODIFIED)
+                .eTag(eTag)
+                .cacheControl(CustomerController.REVALIDATE)
+                .build();
+    }
+
+    private static Integer customerId(ServerRequest request){
+        return toInteger("customerId", request.pathVariable("customerId"));
+    }
+
+    // A 400 like on the servlet stack, not the 500 of a NumberFormatException
+    private static Integer toInteger(String name, String value){
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new RequestValidationException("Invalid value for %s".formatted(name));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.groovanoscode.customer;
+
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Takes the ids of the JPA inserts from customer_id_seq {@value #ALLOCATION_SIZE} at a time, in one query.
+ * <p>
+ * Hibernate's pooled optimizer would need the sequence to increment by the allocation size, and then every insert
+ * through the column default (jdbc DAO, CSV import, R2DBC) would skip as many ids. Here every id is a nextval of
+ * its own, the sequence keeps its increment of 1, only the round trips are shared.
+ */
+public class CustomerIdGenerator implements IdentifierGenerator {
+
+    static final int ALLOCATION_SIZE = 50;
+
+    private static final String NEXT_IDS = "SELECT nextval('customer_id_seq') FROM generate_series(1, %s)"
+            .formatted(ALLOCATION_SIZE);
+
+    // The ids not used yet, shared by all sessions. Those left at shutdown are lost, like with the pooled optimizer
+    private final Deque<Integer> ids = new ArrayDeque<>(ALLOCATION_SIZE);
+
+    @Override
+    public synchronized Object generate(SharedSessionContractImplementor session, Object object) {
+        if(ids.isEmpty()){
+            allocate(session);
+        }
+        return ids.poll();
+    }
+
+    // Through the JDBC coordinator of the session, like Hibernate's own sequence generators: a query would
+    // auto flush the session that is asking for the id
+    private void allocate(SharedSessionContractImplementor session) {
+        JdbcCoordinator jdbcCoordinator = session.getJdbcCoordinator();
+        PreparedStatement statement = jdbcCoordinator.getStatementPreparer().prepareStatement(NEXT_IDS);
+        try {
+            ResultSet resultSet = jdbcCoordinator.getResultSetReturn().extract(statement);
+            while(resultSet.next()){
+                ids.add(resultSet.getInt(1));
+            }
+        } catch (SQLException e) {
+            throw session.getJdbcServices().getSqlExceptionHelper()
+                    .convert(e, "could not allocate customer ids", NEXT_IDS);
+        } finally {
+            jdbcCoordinator.getLogicalConnection().getResourceRegistry().release(statement);
+            jdbcCoordinator.afterStatementExecution();
+        }
+    }
+}
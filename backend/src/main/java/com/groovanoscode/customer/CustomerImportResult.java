@@ -0,0 +1,13 @@
+package com.groovanoscode.customer;
+
+/**
+ * Counts of a CSV import. Duplicates are the valid rows whose email was already taken,
+ * either by an existing customer or by an earlier row of the same file.
+ */
+public record CustomerImportResult(
+        long rows,
+        long imported,
+        long duplicates,
+        long invalid
+) {
+}
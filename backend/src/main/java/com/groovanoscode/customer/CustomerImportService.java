@@ -0,0 +1,225 @@
+package com.groovanoscode.customer;
+
+import com.groovanoscode.exception.RequestValidationException;
+import com.groovanoscode.security.ParallelPasswordEncoder;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads customers from a CSV file with the header {@value #CSV_HEADER} and plain text passwords.
+ * <p>
+ * The file is read in chunks of {@value #CHUNK_SIZE} rows, so the memory use does not depend on its size.
+ * For every chunk we keep the first row of each email and drop the emails that already exist (hashing is by far
+ * the most expensive step), hash the remaining passwords in parallel, COPY the rows into a staging table and
+ * merge them into customer with one INSERT ... SELECT. Every chunk is its own transaction.
+ */
+@Service
+public class CustomerImportService {
+
+    static final String CSV_HEADER = "name,email,password,age,gender";
+    static final int CHUNK_SIZE = 5000;
+
+    private static final String CREATE_STAGING_TABLE = """
+            CREATE TEMP TABLE IF NOT EXISTS customer_import(
+                name TEXT NOT NULL,
+                email TEXT NOT NULL,
+                password TEXT NOT NULL,
+                age INT NOT NULL,
+                gender TEXT NOT NULL
+            ) ON COMMIT DELETE ROWS
+            """;
+
+    private static final String COPY_INTO_STAGING_TABLE = """
+            COPY customer_import(name, email, password, age, gender) FROM STDIN (FORMAT csv)
+            """;
+
+    // The emails of the chunk are unique already, ON CONFLICT skips those registered in the meantime
+    private static final String MERGE_STAGING_TABLE = """
+            INSERT INTO customer(name, email, password, age, gender)
+            SELECT name, email, password, age, gender
+            FROM customer_import
+            ON CONFLICT (lower(email)) DO NOTHING
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CustomerDao customerDao;
+    private final ParallelPasswordEncoder parallelPasswordEncoder;
+
+    public CustomerImportService(JdbcTemplate jdbcTemplate , TransactionTemplate transactionTemplate ,
+                                 @Qualifier("jdbc") CustomerDao customerDao , ParallelPasswordEncoder parallelPasswordEncoder) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.customerDao = customerDao;
+        this.parallelPasswordEncoder = parallelPasswordEncoder;
+    }
+
+    public CustomerImportResult importCustomers(Reader csv) throws IOException {
+        BufferedReader reader = new BufferedReader(csv);
+
+        String header = reader.readLine();
+        if(header == null || !header.strip().equalsIgnoreCase(CSV_HEADER)){
+            throw new RequestValidationException("the first line must be the header %s".formatted(CSV_HEADER));
+        }
+
+        long rows = 0;
+        long invalid = 0;
+        long imported = 0;
+        List<Customer> chunk = new ArrayList<>(CHUNK_SIZE);
+
+        String line;
+        while((line = reader.readLine()) != null){
+            if(line.isBlank()){
+                continue;
+            }
+            rows++;
+
+            Customer customer = parseCustomer(line);
+            if(customer == null){
+                invalid++;
+                continue;
+            }
+
+            chunk.add(customer);
+            if(chunk.size() == CHUNK_SIZE){
+                imported += importChunk(chunk);
+                chunk.clear();
+            }
+        }
+
+        if(!chunk.isEmpty()){
+            imported += importChunk(chunk);
+        }
+
+        return new CustomerImportResult(rows, imported, rows - invalid - imported, invalid);
+    }
+
+    private int importChunk(List<Customer> chunk){
+        // The first row of an email repeated in the chunk wins, the others are skipped before they are hashed
+        Map<String, Customer> customersByEmail = new LinkedHashMap<>();
+        chunk.forEach(customer -> customersByEmail.putIfAbsent(customer.getEmail(), customer));
+
+        Set<String> existingEmails = customerDao.selectExistingEmails(customersByEmail.keySet());
+        List<Customer> customers = customersByEmail.values().stream()
+                .filter(customer -> !existingEmails.contains(customer.getEmail()))
+                .toList();
+        if(customers.isEmpty()){
+            return 0;
+        }
+
+        List<String> hashedPasswords = parallelPasswordEncoder.encodeAll(
+                customers.stream().map(Customer::getPassword).toList());
+        String rows = toCsv(customers, hashedPasswords);
+
+        Integer imported = transactionTemplate.execute(status ->
+                jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+                    try(Statement statement = connection.createStatement()){
+                        statement.execute(CREATE_STAGING_TABLE);
+                    }
+
+                    CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+                    try {
+                        copyManager.copyIn(COPY_INTO_STAGING_TABLE, new StringReader(rows));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+
+                    try(Statement statement = connection.createStatement()){
+                        return statement.executeUpdate(MERGE_STAGING_TABLE);
+                    }
+                }));
+
+        return imported == null ? 0 : imported;
+    }
+
+    // Returns null when the line is not a valid customer
+    static Customer parseCustomer(String line){
+        List<String> fields = parseCsvLine(line);
+        if(fields.size() != 5){
+            return null;
+        }
+
+        String name = fields.get(0).strip();
+        String email = Customer.normalizeEmail(fields.get(1));
+        String password = fields.get(2);
+        if(name.isEmpty() || email.isEmpty() || password.isEmpty()){
+            return null;
+        }
+
+        try {
+            int age = Integer.parseInt(fields.get(3).strip());
+            Gender gender = Gender.valueOf(fields.get(4).strip().toUpperCase());
+            return age < 0 ? null : new Customer(name, email, password, age, gender);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Splits a CSV line. Fields can be quoted to contain commas and doubled quotes, but not line breaks.
+     */
+    static List<String> parseCsvLine(String line){
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if(quoted){
+                if(c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"'){
+                    field.append('"');
+                    i++;
+                } else if(c == '"'){
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if(c == '"'){
+                quoted = true;
+            } else if(c == ','){
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+
+        return fields;
+    }
+
+    private static String toCsv(List<Customer> customers, List<String> hashedPasswords){
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < customers.size(); i++) {
+            Customer customer = customers.get(i);
+            csv.append(quote(customer.getName())).append(',')
+                    .append(quote(customer.getEmail())).append(',')
+                    .append(quote(hashedPasswords.get(i))).append(',')
+                    .append(customer.getAge()).append(',')
+                    .append(customer.getGender().name())
+                    .append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static String quote(String value){
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -3,13 +3,27 @@ package com.groovanoscode.customer;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
-
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository("jdbc")
 public class CustomerJDBCDataAccessService implements CustomerDao{
 
+    private static final int STREAM_FETCH_SIZE = 1000;
+    private static final int INSERT_BATCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
     private final CustomerRowMapper customerRowMapper;
 
@@ -23,7 +37,7 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
         // Instead of "id, name, email, age" you can use *
         // SELECT * from customer
         var sql = """
-                SELECT id, name, email, password, age, gender
+                SELECT id, name, email, password, age, gender, version
                 FROM customer
                 LIMIT 1000
                 """;
@@ -32,10 +46,40 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
 
     }
 
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer afterId, int limit) {
+        // WHERE id > ? uses the primary key index, so every page costs the same no matter how deep we are
+        var sql = """
+                SELECT id, name, email, password, age, gender, version
+                FROM customer
+                WHERE id > ?
+                ORDER BY id
+                LIMIT ?
+                """;
+
+        return jdbcTemplate.query(sql, customerRowMapper, afterId, limit);
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        var sql = """
+                SELECT id, name, email, password, age, gender, version
+                FROM customer
+                ORDER BY id
+                """;
+
+        // With a fetch size (and autocommit off) the driver reads the rows through a cursor, STREAM_FETCH_SIZE at a time
+        return jdbcTemplate.queryForStream(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            return statement;
+        }, customerRowMapper);
+    }
+
     @Override
     public Optional<Customer> selectCustomerById(Integer customerId) {
         var sql = """
-                SELECT id, name, email, password, age, gender 
+                SELECT id, name, email, password, age, gender, version
                 FROM customer
                 WHERE id=?
                 """;
@@ -47,107 +91,275 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
+    public List<VersionedCustomer> selectVersionedCustomersAfterId(Integer afterId, int limit) {
         var sql = """
-                INSERT INTO customer(name, email, password, age, gender)
-                VALUES (?, ?, ?, ?, ?)
+                SELECT id, name, email, gender, age, version
+                FROM customer
+                WHERE id > ?
+                ORDER BY id
+                LIMIT ?
                 """;
 
-        //customer.getGender() is an Enum but this has to be a String here. It is the reason why we have customer.getGender().name()
-        int result = jdbcTemplate.update(sql, customer.getName(), customer.getEmail(), customer.getPassword(), customer.getAge(), customer.getGender().name());
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new VersionedCustomer(
+                CustomerDTORowMapper.INSTANCE.mapRow(rs, rowNum),
+                rs.getLong(6)
+        ), afterId, limit);
+    }
 
-        System.out.println("jdbcTemplate.update = " + result);
+    @Override
+    public VersionedCustomerPage selectVersionedCustomersAfterIdUnlessDigest(Integer afterId, int limit, Collection<String> digests) {
+        // A single row with the digest alone when the client has it, so only the digest leaves the database.
+        // Otherwise the customers of the page, each with the digest (a single row of nulls for an empty page)
+        var sql = """
+                WITH page AS (
+                    SELECT id, name, email, gender, age, version
+                    FROM customer
+                    WHERE id > ?
+                    ORDER BY id
+                    LIMIT ?
+                ), digest AS (
+                    SELECT md5(coalesce(string_agg(id || ':' || version, ',' ORDER BY id), '')) AS digest
+                    FROM page
+                )
+                SELECT page.id, page.name, page.email, page.gender, page.age, page.version, digest.digest
+                FROM digest
+                LEFT JOIN page ON digest.digest <> ALL(?)
+                ORDER BY page.id
+                """;
 
+        return jdbcTemplate.query(sql, statement -> {
+            statement.setInt(1, afterId);
+            statement.setInt(2, limit);
+            statement.setArray(3, statement.getConnection().createArrayOf("text", digests.toArray()));
+        }, rs -> {
+            String digest = null;
+            List<VersionedCustomer> customers = new ArrayList<>();
+            while (rs.next()) {
+                digest = rs.getString("digest");
+                if (rs.getObject("id") != null) {
+                    customers.add(new VersionedCustomer(
+                            CustomerDTORowMapper.INSTANCE.mapRow(rs, customers.size()),
+                            rs.getLong("version")
+                    ));
+                }
+            }
+            return new VersionedCustomerPage(digest, digests.contains(digest) ? null : customers);
+        });
     }
 
     @Override
-    public boolean existsPersonWithEmail(String email) {
+    public Stream<CustomerDTO> streamAllCustomerDTOs() {
         var sql = """
-                SELECT count(id)
+                SELECT id, name, email, gender, age
                 FROM customer
-                WHERE email = ?
+                ORDER BY id
                 """;
 
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, email);
-
-        return count != null && count > 0;
+        return jdbcTemplate.queryForStream(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            return statement;
+        }, CustomerDTORowMapper.INSTANCE);
     }
 
     @Override
-    public void deleteCustomerById(Integer customerId) {
+    public Optional<CustomerDTO> selectCustomerDTOById(Integer customerId) {
         var sql = """
-                DELETE
+                SELECT id, name, email, gender, age
                 FROM customer
                 WHERE id = ?
                 """;
 
-        int result = jdbcTemplate.update(sql, customerId);
-        System.out.println("deleteCustomerById result = " + result);
+        return jdbcTemplate.query(sql, CustomerDTORowMapper.INSTANCE, customerId)
+                .stream()
+                .findFirst();
     }
 
     @Override
-    public boolean existsCustomerWithId(Integer customer_id) {
+    public Optional<VersionedCustomer> selectVersionedCustomerById(Integer customerId) {
         var sql = """
-                SELECT count(id) 
+                SELECT id, name, email, gender, age, version
                 FROM customer
                 WHERE id = ?
                 """;
 
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, customer_id);
-
-        return count != null && count > 0;
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new VersionedCustomer(
+                        CustomerDTORowMapper.INSTANCE.mapRow(rs, rowNum),
+                        rs.getLong(6)
+                ), customerId)
+                .stream()
+                .findFirst();
     }
 
     @Override
-    public void updateCustomer(Customer customer) {
-        if(customer.getName() != null){
-            String sql = "UPDATE customer SET name = ? WHERE id = ?";
+    public Optional<Integer> insertCustomer(Customer customer) {
+        // One round trip: the unique index on lower(email) rejects a taken email, even when two sign-ups race
+        var sql = """
+                INSERT INTO customer(name, email, password, age, gender)
+                VALUES (?, ?, ?, ?, ?)
+                ON CONFLICT (lower(email)) DO NOTHING
+                RETURNING id
+                """;
 
-            int result = jdbcTemplate.update(sql, customer.getName(), customer.getId());
+        //customer.getGender() is an Enum but this has to be a String here. It is the reason why we have customer.getGender().name()
+        return jdbcTemplate.queryForList(sql, Integer.class,
+                        customer.getName(), customer.getEmail(), customer.getPassword(), customer.getAge(), customer.getGender().name())
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    @Transactional
+    public Set<String> insertCustomers(List<Customer> customers) {
+        // Like insertCustomer, a taken email is skipped instead of failing the whole batch. One statement per
+        // INSERT_BATCH_SIZE customers, every column as an array, and RETURNING tells which customers were inserted
+        var sql = """
+                INSERT INTO customer(name, email, password, age, gender)
+                SELECT * FROM unnest(?::text[], ?::text[], ?::text[], ?::int[], ?::text[])
+                ON CONFLICT (lower(email)) DO NOTHING
+                RETURNING email
+                """;
 
-            System.out.println("update customer name result = " + result);
+        Set<String> inserted = new HashSet<>();
+        for (int from = 0; from < customers.size(); from += INSERT_BATCH_SIZE) {
+            List<Customer> chunk = customers.subList(from, Math.min(from + INSERT_BATCH_SIZE, customers.size()));
+            inserted.addAll(jdbcTemplate.query(sql, statement -> {
+                Connection connection = statement.getConnection();
+                statement.setArray(1, connection.createArrayOf("text", chunk.stream().map(Customer::getName).toArray()));
+                statement.setArray(2, connection.createArrayOf("text", chunk.stream().map(Customer::getEmail).toArray()));
+                statement.setArray(3, connection.createArrayOf("text", chunk.stream().map(Customer::getPassword).toArray()));
+                statement.setArray(4, connection.createArrayOf("int4", chunk.stream().map(Customer::getAge).toArray()));
+                statement.setArray(5, connection.createArrayOf("text", chunk.stream().map(customer -> customer.getGender().name()).toArray()));
+            }, (rs, rowNum) -> rs.getString(1)));
         }
+        return inserted;
+    }
 
-        if(customer.getEmail() != null){
-            String sql = "UPDATE customer SET email = ? WHERE id = ?";
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        var sql = """
+                SELECT EXISTS (SELECT 1 FROM customer WHERE lower(email) = lower(?))
+                """;
 
-            int result = jdbcTemplate.update(sql, customer.getEmail(), customer.getId());
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, email));
+    }
 
-            System.out.println("update customer email result = " + result);
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        if(emails.isEmpty()){
+            return Set.of();
         }
 
-        if(customer.getPassword() != null){
-            String sql = "UPDATE customer SET password = ? WHERE id = ?";
+        var sql = """
+                SELECT lower(email) AS email
+                FROM customer
+                WHERE lower(email) = ANY(?)
+                """;
 
-            int result = jdbcTemplate.update(sql, customer.getPassword(), customer.getId());
+        // One array parameter instead of an IN list with one placeholder per email
+        return new HashSet<>(jdbcTemplate.query(
+                sql,
+                statement -> statement.setArray(1, statement.getConnection().createArrayOf("text", emails.toArray())),
+                (rs, rowNum) -> rs.getString("email")));
+    }
 
-            System.out.println("update customer email result = " + result);
-        }
+    @Override
+    public boolean deleteCustomerById(Integer customerId) {
+        var sql = """
+                DELETE
+                FROM customer
+                WHERE id = ?
+                """;
+
+        // The affected row count already tells whether the customer existed
+        return jdbcTemplate.update(sql, customerId) > 0;
+    }
+
+    @Override
+    public boolean updateCustomerPassword(Integer customerId, String password) {
+        var sql = """
+                UPDATE customer
+                SET password = ?
+                WHERE id = ?
+                """;
+
+        return jdbcTemplate.update(sql, password, customerId) > 0;
+    }
 
-        if(customer.getAge() != null){
-            String sql = "UPDATE customer SET age = ? WHERE id = ?";
+    @Override
+    public boolean existsCustomerWithId(Integer customer_id) {
+        var sql = """
+                SELECT EXISTS (SELECT 1 FROM customer WHERE id = ?)
+                """;
 
-            int result = jdbcTemplate.update(sql, customer.getAge(), customer.getId());
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, customer_id));
+    }
 
-            System.out.println("update customer age result = " + result);
+    @Override
+    public Optional<Customer> updateCustomer(Customer update, Long expectedVersion) {
+        // The non null fields of the update are the columns to change
+        Map<String, Object> changes = new LinkedHashMap<>();
+        if(update.getName() != null){
+            changes.put("name", update.getName());
+        }
+        if(update.getEmail() != null){
+            changes.put("email", update.getEmail());
+        }
+        if(update.getPassword() != null){
+            changes.put("password", update.getPassword());
+        }
+        if(update.getAge() != null){
+            changes.put("age", update.getAge());
+        }
+        if(update.getGender() != null){
+            //customer.getGender() is an Enum but this has to be a String here. It is the reason why we have customer.getGender().name()
+            changes.put("gender", update.getGender().name());
         }
 
-        if(customer.getGender() != null){
-            String sql = "UPDATE customer SET gender = ? WHERE id = ?";
+        if(changes.isEmpty()){
+            return Optional.empty();
+        }
 
-            //customer.getGender() is an Enum but this has to be a String here. It is the reason why we have customer.getGender().name()
-            int result = jdbcTemplate.update(sql, customer.getGender().name(), customer.getId());
+        // One statement instead of one per column: the row is only touched when the version still matches,
+        // when at least one value really changes and when the new email is not taken by another customer
+        StringBuilder sql = new StringBuilder("UPDATE customer SET ");
+        List<Object> args = new ArrayList<>();
+        changes.forEach((column, value) -> {
+            sql.append(column).append(" = ?, ");
+            args.add(value);
+        });
+        sql.append("version = version + 1 WHERE id = ?");
+        args.add(update.getId());
+
+        if(expectedVersion != null){
+            sql.append(" AND version = ?");
+            args.add(expectedVersion);
+        }
 
-            System.out.println("update customer gender result = " + result);
+        sql.append(changes.keySet().stream()
+                .map(column -> column + " IS DISTINCT FROM ?")
+                .collect(Collectors.joining(" OR ", " AND (", ")")));
+        args.addAll(changes.values());
+
+        if(update.getEmail() != null){
+            sql.append(" AND NOT EXISTS (SELECT 1 FROM customer other WHERE lower(other.email) = lower(?) AND other.id <> ?)");
+            args.add(update.getEmail());
+            args.add(update.getId());
         }
+
+        sql.append(" RETURNING id, name, email, password, age, gender, version");
+
+        return jdbcTemplate.query(sql.toString(), customerRowMapper, args.toArray())
+                .stream()
+                .findFirst();
     }
 
     @Override
     public Optional<Customer> selectUserByEmail(String email) {
         var sql = """
-                SELECT id, name, email, password, age, gender 
+                SELECT id, name, email, password, age, gender, version
                 FROM customer
-                WHERE email=?
+                WHERE lower(email) = lower(?)
                 """;
 
 
@@ -1,19 +1,30 @@
 package com.groovanoscode.customer;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository("jpa")
 public class CustomerJPADataAccessService implements CustomerDao{
 
     private final CustomerRepository customerRepository;
+    private final boolean secondLevelCache;
 
-    public CustomerJPADataAccessService(CustomerRepository customerRepository) {
+    public CustomerJPADataAccessService(CustomerRepository customerRepository ,
+                                        @Value("${customer.second-level-cache.enabled:false}") boolean secondLevelCache) {
         this.customerRepository = customerRepository;
+        this.secondLevelCache = secondLevelCache;
     }
 
     @Override
@@ -22,14 +33,75 @@ public class CustomerJPADataAccessService implements CustomerDao{
         return page.getContent();
     }
 
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer afterId, int limit) {
+        // Always the first page of "id > afterId", so no OFFSET and no count query
+        return customerRepository.findByIdGreaterThan(afterId, PageRequest.of(0, limit, Sort.by("id")));
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return customerRepository.streamAllCustomers();
+    }
+
     @Override
     public Optional<Customer> selectCustomerById(Integer customerId) {
         return customerRepository.findById(customerId);
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
-        customerRepository.save(customer);
+    public List<VersionedCustomer> selectVersionedCustomersAfterId(Integer afterId, int limit) {
+        // The query orders by id itself
+        return customerRepository.findVersionedCustomersByIdGreaterThan(afterId, PageRequest.of(0, limit));
+    }
+
+    // The page is read either way, one query too
+    @Override
+    public VersionedCustomerPage selectVersionedCustomersAfterIdUnlessDigest(Integer afterId, int limit, Collection<String> digests) {
+        return VersionedCustomerPage.of(selectVersionedCustomersAfterId(afterId, limit), digests);
+    }
+
+    @Override
+    public Stream<CustomerDTO> streamAllCustomerDTOs() {
+        return customerRepository.streamAllCustomerDTOs();
+    }
+
+    @Override
+    public Optional<CustomerDTO> selectCustomerDTOById(Integer customerId) {
+        return customerRepository.findCustomerDTOById(customerId);
+    }
+
+    @Override
+    public Optional<VersionedCustomer> selectVersionedCustomerById(Integer customerId) {
+        return customerRepository.findVersionedCustomerById(customerId);
+    }
+
+    @Override
+    public Optional<Integer> insertCustomer(Customer customer) {
+        // The flush hits the unique index on lower(email) right away, instead of at some later commit
+        try {
+            return Optional.of(customerRepository.saveAndFlush(customer).getId());
+        } catch (DataIntegrityViolationException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Set<String> insertCustomers(List<Customer> customers) {
+        // One transaction, the ids come 50 per round trip (see CustomerIdGenerator), and the flush
+        // at commit sends the inserts in batches of hibernate.jdbc.batch_size
+        try {
+            customerRepository.saveAll(customers);
+            return customers.stream().map(Customer::getEmail).collect(Collectors.toSet());
+        } catch (DataIntegrityViolationException e) {
+            // An email was taken since the check and the whole batch rolled back. JPA has no ON CONFLICT, so we
+            // insert them one at a time to skip the taken ones, like the jdbc DAO does
+            return customers.stream()
+                    .filter(customer -> insertCustomer(new Customer(customer.getName(), customer.getEmail(),
+                            customer.getPassword(), customer.getAge(), customer.getGender())).isPresent())
+                    .map(Customer::getEmail)
+                    .collect(Collectors.toSet());
+        }
     }
 
     @Override
@@ -38,8 +110,19 @@ public class CustomerJPADataAccessService implements CustomerDao{
     }
 
     @Override
-    public void deleteCustomerById(Integer customerId) {
-        customerRepository.deleteById(customerId);
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return emails.isEmpty() ? Set.of() : customerRepository.findExistingEmails(emails);
+    }
+
+    @Override
+    public boolean deleteCustomerById(Integer customerId) {
+        // deleteById would first load the customer
+        return customerRepository.deleteCustomerById(customerId) > 0;
+    }
+
+    @Override
+    public boolean updateCustomerPassword(Integer customerId, String password) {
+        return customerRepository.updateCustomerPassword(customerId, password) > 0;
     }
 
     @Override
@@ -48,13 +131,25 @@ public class CustomerJPADataAccessService implements CustomerDao{
     }
 
     @Override
-    public void updateCustomer(Customer customer) {
-        customerRepository.save(customer);
+    public Optional<Customer> updateCustomer(Customer update, Long expectedVersion) {
+        return customerRepository.findById(update.getId())
+                .filter(customer -> expectedVersion == null || expectedVersion.equals(customer.getVersion()))
+                .filter(customer -> update.getEmail() == null
+                        || update.getEmail().equals(customer.getEmail())
+                        || !customerRepository.existsCustomerByEmail(update.getEmail()))
+                .filter(customer -> customer.applyChanges(update))
+                // Hibernate checks the version again when flushing, so an update between the find and the save still fails
+                .map(customerRepository::saveAndFlush);
     }
 
     @Override
     public Optional<Customer> selectUserByEmail(String email) {
-        return customerRepository.findCustomerByEmail(email);
+        if(!secondLevelCache){
+            return customerRepository.findCustomerByEmail(email);
+        }
+        // By natural id, so the second-level cache answers without a query
+        String naturalId = Customer.normalizeEmail(email);
+        return naturalId == null ? Optional.empty() : customerRepository.findCustomerByNaturalId(naturalId);
     }
 
 }
@@ -3,12 +3,19 @@ package com.groovanoscode.customer;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository("list")
 public class CustomerListDataAccessService implements CustomerDao{
 
+    private static final CustomerDTOMapper CUSTOMER_DTO_MAPPER = new CustomerDTOMapper();
+
     //db
     private static List<Customer> customers;
 
@@ -26,25 +33,94 @@ public class CustomerListDataAccessService implements CustomerDao{
         return customers;
     }
 
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer afterId, int limit) {
+        return customers.stream()
+                .filter(customer -> customer.getId() > afterId)
+                .sorted(Comparator.comparing(Customer::getId))
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return List.copyOf(customers).stream();
+    }
+
     @Override
     public Optional<Customer> selectCustomerById(Integer customerId) {
         return customers.stream().filter(customer -> customer.getId().equals(customerId)).findFirst();
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
+    public List<VersionedCustomer> selectVersionedCustomersAfterId(Integer afterId, int limit) {
+        return selectCustomersAfterId(afterId, limit).stream()
+                .map(customer -> new VersionedCustomer(CUSTOMER_DTO_MAPPER.apply(customer), customer.getVersion()))
+                .toList();
+    }
+
+    @Override
+    public VersionedCustomerPage selectVersionedCustomersAfterIdUnlessDigest(Integer afterId, int limit, Collection<String> digests) {
+        return VersionedCustomerPage.of(selectVersionedCustomersAfterId(afterId, limit), digests);
+    }
+
+    @Override
+    public Stream<CustomerDTO> streamAllCustomerDTOs() {
+        return streamAllCustomers().map(CUSTOMER_DTO_MAPPER);
+    }
+
+    @Override
+    public Optional<CustomerDTO> selectCustomerDTOById(Integer customerId) {
+        return selectCustomerById(customerId).map(CUSTOMER_DTO_MAPPER);
+    }
+
+    @Override
+    public Optional<VersionedCustomer> selectVersionedCustomerById(Integer customerId) {
+        return selectCustomerById(customerId)
+                .map(customer -> new VersionedCustomer(CUSTOMER_DTO_MAPPER.apply(customer), customer.getVersion()));
+    }
+
+    @Override
+    public Optional<Integer> insertCustomer(Customer customer) {
+        if(existsPersonWithEmail(customer.getEmail())){
+            return Optional.empty();
+        }
+        customer.setId(customers.stream().mapToInt(Customer::getId).max().orElse(0) + 1);
         customers.add(customer);
+        return Optional.of(customer.getId());
+    }
+
+    @Override
+    public Set<String> insertCustomers(List<Customer> customers) {
+        return customers.stream()
+                .filter(customer -> insertCustomer(customer).isPresent())
+                .map(Customer::getEmail)
+                .collect(Collectors.toSet());
     }
 
     @Override
     public boolean existsPersonWithEmail(String email) {
-        return customers.stream().anyMatch(customer -> customer.getEmail().equals(email));
+        return customers.stream().anyMatch(customer -> customer.getEmail().equalsIgnoreCase(email));
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return customers.stream()
+                .map(customer -> Customer.normalizeEmail(customer.getEmail()))
+                .filter(emails::contains)
+                .collect(Collectors.toSet());
     }
 
     @Override
-    public void deleteCustomerById(Integer customerId) {
-        customers.stream().filter(customer -> customer.getId().equals(customerId))
-                .findFirst().ifPresent(customers::remove);
+    public boolean deleteCustomerById(Integer customerId) {
+        return customers.removeIf(customer -> customer.getId().equals(customerId));
+    }
+
+    @Override
+    public boolean updateCustomerPassword(Integer customerId, String password) {
+        Optional<Customer> customer = selectCustomerById(customerId);
+        customer.ifPresent(c -> c.setPassword(password));
+        return customer.isPresent();
     }
 
     @Override
@@ -53,13 +129,18 @@ public class CustomerListDataAccessService implements CustomerDao{
     }
 
     @Override
-    public void updateCustomer(Customer customer) {
-        customers.add(customer);
+    public Optional<Customer> updateCustomer(Customer update, Long expectedVersion) {
+        return selectCustomerById(update.getId())
+                .filter(customer -> expectedVersion == null || expectedVersion.equals(customer.getVersion()))
+                .filter(customer -> update.getEmail() == null
+                        || update.getEmail().equals(customer.getEmail())
+                        || !existsPersonWithEmail(update.getEmail()))
+                .filter(customer -> customer.applyChanges(update));
     }
 
     @Override
     public Optional<Customer> selectUserByEmail(String email) {
-        return customers.stream().filter(customer -> customer.getUsername().equals(email)).findFirst();
+        return customers.stream().filter(customer -> customer.getUsername().equalsIgnoreCase(email)).findFirst();
     }
 
 
@@ -0,0 +1,15 @@
+package com.groovanoscode.customer;
+
+import java.util.Optional;
+
+/**
+ * The lookup of a customer by its natural id, the email, a fragment of {@link CustomerRepository}.
+ */
+public interface CustomerNaturalIdRepository {
+
+    /**
+     * The customer with this email, as stored (in lower case). With the second-level cache the email resolves
+     * to the id and the id to the customer without a query.
+     */
+    Optional<Customer> findCustomerByNaturalId(String email);
+}
@@ -0,0 +1,49 @@
+package com.groovanoscode.customer;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.NaturalIdResolutions;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.metamodel.mapping.EntityMappingType;
+
+import java.util.Optional;
+
+class CustomerNaturalIdRepositoryImpl implements CustomerNaturalIdRepository {
+
+    private final SessionFactory sessionFactory;
+
+    CustomerNaturalIdRepositoryImpl(EntityManagerFactory entityManagerFactory) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+    }
+
+    // A session of its own and no transaction, so a cache hit takes no connection at all. It does not join a
+    // surrounding transaction, no write looks customers up by email
+    @Override
+    public Optional<Customer> findCustomerByNaturalId(String email) {
+        try (Session session = sessionFactory.openSession()) {
+            SessionImplementor sessionImplementor = session.unwrap(SessionImplementor.class);
+            EntityMappingType customerType = sessionImplementor.getFactory().getMappingMetamodel()
+                    .getEntityDescriptor(Customer.class);
+            NaturalIdResolutions resolutions = sessionImplementor.getPersistenceContextInternal().getNaturalIdResolutions();
+            // The email region first, then the id region for the customer
+            Object id = resolutions.findCachedIdByNaturalId(email, customerType);
+            if (id != null) {
+                Customer customer = session.get(Customer.class, id);
+                if (customer != null && email.equals(customer.getEmail())) {
+                    return Optional.of(customer);
+                }
+                // The cached id is stale: the customer was deleted or changed its email by a write Hibernate did not
+                // see. Only this email and this customer are evicted, the other entries are still right
+                resolutions.removeSharedResolution(id, email, customerType);
+                sessionFactory.getCache().evictEntityData(Customer.class, id);
+                session.clear();
+            }
+            // Not bySimpleNaturalId, its email = ? cannot use the index on lower(email). Loading the customer
+            // caches its id by email all the same
+            return session.createQuery("select c from Customer c where lower(c.email) = :email", Customer.class)
+                    .setParameter("email", email)
+                    .uniqueResultOptional();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.groovanoscode.customer;
+
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * One page of customers. nextCursor is the id to pass as "after" to get the next page,
+ * or null when this is the last page. eTag is the {@link #digest} of the customers read for it.
+ * <p>
+ * A page the client already has comes without customers, see {@link #unchanged()}.
+ */
+public record CustomerPage(
+        List<CustomerDTO> customers,
+        Integer nextCursor,
+        String eTag
+) {
+
+    /**
+     * The first {@code limit} of the customers, read with one customer more than requested so we know if there is
+     * a next page without a count query. That one counts for the ETag too: it decides the next cursor.
+     */
+    static CustomerPage of(List<VersionedCustomer> customers, int limit) {
+        List<CustomerDTO> page = customers.stream().limit(limit).map(VersionedCustomer::customer).toList();
+        Integer nextCursor = customers.size() > limit ? page.get(limit - 1).id() : null;
+        return new CustomerPage(page, nextCursor, digest(customers));
+    }
+
+    static CustomerPage of(VersionedCustomerPage page, int limit) {
+        return page.unchanged() ? new CustomerPage(null, null, page.digest()) : of(page.customers(), limit);
+    }
+
+    /**
+     * The md5 of "id:version" of the customers, comma separated, in hex: it changes with every insert, update
+     * and delete among them. {@link CustomerJDBCDataAccessService#selectVersionedCustomersAfterIdUnlessDigest}
+     * computes the same in SQL, keep both in sync.
+     */
+    static String digest(List<VersionedCustomer> customers) {
+        String page = customers.stream()
+                .map(customer -> customer.customer().id() + ":" + customer.version())
+                .collect(Collectors.joining(","));
+        return DigestUtils.md5DigestAsHex(page.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean unchanged() {
+        return customers == null;
+    }
+}
@@ -0,0 +1,213 @@
+package com.groovanoscode.customer;
+
+import io.r2dbc.spi.Readable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Repository("r2dbc")
+@Profile("reactive")
+public class CustomerR2dbcDataAccessService implements ReactiveCustomerDao {
+
+    private final DatabaseClient databaseClient;
+
+    public CustomerR2dbcDataAccessService(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    // The reads that end up in a response select only the columns of a CustomerDTO, like the projections of CustomerDao
+
+    @Override
+    public Flux<VersionedCustomer> selectVersionedCustomersAfterId(Integer afterId, int limit) {
+        var sql = """
+                SELECT id, name, email, gender, age, version
+                FROM customer
+                WHERE id > :afterId
+                ORDER BY id
+                LIMIT :limit
+                """;
+
+        return databaseClient.sql(sql)
+                .bind("afterId", afterId)
+                .bind("limit", limit)
+                .map(CustomerR2dbcDataAccessService::mapVersionedCustomer)
+                .all();
+    }
+
+    @Override
+    public Flux<CustomerDTO> streamAllCustomerDTOs() {
+        var sql = """
+                SELECT id, name, email, gender, age
+                FROM customer
+                ORDER BY id
+                """;
+
+        // The driver reads the rows with back pressure, a slow client does not fill our memory
+        return databaseClient.sql(sql)
+                .map(CustomerR2dbcDataAccessService::mapCustomerDTO)
+                .all();
+    }
+
+    @Override
+    public Mono<VersionedCustomer> selectVersionedCustomerById(Integer customerId) {
+        var sql = """
+                SELECT id, name, email, gender, age, version
+                FROM customer
+                WHERE id = :id
+                """;
+
+        return databaseClient.sql(sql)
+                .bind("id", customerId)
+                .map(CustomerR2dbcDataAccessService::mapVersionedCustomer)
+                .one();
+    }
+
+    @Override
+    public Mono<Customer> selectUserByEmail(String email) {
+        var sql = """
+                SELECT id, name, email, password, age, gender, version
+                FROM customer
+                WHERE lower(email) = lower(:email)
+                """;
+
+        return databaseClient.sql(sql)
+                .bind("email", email)
+                .map(CustomerR2dbcDataAccessService::mapRow)
+                .one();
+    }
+
+    @Override
+    public Mono<Integer> insertCustomer(Customer customer) {
+        // Like the JDBC DAO: the unique index on lower(email) rejects a taken email in the same round trip
+        var sql = """
+                INSERT INTO customer(name, email, password, age, gender)
+                VALUES (:name, :email, :password, :age, :gender)
+                ON CONFLICT (lower(email)) DO NOTHING
+                RETURNING id
+                """;
+
+        return databaseClient.sql(sql)
+                .bind("name", customer.getName())
+                .bind("email", customer.getEmail())
+                .bind("password", customer.getPassword())
+                .bind("age", customer.getAge())
+                .bind("gender", customer.getGender().name())
+                .map(row -> row.get("id", Integer.class))
+                .one();
+    }
+
+    @Override
+    public Mono<Boolean> deleteCustomerById(Integer customerId) {
+        var sql = """
+                DELETE
+                FROM customer
+                WHERE id = :id
+                """;
+
+        return databaseClient.sql(sql)
+                .bind("id", customerId)
+                .fetch()
+                .rowsUpdated()
+                .map(count -> count > 0);
+    }
+
+    @Override
+    public Mono<Customer> updateCustomer(Customer update, Long expectedVersion) {
+        // The same single statement as CustomerJDBCDataAccessService#updateCustomer
+        Map<String, Object> changes = new LinkedHashMap<>();
+        if(update.getName() != null){
+            changes.put("name", update.getName());
+        }
+        if(update.getEmail() != null){
+            changes.put("email", update.getEmail());
+        }
+        if(update.getPassword() != null){
+            changes.put("password", update.getPassword());
+        }
+        if(update.getAge() != null){
+            changes.put("age", update.getAge());
+        }
+        if(update.getGender() != null){
+            changes.put("gender", update.getGender().name());
+        }
+
+        if(changes.isEmpty()){
+            return Mono.empty();
+        }
+
+        StringBuilder sql = new StringBuilder("UPDATE customer SET ");
+        changes.keySet().forEach(column -> sql.append(column).append(" = :").append(column).append(", "));
+        sql.append("version = version + 1 WHERE id = :id");
+        if(expectedVersion != null){
+            sql.append(" AND version = :expectedVersion");
+        }
+        sql.append(changes.keySet().stream()
+                .map(column -> column + " IS DISTINCT FROM :" + column)
+                .collect(Collectors.joining(" OR ", " AND (", ")")));
+        if(update.getEmail() != null){
+            sql.append(" AND NOT EXISTS (SELECT 1 FROM customer other WHERE lower(other.email) = lower(:email) AND other.id <> :id)");
+        }
+        sql.append(" RETURNING id, name, email, password, age, gender, version");
+
+        DatabaseClient.GenericExecuteSpec statement = databaseClient.sql(sql.toString())
+                .bind("id", update.getId());
+        if(expectedVersion != null){
+            statement = statement.bind("expectedVersion", expectedVersion);
+        }
+        for(Map.Entry<String, Object> change : changes.entrySet()){
+            statement = statement.bind(change.getKey(), change.getValue());
+        }
+
+        return statement.map(CustomerR2dbcDataAccessService::mapRow).one();
+    }
+
+    @Override
+    public Mono<Boolean> updateCustomerPassword(Integer customerId, String password) {
+        var sql = """
+                UPDATE customer
+                SET password = :password
+                WHERE id = :id
+                """;
+
+        return databaseClient.sql(sql)
+                .bind("password", password)
+                .bind("id", customerId)
+                .fetch()
+                .rowsUpdated()
+                .map(count -> count > 0);
+    }
+
+    // The R2DBC twin of CustomerRowMapper
+    private static Customer mapRow(Readable row) {
+        return new Customer(
+                row.get("id", Integer.class),
+                row.get("name", String.class),
+                row.get("email", String.class),
+                row.get("password", String.class),
+                row.get("age", Integer.class),
+                Gender.valueOf(row.get("gender", String.class)),
+                row.get("version", Long.class)
+        );
+    }
+
+    // The R2DBC twin of CustomerDTORowMapper
+    private static CustomerDTO mapCustomerDTO(Readable row) {
+        return new CustomerDTO(
+                row.get("id", Integer.class),
+                row.get("name", String.class),
+                row.get("email", String.class),
+                Gender.valueOf(row.get("gender", String.class)),
+                row.get("age", Integer.class)
+        );
+    }
+
+    private static VersionedCustomer mapVersionedCustomer(Readable row) {
+        return new VersionedCustomer(mapCustomerDTO(row), row.get("version", Long.class));
+    }
+}
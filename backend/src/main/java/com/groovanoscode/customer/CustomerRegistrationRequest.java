@@ -2,4 +2,7 @@ package com.groovanoscode.customer;
 
 public record CustomerRegistrationRequest(String name, String email, String password , Integer age, Gender gender) {
 
+    public CustomerRegistrationRequest {
+        email = Customer.normalizeEmail(email);
+    }
 }
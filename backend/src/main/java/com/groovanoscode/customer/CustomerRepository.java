@@ -1,13 +1,59 @@
 package com.groovanoscode.customer;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
-public interface CustomerRepository extends JpaRepository<Customer, Integer> {
+public interface CustomerRepository extends JpaRepository<Customer, Integer>, CustomerNaturalIdRepository {
 
-    boolean existsCustomerByEmail(String email);
+    // The lookups by email go through lower(email), the only index on the column
+    @Query("select count(c) > 0 from Customer c where lower(c.email) = lower(:email)")
+    boolean existsCustomerByEmail(@Param("email") String email);
+
+    @Query("select lower(c.email) from Customer c where lower(c.email) in :emails")
+    Set<String> findExistingEmails(@Param("emails") Collection<String> emails);
     boolean existsCustomerById(Integer id);
-    Optional<Customer> findCustomerByEmail(String email);
+    @Modifying
+    @Transactional
+    @Query("delete from Customer c where c.id = :id")
+    int deleteCustomerById(@Param("id") Integer id);
+    @Modifying
+    @Transactional
+    @Query("update Customer c set c.password = :password where c.id = :id")
+    int updateCustomerPassword(@Param("id") Integer id, @Param("password") String password);
+    @Query("select c from Customer c where lower(c.email) = lower(:email)")
+    Optional<Customer> findCustomerByEmail(@Param("email") String email);
+    List<Customer> findByIdGreaterThan(Integer id, Pageable pageable);
+
+    // The constructor expression returns unmanaged customers, so the persistence context does not grow while we stream
+    @Query("select new com.groovanoscode.customer.Customer(c.id, c.name, c.email, c.password, c.age, c.gender, c.version) from Customer c order by c.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<Customer> streamAllCustomers();
+
+    // The projections select the columns of a CustomerDTO only, the password hash is never read
+    @Query("select new com.groovanoscode.customer.VersionedCustomer(c.id, c.name, c.email, c.gender, c.age, c.version) from Customer c where c.id > :afterId order by c.id")
+    List<VersionedCustomer> findVersionedCustomersByIdGreaterThan(@Param("afterId") Integer afterId, Pageable pageable);
+
+    @Query("select new com.groovanoscode.customer.CustomerDTO(c.id, c.name, c.email, c.gender, c.age) from Customer c order by c.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<CustomerDTO> streamAllCustomerDTOs();
+
+    @Query("select new com.groovanoscode.customer.CustomerDTO(c.id, c.name, c.email, c.gender, c.age) from Customer c where c.id = :id")
+    Optional<CustomerDTO> findCustomerDTOById(@Param("id") Integer id);
+
+    @Query("select new com.groovanoscode.customer.VersionedCustomer(c.id, c.name, c.email, c.gender, c.age, c.version) from Customer c where c.id = :id")
+    Optional<VersionedCustomer> findVersionedCustomerById(@Param("id") Integer id);
 
 }
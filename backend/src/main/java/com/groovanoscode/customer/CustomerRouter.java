@@ -0,0 +1,27 @@
+package com.groovanoscode.customer;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+@Configuration
+@Profile("reactive")
+public class CustomerRouter {
+
+    // The paths of CustomerController, export and me before {customerId}
+    @Bean
+    public RouterFunction<ServerResponse> customerRoutes(CustomerHandler handler){
+        return RouterFunctions.route()
+                .GET("/api/v1/customers", handler::getCustomers)
+                .GET("/api/v1/customers/export", handler::exportCustomers)
+                .GET("/api/v1/customers/me", handler::getAuthenticatedCustomer)
+                .GET("/api/v1/customers/{customerId}", handler::getCustomer)
+                .POST("/api/v1/customers", handler::registerCustomer)
+                .PUT("/api/v1/customers/{customerId}", handler::updateCustomer)
+                .DELETE("/api/v1/customers/{customerId}", handler::deleteCustomer)
+                .build();
+    }
+}
@@ -18,7 +18,8 @@ public class CustomerRowMapper implements RowMapper<Customer> {
                 rs.getString("email"),
                 rs.getString("password"),
                 rs.getInt("age"),
-                Gender.valueOf(rs.getString("gender"))
+                Gender.valueOf(rs.getString("gender")),
+                rs.getLong("version")
         );
     }
 }
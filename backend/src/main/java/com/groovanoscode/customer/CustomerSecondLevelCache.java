@@ -0,0 +1,34 @@
+package com.groovanoscode.customer;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Tells the second-level cache about the writes Hibernate does not see, see {@link CustomerSecondLevelCacheConfig}.
+ * The entity manager factory is only looked up on the first eviction, the DAOs are created before it.
+ */
+public class CustomerSecondLevelCache {
+
+    private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+    CustomerSecondLevelCache(ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * Evicts the customer. Its id may stay cached under an email it no longer has, or after it was deleted: the
+     * jpa DAO checks the customer it finds by email and evicts that email only.
+     */
+    public void evict(Integer customerId) {
+        if (customerId != null) {
+            entityManagerFactory.getObject().getCache().evict(Customer.class, customerId);
+        }
+    }
+
+    /**
+     * Evicts every customer, e.g. after a batch update.
+     */
+    public void evictAll() {
+        entityManagerFactory.getObject().getCache().evict(Customer.class);
+    }
+}
@@ -0,0 +1,76 @@
+package com.groovanoscode.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * The second-level cache of Hibernate, when customer.second-level-cache.enabled is true: the customers of the jpa
+ * DAO by id, and their ids by email (the natural id), so the logins and the user details stop reading the same
+ * customers again and again. Two bounded Caffeine caches behind JCache, with the usual
+ * cache.gets{cache=jpa.customers.by.id|jpa.customers.by.email,result=hit|miss} metrics.
+ * <p>
+ * Hibernate keeps the cache up to date for the writes of the jpa DAO, and the jdbc DAO evicts the customers it
+ * writes (see {@link SecondLevelCacheEvictingCustomerDao}), the gender batch job clears the cache when it stops.
+ * Like for the cached DAO, the writes that bypass all of them (another instance of the API) are seen once the
+ * entry expires.
+ */
+@Configuration
+@ConditionalOnProperty(name = "customer.second-level-cache.enabled", havingValue = "true")
+public class CustomerSecondLevelCacheConfig {
+
+    static final String CUSTOMERS_BY_ID = "jpa.customers.by.id";
+    static final String CUSTOMERS_BY_EMAIL = "jpa.customers.by.email";
+
+    // Its own cache manager for every application context: the tests run several of them in one JVM
+    @Bean
+    public CacheManager customerCacheManager(@Value("${customer.second-level-cache.max-size:10000}") long maxSize ,
+                                             @Value("${customer.second-level-cache.ttl:5m}") Duration ttl ,
+                                             MeterRegistry meterRegistry) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("jpa-second-level-cache-" + UUID.randomUUID()), getClass().getClassLoader());
+
+        for (String region : new String[]{CUSTOMERS_BY_ID, CUSTOMERS_BY_EMAIL}) {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setMaximumSize(OptionalLong.of(maxSize));
+            configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+            configuration.setNativeStatisticsEnabled(true);
+            Cache<?, ?> cache = cacheManager.createCache(region, configuration).unwrap(Cache.class);
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, region);
+        }
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheHibernateProperties(CacheManager customerCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put("hibernate.javax.cache.cache_manager", customerCacheManager);
+            // Every region is created above, with its bounds: a region Hibernate would create on its own is unbounded
+            properties.put("hibernate.javax.cache.missing_cache_strategy", "fail");
+        };
+    }
+
+    @Bean
+    public CustomerSecondLevelCache customerSecondLevelCache(ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+        return new CustomerSecondLevelCache(entityManagerFactory);
+    }
+}
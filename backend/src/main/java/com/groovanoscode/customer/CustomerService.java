@@ -2,67 +2,194 @@ package com.groovanoscode.customer;
 
 import com.groovanoscode.exception.RequestValidationException;
 import com.groovanoscode.exception.DuplicateResourceException;
+import com.groovanoscode.exception.PreconditionFailedException;
 import com.groovanoscode.exception.ResourceNotFoundException;
+import com.groovanoscode.jwt.JWTPrincipal;
+import com.groovanoscode.security.ParallelPasswordEncoder;
+import com.groovanoscode.security.PasswordHashingExecutor;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class CustomerService {
 
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_BATCH_SIZE = 10_000;
+
     private final CustomerDao customerDao;
     private final CustomerDTOMapper customerDTOMapper;
     private final PasswordEncoder passwordEncoder;
+    private final ParallelPasswordEncoder parallelPasswordEncoder;
+    private final CustomerUserCache customerUserCache;
+    private final PasswordHashingExecutor passwordHashingExecutor;
 
 
     // public CustomerService(@Qualifier("jpa") CustomerDao customerDao) {
     //    this.customerDao = customerDao;
     //}
 
-    public CustomerService(@Qualifier("jdbc") CustomerDao customerDao , CustomerDTOMapper customerDTOMapper , PasswordEncoder passwordEncoder) {
+    // The caching DAO reads through to the jdbc one
+    public CustomerService(@Qualifier("cached") CustomerDao customerDao , CustomerDTOMapper customerDTOMapper , PasswordEncoder passwordEncoder ,
+                           ParallelPasswordEncoder parallelPasswordEncoder , CustomerUserCache customerUserCache ,
+                           PasswordHashingExecutor passwordHashingExecutor) {
         this.customerDao = customerDao;
         this.customerDTOMapper = customerDTOMapper;
         this.passwordEncoder = passwordEncoder;
+        this.parallelPasswordEncoder = parallelPasswordEncoder;
+        this.customerUserCache = customerUserCache;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+    }
+
+    public CustomerPage getCustomers(Integer afterId, int limit){
+        checkPageSize(limit);
+        // One customer more than requested, see CustomerPage.of
+        return CustomerPage.of(customerDao.selectVersionedCustomersAfterId(afterId == null ? 0 : afterId, limit + 1), limit);
+    }
+
+    /**
+     * {@link #getCustomers} for a client that already has the page with one of these ETags: when it did not change,
+     * the page comes without its customers, which are not read (see {@link CustomerPage#unchanged()}).
+     */
+    public CustomerPage getCustomers(Integer afterId, int limit, Collection<String> eTags){
+        checkPageSize(limit);
+        return CustomerPage.of(customerDao.selectVersionedCustomersAfterIdUnlessDigest(
+                afterId == null ? 0 : afterId, limit + 1, eTags), limit);
+    }
+
+    private static void checkPageSize(int limit){
+        if(limit < 1 || limit > MAX_PAGE_SIZE){
+            throw new RequestValidationException(
+                    "limit must be between 1 and %s".formatted(MAX_PAGE_SIZE));
+        }
     }
 
-    public List<CustomerDTO> getAllCustomers(){
-        return customerDao.selectAllCustomers().stream().map(customerDTOMapper).collect(Collectors.toList());
+    /**
+     * Hands every customer to the consumer one at a time, so the memory use does not depend on the size of the table.
+     * If the consumer throws (e.g. the client went away) the stream is closed and the connection goes back to the pool.
+     */
+    @Transactional(readOnly = true)
+    public void exportCustomers(Consumer<CustomerDTO> consumer){
+        try(Stream<CustomerDTO> customers = customerDao.streamAllCustomerDTOs()){
+            customers.forEach(consumer);
+        }
     }
 
     public CustomerDTO getCustomer(Integer customerId){
-        return customerDao.selectCustomerById(customerId)
-                .map(customerDTOMapper)
+        return customerDao.selectCustomerDTOById(customerId)
                 .orElseThrow(()-> new ResourceNotFoundException(
                         "customer with [%s] not found".formatted(customerId)));
     }
 
-    public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest){
-        // check if email exist
-        String email = customerRegistrationRequest.email();
-        if(customerDao.existsPersonWithEmail(email)){
-            throw new DuplicateResourceException(
-                    "email already taken");
-        }
-        // add customer
+    /**
+     * Registers the customer on a password hashing thread and returns its id. Fails right away
+     * with a 503 when too many logins and registrations are waiting.
+     */
+    public CompletableFuture<Integer> addCustomer(CustomerRegistrationRequest customerRegistrationRequest){
+        return passwordHashingExecutor.submit(() -> insertCustomer(customerRegistrationRequest));
+    }
+
+    private Integer insertCustomer(CustomerRegistrationRequest customerRegistrationRequest){
+        // No check before the insert: it would be one more round trip and still racy,
+        // the insert itself tells us when the email is taken
         Customer customer = new Customer(
                 customerRegistrationRequest.name(),
                 customerRegistrationRequest.email(),
                 passwordEncoder.encode(customerRegistrationRequest.password()),
                 customerRegistrationRequest.age(),
                 customerRegistrationRequest.gender());
-        customerDao.insertCustomer(customer);
+        return customerDao.insertCustomer(customer)
+                .orElseThrow(() -> new DuplicateResourceException(
+                        "email already taken"));
+    }
+
+    /**
+     * Registers many customers with one query for the existing emails, the passwords hashed in parallel
+     * and one batched insert. Returns one result per request, in the same order. An email taken between the
+     * query and the insert is reported as a duplicate, like one taken before.
+     */
+    public List<CustomerBatchResult> addCustomers(List<CustomerRegistrationRequest> requests){
+        if(requests.size() > MAX_BATCH_SIZE){
+            throw new RequestValidationException(
+                    "a batch can have at most %s customers".formatted(MAX_BATCH_SIZE));
+        }
+
+        CustomerBatchResult[] results = new CustomerBatchResult[requests.size()];
+        // email -> index of the first valid request with this email
+        Map<String, Integer> candidates = new LinkedHashMap<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            CustomerRegistrationRequest request = requests.get(i);
+            if(!isComplete(request)){
+                results[i] = new CustomerBatchResult(i, request == null ? null : request.email(), CustomerBatchResult.Status.INVALID);
+            } else if(candidates.putIfAbsent(request.email(), i) != null){
+                results[i] = new CustomerBatchResult(i, request.email(), CustomerBatchResult.Status.DUPLICATE);
+            }
+        }
+
+        customerDao.selectExistingEmails(candidates.keySet()).forEach(email -> {
+            int i = candidates.remove(email);
+            results[i] = new CustomerBatchResult(i, email, CustomerBatchResult.Status.DUPLICATE);
+        });
+
+        List<Integer> indexes = List.copyOf(candidates.values());
+        List<String> hashedPasswords = parallelPasswordEncoder.encodeAll(
+                indexes.stream().map(i -> requests.get(i).password()).toList());
+
+        List<Customer> customers = new ArrayList<>(indexes.size());
+        for (int k = 0; k < indexes.size(); k++) {
+            int i = indexes.get(k);
+            CustomerRegistrationRequest request = requests.get(i);
+            customers.add(new Customer(
+                    request.name(),
+                    request.email(),
+                    hashedPasswords.get(k),
+                    request.age(),
+                    request.gender()));
+        }
+
+        Set<String> inserted = customers.isEmpty() ? Set.of() : customerDao.insertCustomers(customers);
+        for (int i : indexes) {
+            String email = requests.get(i).email();
+            results[i] = new CustomerBatchResult(i, email, inserted.contains(email)
+                    ? CustomerBatchResult.Status.CREATED
+                    : CustomerBatchResult.Status.DUPLICATE);
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private static boolean isComplete(CustomerRegistrationRequest request){
+        return request != null
+                && request.name() != null && !request.name().isBlank()
+                && request.email() != null && !request.email().isBlank()
+                && request.password() != null && !request.password().isEmpty()
+                && request.age() != null
+                && request.gender() != null;
     }
 
     public void deleteCustomer(Integer customerId){
-        // check if customer with customer_id exist
-        if(!customerDao.existsCustomerWithId(customerId)){
+        // delete customer with id customer_id, the delete itself tells us whether it existed
+        if(!customerDao.deleteCustomerById(customerId)){
             throw new ResourceNotFoundException("Customer with id [%s] not found".formatted(customerId));
         }
-        // delete customer with id customer_id
-        customerDao.deleteCustomerById(customerId);
+        // Its token must not authenticate anybody anymore
+        customerUserCache.removeCustomerFromCache(customerId);
     }
 
     public Customer getCustomerById(Integer customerId){
@@ -71,55 +198,74 @@ public class CustomerService {
                         new ResourceNotFoundException("Customer with id [%s] not found".formatted(customerId)));
     }
 
-    public void updateCustomerById(Integer customerId, CustomerUpdateRequest request){
-        // find the customer with id customerId and throw exception if it does not exist
-        Customer customer = customerDao.selectCustomerById(customerId)
-                .orElseThrow(()-> new ResourceNotFoundException(
-                        "customer with [%s] not found".formatted(customerId)));
+    /**
+     * The customer behind the authenticated request. A stateless principal only carries the claims of its
+     * token, so the customer is loaded here, by the few callers that need it, rather than on every request.
+     */
+    public CustomerDTO getAuthenticatedCustomer(Authentication authentication){
+        Object principal = authentication.getPrincipal();
+        if(principal instanceof Customer customer){
+            return customerDTOMapper.apply(customer);
+        }
+        if(principal instanceof JWTPrincipal jwtPrincipal && jwtPrincipal.customerId() != null){
+            return getCustomer(jwtPrincipal.customerId());
+        }
+        // Tokens issued before the customer id was a claim
+        return customerDao.selectUserByEmail(authentication.getName())
+                .map(customerDTOMapper)
+                .orElseThrow(() -> new ResourceNotFoundException(
+                        "customer with [%s] not found".formatted(authentication.getName())));
+    }
 
-        boolean changes = false;
+    public VersionedCustomer getVersionedCustomer(Integer customerId){
+        return customerDao.selectVersionedCustomerById(customerId)
+                .orElseThrow(() ->
+                        new ResourceNotFoundException("Customer with id [%s] not found".formatted(customerId)));
+    }
 
-        if(request.name() != null && !request.name().equals(customer.getName())){
-            customer.setName(request.name());
-            changes = true;
-        }
+    /**
+     * Updates the customer in one statement. With an expected version the update fails with a
+     * {@link PreconditionFailedException} when somebody else modified the customer in the meantime.
+     */
+    public VersionedCustomer updateCustomerById(Integer customerId, CustomerUpdateRequest request, Long expectedVersion){
+        Customer update = new Customer(customerId, request.name(), request.email(), null, request.age(), request.gender());
 
-        if(request.email() != null && !request.email().equals(customer.getEmail())){
-            if(customerDao.existsPersonWithEmail(request.email())){
-                throw new DuplicateResourceException("email already taken");
-            }
-            customer.setEmail(request.email());
-            changes = true;
+        Customer updated;
+        try {
+            updated = customerDao.updateCustomer(update, expectedVersion)
+                    .orElseThrow(() -> updateFailure(update, expectedVersion));
+        } catch (OptimisticLockingFailureException e) {
+            throw modifiedConcurrently(customerId);
+        } catch (DuplicateKeyException e) {
+            // Another customer took the email between our check and the update
+            throw new DuplicateResourceException("email already taken");
         }
+        customerUserCache.removeCustomerFromCache(customerId);
 
-        if(request.age() != null && !request.age().equals(customer.getAge())){
-            customer.setAge(request.age());
-            changes = true;
-        }
+        return new VersionedCustomer(customerDTOMapper.apply(updated), updated.getVersion());
+    }
 
-        if(request.gender() != null && !request.gender().equals(customer.getGender())){
-            customer.setGender(request.gender());
-            changes = true;
+    // The update does not say why no row was updated, so only on failure we read the customer to find out
+    private RuntimeException updateFailure(Customer update, Long expectedVersion){
+        Customer customer = customerDao.selectCustomerById(update.getId())
+                .orElseThrow(()-> new ResourceNotFoundException(
+                        "customer with [%s] not found".formatted(update.getId())));
+
+        if(expectedVersion != null && !expectedVersion.equals(customer.getVersion())){
+            return modifiedConcurrently(update.getId());
         }
 
-        // check if there is something to update if not throw a BadRequestException
-        if(!changes)
-        {
-            throw new RequestValidationException("No data changes found");
+        // The email would have been a change, so the update was rejected because another customer has it
+        if(update.getEmail() != null && !update.getEmail().equals(customer.getEmail())){
+            return new DuplicateResourceException("email already taken");
         }
 
-        // Update the customer data
-        customerDao.updateCustomer(customer);
+        return new RequestValidationException("No data changes found");
     }
 
-    public void updateGenderOfCustomers() {
-        List<Customer> customers = customerDao.selectAllCustomers();
-        customers.forEach(customer -> {
-            int age = customer.getAge();
-            Gender gender = age % 2 == 0 ? Gender.FEMALE : Gender.MALE;
-            customer.setGender(gender);
-            customerDao.updateCustomer(customer);
-        });
+    private static PreconditionFailedException modifiedConcurrently(Integer customerId){
+        return new PreconditionFailedException(
+                "customer with [%s] was modified by someone else, reload it and try again".formatted(customerId));
     }
 
 
@@ -0,0 +1,55 @@
+package com.groovanoscode.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Times every public method of {@link CustomerService} as customer.service, tagged with the method and the
+ * {@link Outcome} (the exception the API turns into a 404, a 409...).
+ * A method that returns a future is timed until the future completes.
+ */
+@Aspect
+@Component
+public class CustomerServiceMetrics {
+
+    static final String TIMER = "customer.service";
+
+    private final MeterRegistry meterRegistry;
+
+    public CustomerServiceMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * com.groovanoscode.customer.CustomerService.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        String method = joinPoint.getSignature().getName();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            sample.stop(timer(method, Outcome.of(e)));
+            throw e;
+        }
+
+        if(result instanceof CompletableFuture<?> future){
+            return future.whenComplete((value, e) ->
+                    sample.stop(timer(method, e == null ? Outcome.SUCCESS : Outcome.of(e))));
+        }
+        sample.stop(timer(method, Outcome.SUCCESS));
+        return result;
+    }
+
+    private Timer timer(String method, Outcome outcome) {
+        return Timer.builder(TIMER)
+                .tag("method", method)
+                .tag("outcome", outcome.tag)
+                .register(meterRegistry);
+    }
+}
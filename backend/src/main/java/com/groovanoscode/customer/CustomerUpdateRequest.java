@@ -6,4 +6,8 @@ public record CustomerUpdateRequest(
         Integer age,
         Gender gender
 ) {
+
+    public CustomerUpdateRequest {
+        email = Customer.normalizeEmail(email);
+    }
 }
@@ -0,0 +1,64 @@
+package com.groovanoscode.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * The authenticated customers, keyed by email. The JWT filter and the login read the principal from here
+ * instead of loading it for every request.
+ * <p>
+ * The TTL is short on purpose: it is how long a change that does not go through {@link CustomerService}
+ * can take to reach the principal. Updates and deletes through the service evict the customer right away.
+ */
+@Component
+public class CustomerUserCache implements UserCache {
+
+    private final Cache<String, UserDetails> users;
+
+    public CustomerUserCache(MeterRegistry meterRegistry ,
+                             @Value("${customer.user-cache.max-size:10000}") long maxSize ,
+                             @Value("${customer.user-cache.ttl:30s}") Duration ttl) {
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "customers.principals");
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        String key = Customer.normalizeEmail(username);
+        return key == null ? null : users.getIfPresent(key);
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        users.put(Customer.normalizeEmail(user.getUsername()), user);
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        String key = Customer.normalizeEmail(username);
+        if(key != null){
+            users.invalidate(key);
+        }
+    }
+
+    /**
+     * Evicts the customer whatever its email was when it was cached.
+     */
+    public void removeCustomerFromCache(Integer customerId) {
+        // Updates and deletes are rare next to the reads, a scan of the cache is fine
+        users.asMap().values().removeIf(user ->
+                user instanceof Customer customer && customerId.equals(customer.getId()));
+    }
+}
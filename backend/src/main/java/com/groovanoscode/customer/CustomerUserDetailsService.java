@@ -2,21 +2,38 @@ package com.groovanoscode.customer;
 
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 @Service
-public class CustomerUserDetailsService implements UserDetailsService {
+public class CustomerUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final CustomerDao customerDao;
 
-    public CustomerUserDetailsService(@Qualifier("jpa") CustomerDao customerDao) {
+    private final CustomerUserCache customerUserCache;
+
+    public CustomerUserDetailsService(@Qualifier("jpa") CustomerDao customerDao , CustomerUserCache customerUserCache) {
         this.customerDao = customerDao;
+        this.customerUserCache = customerUserCache;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         return customerDao.selectUserByEmail(username).orElseThrow(() -> new UsernameNotFoundException("Username " + username + " not found"));
     }
+
+    /**
+     * Called by the login with the password hashed again, when the old hash used another cost factor.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        Customer customer = (Customer) user;
+        customerDao.updateCustomerPassword(customer.getId(), newPassword);
+        // The login cached the customer with the old hash, which would be upgraded again and again
+        customerUserCache.removeCustomerFromCache(customer.getId());
+        return new Customer(customer.getId(), customer.getName(), customer.getEmail(), newPassword,
+                customer.getAge(), customer.getGender(), customer.getVersion());
+    }
 }
@@ -0,0 +1,187 @@
+package com.groovanoscode.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Times every call of a {@link CustomerDao} as customer.dao, tagged with the name of the DAO bean, the method
+ * and the {@link Outcome}. See {@link MeteredCustomerDaoPostProcessor}.
+ * <p>
+ * The cached DAO calls the jdbc one on a miss, so a miss shows up in both.
+ */
+public class MeteredCustomerDao implements CustomerDao {
+
+    static final String TIMER = "customer.dao";
+
+    private final CustomerDao customerDao;
+    private final String dao;
+    private final MeterRegistry meterRegistry;
+
+    private final Operation selectAllCustomers = new Operation("selectAllCustomers");
+    private final Operation selectCustomersAfterId = new Operation("selectCustomersAfterId");
+    private final Operation streamAllCustomers = new Operation("streamAllCustomers");
+    private final Operation selectCustomerById = new Operation("selectCustomerById");
+    private final Operation selectVersionedCustomersAfterId = new Operation("selectVersionedCustomersAfterId");
+    private final Operation streamAllCustomerDTOs = new Operation("streamAllCustomerDTOs");
+    private final Operation selectCustomerDTOById = new Operation("selectCustomerDTOById");
+    private final Operation selectVersionedCustomerById = new Operation("selectVersionedCustomerById");
+    private final Operation selectVersionedCustomersAfterIdUnlessDigest = new Operation("selectVersionedCustomersAfterIdUnlessDigest");
+    private final Operation insertCustomer = new Operation("insertCustomer");
+    private final Operation insertCustomers = new Operation("insertCustomers");
+    private final Operation existsPersonWithEmail = new Operation("existsPersonWithEmail");
+    private final Operation selectExistingEmails = new Operation("selectExistingEmails");
+    private final Operation deleteCustomerById = new Operation("deleteCustomerById");
+    private final Operation existsCustomerWithId = new Operation("existsCustomerWithId");
+    private final Operation updateCustomerPassword = new Operation("updateCustomerPassword");
+    private final Operation updateCustomer = new Operation("updateCustomer");
+    private final Operation selectUserByEmail = new Operation("selectUserByEmail");
+
+    public MeteredCustomerDao(CustomerDao customerDao , String dao , MeterRegistry meterRegistry) {
+        this.customerDao = customerDao;
+        this.dao = dao;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return time(selectAllCustomers, customerDao::selectAllCustomers, customers -> Outcome.SUCCESS);
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer afterId, int limit) {
+        return time(selectCustomersAfterId, () -> customerDao.selectCustomersAfterId(afterId, limit), customers -> Outcome.SUCCESS);
+    }
+
+    // Only opening the stream is timed, the rows are read later by the caller
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return time(streamAllCustomers, customerDao::streamAllCustomers, customers -> Outcome.SUCCESS);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer customerId) {
+        return time(selectCustomerById, () -> customerDao.selectCustomerById(customerId), customer -> Outcome.of(customer.isPresent()));
+    }
+
+    @Override
+    public List<VersionedCustomer> selectVersionedCustomersAfterId(Integer afterId, int limit) {
+        return time(selectVersionedCustomersAfterId, () -> customerDao.selectVersionedCustomersAfterId(afterId, limit), customers -> Outcome.SUCCESS);
+    }
+
+    @Override
+    public VersionedCustomerPage selectVersionedCustomersAfterIdUnlessDigest(Integer afterId, int limit, Collection<String> digests) {
+        return time(selectVersionedCustomersAfterIdUnlessDigest,
+                () -> customerDao.selectVersionedCustomersAfterIdUnlessDigest(afterId, limit, digests), page -> Outcome.SUCCESS);
+    }
+
+    @Override
+    public Stream<CustomerDTO> streamAllCustomerDTOs() {
+        return time(streamAllCustomerDTOs, customerDao::streamAllCustomerDTOs, customers -> Outcome.SUCCESS);
+    }
+
+    @Override
+    public Optional<CustomerDTO> selectCustomerDTOById(Integer customerId) {
+        return time(selectCustomerDTOById, () -> customerDao.selectCustomerDTOById(customerId), customer -> Outcome.of(customer.isPresent()));
+    }
+
+    @Override
+    public Optional<VersionedCustomer> selectVersionedCustomerById(Integer customerId) {
+        return time(selectVersionedCustomerById, () -> customerDao.selectVersionedCustomerById(customerId), customer -> Outcome.of(customer.isPresent()));
+    }
+
+    @Override
+    public Optional<Integer> insertCustomer(Customer customer) {
+        return time(insertCustomer, () -> customerDao.insertCustomer(customer),
+                id -> id.isPresent() ? Outcome.SUCCESS : Outcome.DUPLICATE);
+    }
+
+    @Override
+    public Set<String> insertCustomers(List<Customer> customers) {
+        return time(insertCustomers, () -> customerDao.insertCustomers(customers),
+                inserted -> inserted.size() == customers.size() ? Outcome.SUCCESS : Outcome.DUPLICATE);
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return time(existsPersonWithEmail, () -> customerDao.existsPersonWithEmail(email), Outcome::of);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return time(selectExistingEmails, () -> customerDao.selectExistingEmails(emails), existing -> Outcome.SUCCESS);
+    }
+
+    @Override
+    public boolean deleteCustomerById(Integer customerId) {
+        return time(deleteCustomerById, () -> customerDao.deleteCustomerById(customerId),
+                deleted -> deleted ? Outcome.SUCCESS : Outcome.NOT_FOUND);
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer customer_id) {
+        return time(existsCustomerWithId, () -> customerDao.existsCustomerWithId(customer_id), Outcome::of);
+    }
+
+    @Override
+    public boolean updateCustomerPassword(Integer customerId, String password) {
+        return time(updateCustomerPassword, () -> customerDao.updateCustomerPassword(customerId, password),
+                updated -> updated ? Outcome.SUCCESS : Outcome.NOT_FOUND);
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Customer update, Long expectedVersion) {
+        return time(updateCustomer, () -> customerDao.updateCustomer(update, expectedVersion),
+                updated -> updated.isPresent() ? Outcome.SUCCESS : Outcome.NOT_UPDATED);
+    }
+
+    @Override
+    public Optional<Customer> selectUserByEmail(String email) {
+        return time(selectUserByEmail, () -> customerDao.selectUserByEmail(email), customer -> Outcome.of(customer.isPresent()));
+    }
+
+    private <T> T time(Operation operation, Supplier<T> call, Function<T, Outcome> outcome) {
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            operation.record(outcome.apply(result), start);
+            return result;
+        } catch (RuntimeException e) {
+            operation.record(Outcome.of(e), start);
+            throw e;
+        }
+    }
+
+    // The timers of a method, registered on first use: a dao/method/outcome that never happens has no series
+    private final class Operation {
+
+        private final String method;
+        private final AtomicReferenceArray<Timer> timers = new AtomicReferenceArray<>(Outcome.values().length);
+
+        private Operation(String method) {
+            this.method = method;
+        }
+
+        void record(Outcome outcome, long start) {
+            Timer timer = timers.get(outcome.ordinal());
+            if(timer == null){
+                timer = Timer.builder(TIMER)
+                        .tag("dao", dao)
+                        .tag("method", method)
+                        .tag("outcome", outcome.tag)
+                        .register(meterRegistry);
+                timers.set(outcome.ordinal(), timer);
+            }
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.groovanoscode.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wraps every {@link CustomerDao} bean in a {@link MeteredCustomerDao} tagged with the name of the bean
+ * (jdbc, jpa, list, cached), so whichever DAO a service is wired to is measured.
+ */
+@Component
+public class MeteredCustomerDaoPostProcessor implements BeanPostProcessor {
+
+    // Looked up when the first DAO is created, the registry does not exist yet when the post processors do
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public MeteredCustomerDaoPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof CustomerDao customerDao && !(bean instanceof MeteredCustomerDao)) {
+            return new MeteredCustomerDao(customerDao, beanName, meterRegistry.getObject());
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,59 @@
+package com.groovanoscode.customer;
+
+import com.groovanoscode.exception.DuplicateResourceException;
+import com.groovanoscode.exception.PreconditionFailedException;
+import com.groovanoscode.exception.RequestValidationException;
+import com.groovanoscode.exception.ResourceNotFoundException;
+import com.groovanoscode.exception.ServiceUnavailableException;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.concurrent.CompletionException;
+
+/**
+ * The outcome tag of the customer.dao and customer.service timers.
+ */
+enum Outcome {
+    SUCCESS("success"),
+    FOUND("found"),
+    NOT_FOUND("not-found"),
+    // An update that changed nothing: unknown id, stale version, no actual change or an email taken
+    NOT_UPDATED("not-updated"),
+    DUPLICATE("duplicate"),
+    CONFLICT("conflict"),
+    INVALID("invalid"),
+    REJECTED("rejected"),
+    ERROR("error");
+
+    final String tag;
+
+    Outcome(String tag) {
+        this.tag = tag;
+    }
+
+    static Outcome of(boolean found) {
+        return found ? FOUND : NOT_FOUND;
+    }
+
+    static Outcome of(Throwable e) {
+        if(e instanceof CompletionException && e.getCause() != null){
+            e = e.getCause();
+        }
+        if(e instanceof ResourceNotFoundException){
+            return NOT_FOUND;
+        }
+        if(e instanceof DuplicateResourceException || e instanceof DataIntegrityViolationException){
+            return DUPLICATE;
+        }
+        if(e instanceof PreconditionFailedException || e instanceof ConcurrencyFailureException){
+            return CONFLICT;
+        }
+        if(e instanceof RequestValidationException){
+            return INVALID;
+        }
+        if(e instanceof ServiceUnavailableException){
+            return REJECTED;
+        }
+        return ERROR;
+    }
+}
@@ -0,0 +1,38 @@
+package com.groovanoscode.customer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The non blocking counterpart of {@link CustomerDao} for the reactive profile, with the same semantics:
+ * an empty {@link Mono} where the blocking DAO returns an empty {@link java.util.Optional}.
+ */
+public interface ReactiveCustomerDao {
+
+    // Like the projections of CustomerDao: only the columns of a CustomerDTO, no password hash
+
+    Flux<VersionedCustomer> selectVersionedCustomersAfterId(Integer afterId, int limit);
+
+    /**
+     * Every customer, ordered by id, as fast as the subscriber requests them.
+     */
+    Flux<CustomerDTO> streamAllCustomerDTOs();
+
+    Mono<VersionedCustomer> selectVersionedCustomerById(Integer customerId);
+
+    Mono<Customer> selectUserByEmail(String email);
+
+    /**
+     * Inserts the customer and returns its id, or nothing when the email is taken (see {@link CustomerDao#insertCustomer}).
+     */
+    Mono<Integer> insertCustomer(Customer customer);
+
+    Mono<Boolean> deleteCustomerById(Integer customerId);
+
+    /**
+     * See {@link CustomerDao#updateCustomer(Customer, Long)}.
+     */
+    Mono<Customer> updateCustomer(Customer update, Long expectedVersion);
+
+    Mono<Boolean> updateCustomerPassword(Integer customerId, String password);
+}
@@ -0,0 +1,127 @@
+package com.groovanoscode.customer;
+
+import com.groovanoscode.exception.DuplicateResourceException;
+import com.groovanoscode.exception.PreconditionFailedException;
+import com.groovanoscode.exception.RequestValidationException;
+import com.groovanoscode.exception.ResourceNotFoundException;
+import com.groovanoscode.jwt.JWTPrincipal;
+import com.groovanoscode.security.PasswordHashingExecutor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+
+/**
+ * {@link CustomerService} for the reactive profile: the same rules and the same errors, as signals.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveCustomerService {
+
+    private final ReactiveCustomerDao customerDao;
+    private final CustomerDTOMapper customerDTOMapper;
+    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final CustomerUserCache customerUserCache;
+
+    public ReactiveCustomerService(ReactiveCustomerDao customerDao , CustomerDTOMapper customerDTOMapper , PasswordEncoder passwordEncoder ,
+                                   PasswordHashingExecutor passwordHashingExecutor , CustomerUserCache customerUserCache) {
+        this.customerDao = customerDao;
+        this.customerDTOMapper = customerDTOMapper;
+        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.customerUserCache = customerUserCache;
+    }
+
+    public Mono<CustomerPage> getCustomers(Integer afterId, int limit){
+        if(limit < 1 || limit > CustomerService.MAX_PAGE_SIZE){
+            return Mono.error(new RequestValidationException(
+                    "limit must be between 1 and %s".formatted(CustomerService.MAX_PAGE_SIZE)));
+        }
+
+        // One customer more than requested, see CustomerPage.of
+        return customerDao.selectVersionedCustomersAfterId(afterId == null ? 0 : afterId, limit + 1)
+                .collectList()
+                .map(customers -> CustomerPage.of(customers, limit));
+    }
+
+    public Flux<CustomerDTO> exportCustomers(){
+        return customerDao.streamAllCustomerDTOs();
+    }
+
+    public Mono<VersionedCustomer> getVersionedCustomer(Integer customerId){
+        return customerDao.selectVersionedCustomerById(customerId)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException(
+                        "Customer with id [%s] not found".formatted(customerId))));
+    }
+
+    /**
+     * See {@link CustomerService#getAuthenticatedCustomer}.
+     */
+    public Mono<CustomerDTO> getAuthenticatedCustomer(Authentication authentication){
+        Object principal = authentication.getPrincipal();
+        if(principal instanceof Customer customer){
+            return Mono.just(customerDTOMapper.apply(customer));
+        }
+        Mono<CustomerDTO> customer = principal instanceof JWTPrincipal jwtPrincipal && jwtPrincipal.customerId() != null
+                ? customerDao.selectVersionedCustomerById(jwtPrincipal.customerId()).map(VersionedCustomer::customer)
+                : customerDao.selectUserByEmail(authentication.getName()).map(customerDTOMapper);
+        return customer
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException(
+                        "customer with [%s] not found".formatted(authentication.getName()))));
+    }
+
+    /**
+     * Hashes the password on the hashing executor (503 when it is saturated) and inserts the customer.
+     */
+    public Mono<Integer> addCustomer(CustomerRegistrationRequest request){
+        return Mono.fromFuture(() -> passwordHashingExecutor.submit(() -> passwordEncoder.encode(request.password())))
+                .flatMap(passwordHash -> customerDao.insertCustomer(new Customer(
+                        request.name(),
+                        request.email(),
+                        passwordHash,
+                        request.age(),
+                        request.gender())))
+                .switchIfEmpty(Mono.error(() -> new DuplicateResourceException("email already taken")));
+    }
+
+    public Mono<Void> deleteCustomer(Integer customerId){
+        return customerDao.deleteCustomerById(customerId)
+                .flatMap(deleted -> deleted
+                        ? Mono.fromRunnable(() -> customerUserCache.removeCustomerFromCache(customerId))
+                        : Mono.error(new ResourceNotFoundException("Customer with id [%s] not found".formatted(customerId))))
+                .then();
+    }
+
+    public Mono<VersionedCustomer> updateCustomerById(Integer customerId, CustomerUpdateRequest request, Long expectedVersion){
+        Customer update = new Customer(customerId, request.name(), request.email(), null, request.age(), request.gender());
+
+        return customerDao.updateCustomer(update, expectedVersion)
+                .onErrorMap(DataIntegrityViolationException.class,
+                        e -> new DuplicateResourceException("email already taken"))
+                .switchIfEmpty(Mono.defer(() -> updateFailure(update, expectedVersion)))
+                .doOnNext(updated -> customerUserCache.removeCustomerFromCache(customerId))
+                .map(updated -> new VersionedCustomer(customerDTOMapper.apply(updated), updated.getVersion()));
+    }
+
+    // Only when nothing was updated we read the customer to tell why, like CustomerService
+    private Mono<Customer> updateFailure(Customer update, Long expectedVersion){
+        return customerDao.selectVersionedCustomerById(update.getId())
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException(
+                        "customer with [%s] not found".formatted(update.getId()))))
+                .flatMap(customer -> {
+                    if(expectedVersion != null && !expectedVersion.equals(customer.version())){
+                        return Mono.error(new PreconditionFailedException(
+                                "customer with [%s] was modified by someone else, reload it and try again".formatted(update.getId())));
+                    }
+                    if(update.getEmail() != null && !update.getEmail().equals(customer.customer().email())){
+                        return Mono.error(new DuplicateResourceException("email already taken"));
+                    }
+                    return Mono.error(new RequestValidationException("No data changes found"));
+                });
+    }
+}
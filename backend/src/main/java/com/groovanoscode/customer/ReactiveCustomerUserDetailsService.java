@@ -0,0 +1,42 @@
+package com.groovanoscode.customer;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsPasswordService;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link CustomerUserDetailsService} for the reactive profile.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveCustomerUserDetailsService implements ReactiveUserDetailsService, ReactiveUserDetailsPasswordService {
+
+    private final ReactiveCustomerDao customerDao;
+
+    private final CustomerUserCache customerUserCache;
+
+    public ReactiveCustomerUserDetailsService(ReactiveCustomerDao customerDao , CustomerUserCache customerUserCache) {
+        this.customerDao = customerDao;
+        this.customerUserCache = customerUserCache;
+    }
+
+    @Override
+    public Mono<UserDetails> findByUsername(String username) {
+        return customerDao.selectUserByEmail(username).cast(UserDetails.class);
+    }
+
+    /**
+     * Called by the login with the password hashed again, when the old hash used another cost factor.
+     */
+    @Override
+    public Mono<UserDetails> updatePassword(UserDetails user, String newPassword) {
+        Customer customer = (Customer) user;
+        return customerDao.updateCustomerPassword(customer.getId(), newPassword)
+                .doOnNext(updated -> customerUserCache.removeCustomerFromCache(customer.getId()))
+                .thenReturn(new Customer(customer.getId(), customer.getName(), customer.getEmail(), newPassword,
+                        customer.getAge(), customer.getGender(), customer.getVersion()));
+    }
+}
@@ -0,0 +1,141 @@
+package com.groovanoscode.customer;
+
+import com.groovanoscode.replica.ReadReplicas;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Sends the reads of the customers to the {@link ReadReplicas}, keyed by id or email so a customer that was just
+ * written is read from the primary. The rest stays on the primary: the writes, the export (it streams in a
+ * transaction) and the email check of the bulk registration (it is about to insert).
+ */
+class ReadReplicaCustomerDao implements CustomerDao {
+
+    private final CustomerDao customerDao;
+    private final ReadReplicas readReplicas;
+
+    ReadReplicaCustomerDao(CustomerDao customerDao, ReadReplicas readReplicas) {
+        this.customerDao = customerDao;
+        this.readReplicas = readReplicas;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return readReplicas.read(null, customerDao::selectAllCustomers);
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer afterId, int limit) {
+        return readReplicas.read(null, () -> customerDao.selectCustomersAfterId(afterId, limit));
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return customerDao.streamAllCustomers();
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer customerId) {
+        return readReplicas.read(customerId, () -> customerDao.selectCustomerById(customerId));
+    }
+
+    @Override
+    public List<VersionedCustomer> selectVersionedCustomersAfterId(Integer afterId, int limit) {
+        return readReplicas.read(null, () -> customerDao.selectVersionedCustomersAfterId(afterId, limit));
+    }
+
+    @Override
+    public VersionedCustomerPage selectVersionedCustomersAfterIdUnlessDigest(Integer afterId, int limit, Collection<String> digests) {
+        return readReplicas.read(null, () -> customerDao.selectVersionedCustomersAfterIdUnlessDigest(afterId, limit, digests));
+    }
+
+    @Override
+    public Stream<CustomerDTO> streamAllCustomerDTOs() {
+        return customerDao.streamAllCustomerDTOs();
+    }
+
+    @Override
+    public Optional<CustomerDTO> selectCustomerDTOById(Integer customerId) {
+        return readReplicas.read(customerId, () -> customerDao.selectCustomerDTOById(customerId));
+    }
+
+    @Override
+    public Optional<VersionedCustomer> selectVersionedCustomerById(Integer customerId) {
+        return readReplicas.read(customerId, () -> customerDao.selectVersionedCustomerById(customerId));
+    }
+
+    @Override
+    public Optional<Customer> selectUserByEmail(String email) {
+        return readReplicas.read(Customer.normalizeEmail(email), () -> customerDao.selectUserByEmail(email));
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return readReplicas.read(Customer.normalizeEmail(email), () -> customerDao.existsPersonWithEmail(email));
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer customer_id) {
+        return readReplicas.read(customer_id, () -> customerDao.existsCustomerWithId(customer_id));
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return customerDao.selectExistingEmails(emails);
+    }
+
+    // The writes are sticky even when they fail, a conflict is usually followed by a read of the customer
+
+    @Override
+    public Optional<Integer> insertCustomer(Customer customer) {
+        Optional<Integer> id;
+        try {
+            id = customerDao.insertCustomer(customer);
+        } finally {
+            readReplicas.written(Customer.normalizeEmail(customer.getEmail()));
+        }
+        id.ifPresent(readReplicas::written);
+        return id;
+    }
+
+    @Override
+    public Set<String> insertCustomers(List<Customer> customers) {
+        try {
+            return customerDao.insertCustomers(customers);
+        } finally {
+            customers.forEach(customer -> readReplicas.written(Customer.normalizeEmail(customer.getEmail())));
+        }
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Customer update, Long expectedVersion) {
+        try {
+            return customerDao.updateCustomer(update, expectedVersion);
+        } finally {
+            readReplicas.written(update.getId());
+            readReplicas.written(Customer.normalizeEmail(update.getEmail()));
+        }
+    }
+
+    @Override
+    public boolean updateCustomerPassword(Integer customerId, String password) {
+        try {
+            return customerDao.updateCustomerPassword(customerId, password);
+        } finally {
+            readReplicas.written(customerId);
+        }
+    }
+
+    @Override
+    public boolean deleteCustomerById(Integer customerId) {
+        try {
+            return customerDao.deleteCustomerById(customerId);
+        } finally {
+            readReplicas.written(customerId);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.groovanoscode.customer;
+
+import com.groovanoscode.replica.ReadReplicas;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Wraps the DAOs that query the database in a {@link ReadReplicaCustomerDao} when there are read replicas.
+ * The caching DAO reads through the jdbc one, so its misses go to the replicas too.
+ */
+@Component
+public class ReadReplicaCustomerDaoPostProcessor implements BeanPostProcessor {
+
+    private static final Set<String> DATABASE_DAOS = Set.of("jdbc", "jpa");
+
+    private final ObjectProvider<ReadReplicas> readReplicas;
+
+    public ReadReplicaCustomerDaoPostProcessor(ObjectProvider<ReadReplicas> readReplicas) {
+        this.readReplicas = readReplicas;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof CustomerDao customerDao && DATABASE_DAOS.contains(beanName)) {
+            ReadReplicas replicas = readReplicas.getObject();
+            if (replicas.enabled()) {
+                return new ReadReplicaCustomerDao(customerDao, replicas);
+            }
+        }
+        return bean;
+    }
+}
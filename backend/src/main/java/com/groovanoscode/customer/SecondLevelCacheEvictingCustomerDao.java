@@ -0,0 +1,128 @@
+package com.groovanoscode.customer;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Evicts the customers written through the jdbc DAO from the second-level cache of the jpa DAO, which does not
+ * see these writes. An insert has nothing to evict, the cache never holds a customer that does not exist.
+ */
+class SecondLevelCacheEvictingCustomerDao implements CustomerDao {
+
+    private final CustomerDao customerDao;
+    private final CustomerSecondLevelCache secondLevelCache;
+
+    SecondLevelCacheEvictingCustomerDao(CustomerDao customerDao, CustomerSecondLevelCache secondLevelCache) {
+        this.customerDao = customerDao;
+        this.secondLevelCache = secondLevelCache;
+    }
+
+    // Evicted even when the write fails, it may have failed because the cached customer is the stale one
+
+    @Override
+    public Optional<Customer> updateCustomer(Customer update, Long expectedVersion) {
+        try {
+            return customerDao.updateCustomer(update, expectedVersion);
+        } finally {
+            secondLevelCache.evict(update.getId());
+        }
+    }
+
+    @Override
+    public boolean updateCustomerPassword(Integer customerId, String password) {
+        try {
+            return customerDao.updateCustomerPassword(customerId, password);
+        } finally {
+            secondLevelCache.evict(customerId);
+        }
+    }
+
+    // The email of a deleted customer may come back with a new id: the jpa DAO finds no customer for the cached id
+    // and looks the email up again
+    @Override
+    public boolean deleteCustomerById(Integer customerId) {
+        try {
+            return customerDao.deleteCustomerById(customerId);
+        } finally {
+            secondLevelCache.evict(customerId);
+        }
+    }
+
+    @Override
+    public Optional<Integer> insertCustomer(Customer customer) {
+        return customerDao.insertCustomer(customer);
+    }
+
+    @Override
+    public Set<String> insertCustomers(List<Customer> customers) {
+        return customerDao.insertCustomers(customers);
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return customerDao.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer afterId, int limit) {
+        return customerDao.selectCustomersAfterId(afterId, limit);
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return customerDao.streamAllCustomers();
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer customerId) {
+        return customerDao.selectCustomerById(customerId);
+    }
+
+    @Override
+    public List<VersionedCustomer> selectVersionedCustomersAfterId(Integer afterId, int limit) {
+        return customerDao.selectVersionedCustomersAfterId(afterId, limit);
+    }
+
+    @Override
+    public VersionedCustomerPage selectVersionedCustomersAfterIdUnlessDigest(Integer afterId, int limit, Collection<String> digests) {
+        return customerDao.selectVersionedCustomersAfterIdUnlessDigest(afterId, limit, digests);
+    }
+
+    @Override
+    public Stream<CustomerDTO> streamAllCustomerDTOs() {
+        return customerDao.streamAllCustomerDTOs();
+    }
+
+    @Override
+    public Optional<CustomerDTO> selectCustomerDTOById(Integer customerId) {
+        return customerDao.selectCustomerDTOById(customerId);
+    }
+
+    @Override
+    public Optional<VersionedCustomer> selectVersionedCustomerById(Integer customerId) {
+        return customerDao.selectVersionedCustomerById(customerId);
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return customerDao.existsPersonWithEmail(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return customerDao.selectExistingEmails(emails);
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer customer_id) {
+        return customerDao.existsCustomerWithId(customer_id);
+    }
+
+    @Override
+    public Optional<Customer> selectUserByEmail(String email) {
+        return customerDao.selectUserByEmail(email);
+    }
+}
@@ -0,0 +1,30 @@
+package com.groovanoscode.customer;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wraps the jdbc DAO in a {@link SecondLevelCacheEvictingCustomerDao} when the second-level cache is enabled.
+ * The cached DAO writes through the jdbc one, so its writes evict too.
+ */
+@Component
+public class SecondLevelCacheEvictingCustomerDaoPostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<CustomerSecondLevelCache> secondLevelCache;
+
+    public SecondLevelCacheEvictingCustomerDaoPostProcessor(ObjectProvider<CustomerSecondLevelCache> secondLevelCache) {
+        this.secondLevelCache = secondLevelCache;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof CustomerDao customerDao && "jdbc".equals(beanName)) {
+            CustomerSecondLevelCache cache = secondLevelCache.getIfAvailable();
+            if (cache != null) {
+                return new SecondLevelCacheEvictingCustomerDao(customerDao, cache);
+            }
+        }
+        return bean;
+    }
+}
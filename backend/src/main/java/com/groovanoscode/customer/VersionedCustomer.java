@@ -0,0 +1,16 @@
+package com.groovanoscode.customer;
+
+/**
+ * A customer together with its current version, which the controller sends as the ETag.
+ */
+public record VersionedCustomer(
+        CustomerDTO customer,
+        Long version
+) {
+    /**
+     * The customer as read by the page projection, see {@link CustomerDTO#CustomerDTO(Integer, String, String, Gender, Integer)}.
+     */
+    public VersionedCustomer(Integer id, String name, String email, Gender gender, Integer age, Long version) {
+        this(new CustomerDTO(id, name, email, gender, age), version);
+    }
+}
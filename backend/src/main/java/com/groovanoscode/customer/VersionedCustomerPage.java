@@ -0,0 +1,27 @@
+package com.groovanoscode.customer;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A page read for a client that may have it already, see
+ * {@link CustomerDao#selectVersionedCustomersAfterIdUnlessDigest}: the {@link CustomerPage#digest} of the page, and
+ * its customers, or null when the client has this digest.
+ */
+public record VersionedCustomerPage(
+        String digest,
+        List<VersionedCustomer> customers
+) {
+
+    /**
+     * For the DAOs that read the page anyway and compute the digest in Java.
+     */
+    static VersionedCustomerPage of(List<VersionedCustomer> customers, Collection<String> digests) {
+        String digest = CustomerPage.digest(customers);
+        return new VersionedCustomerPage(digest, digests.contains(digest) ? null : customers);
+    }
+
+    public boolean unchanged() {
+        return customers == null;
+    }
+}
@@ -0,0 +1,97 @@
+package com.groovanoscode.exception;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebExceptionHandler;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * {@link DefaultExceptionHandler} for the reactive profile: the same statuses and the same {@link ApiError} body.
+ * Runs before the error handler of Spring Boot (order -1).
+ */
+@Component
+@Order(-2)
+@Profile("reactive")
+public class ReactiveExceptionHandler implements WebExceptionHandler {
+
+    private final ObjectMapper objectMapper;
+
+    public ReactiveExceptionHandler(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public Mono<Void> handle(ServerWebExchange exchange, Throwable e) {
+        ServerHttpResponse response = exchange.getResponse();
+        if(response.isCommitted()){
+            // Part of the body is already sent (e.g. an export), there is nothing we can add
+            return Mono.error(e);
+        }
+
+        HttpStatusCode status = status(e);
+        ApiError apiError = new ApiError(
+                exchange.getRequest().getPath().value(),
+                e instanceof ResponseStatusException responseStatusException ? responseStatusException.getReason() : e.getMessage(),
+                status.value(),
+                LocalDateTime.now()
+        );
+
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(apiError);
+        } catch (JsonProcessingException jsonProcessingException) {
+            return Mono.error(jsonProcessingException);
+        }
+
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        if(e instanceof ServiceUnavailableException){
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+        }
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+
+    private static HttpStatusCode status(Throwable e) {
+        if(e instanceof ResourceNotFoundException){
+            return HttpStatus.NOT_FOUND;
+        }
+        if(e instanceof RequestValidationException){
+            return HttpStatus.BAD_REQUEST;
+        }
+        if(e instanceof DuplicateResourceException){
+            return HttpStatus.CONFLICT;
+        }
+        if(e instanceof PreconditionFailedException){
+            return HttpStatus.PRECONDITION_FAILED;
+        }
+        if(e instanceof ServiceUnavailableException){
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        }
+        if(e instanceof BadCredentialsException){
+            return HttpStatus.UNAUTHORIZED;
+        }
+        // No or an invalid token, like the servlet stack
+        if(e instanceof AuthenticationException || e instanceof AccessDeniedException){
+            return HttpStatus.FORBIDDEN;
+        }
+        if(e instanceof ResponseStatusException responseStatusException){
+            return responseStatusException.getStatusCode();
+        }
+        return HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+}
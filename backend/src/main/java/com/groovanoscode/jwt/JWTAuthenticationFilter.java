@@ -1,13 +1,18 @@
 package com.groovanoscode.jwt;
 
+import com.groovanoscode.customer.CustomerUserCache;
 import com.groovanoscode.customer.CustomerUserDetailsService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetails;
@@ -18,14 +23,23 @@ import org.springframework.web.filter.OncePerRequestFilter;
 import java.io.IOException;
 
 @Component
+@Profile("!reactive")
 public class JWTAuthenticationFilter extends OncePerRequestFilter {
     private final JWTUtil jwtUtil;
 
     private final UserDetailsService userDetailsService;
 
-    public JWTAuthenticationFilter(JWTUtil jwtUtil , CustomerUserDetailsService userDetailsService) {
+    private final UserCache userCache;
+
+    // When true the claims of the token are the principal and the customer is never loaded to authenticate
+    private final boolean stateless;
+
+    public JWTAuthenticationFilter(JWTUtil jwtUtil , CustomerUserDetailsService userDetailsService , CustomerUserCache userCache ,
+                                   @Value("${jwt.stateless:false}") boolean stateless) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
+        this.userCache = userCache;
+        this.stateless = stateless;
     }
 
 
@@ -43,16 +57,32 @@ public class JWTAuthenticationFilter extends OncePerRequestFilter {
         // Extraction of the JWT Token
         String jwtToken = authHeader.substring(7); // 7 because "Bearer " has 7 characters
 
-        //get subject from token
-        String subject = jwtUtil.getSubject(jwtToken);
+        // Verify the token once. An invalid token leaves the request unauthenticated
+        VerifiedToken token = jwtUtil.verify(jwtToken).orElse(null);
+        String subject = token == null ? null : token.subject();
+
+        if(stateless && subject != null && SecurityContextHolder.getContext().getAuthentication() == null){
+            // No database: the signature vouches for the subject, the customer id and the scopes
+            UsernamePasswordAuthenticationToken authenticationToken =
+                    new UsernamePasswordAuthenticationToken(JWTPrincipal.of(token),
+                            null,
+                            token.scopes().stream().map(SimpleGrantedAuthority::new).toList());
+            authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            SecurityContextHolder.getContext().setAuthentication(authenticationToken);
+        }
 
         // Load User Details
-        if(subject != null && SecurityContextHolder.getContext().getAuthentication() == null){
+        if(!stateless && subject != null && SecurityContextHolder.getContext().getAuthentication() == null){
             // <SecurityContextHolder.getContext().getAuthentication() == null> means that if the user is not authenticated
-            UserDetails userDetails = userDetailsService.loadUserByUsername(subject);
+            // Most requests come from customers who were authenticated a moment ago, so we keep their principal
+            UserDetails userDetails = userCache.getUserFromCache(subject);
+            if(userDetails == null){
+                userDetails = userDetailsService.loadUserByUsername(subject);
+                userCache.putUserInCache(userDetails);
+            }
 
-            // Check if the token is still valid
-            if(jwtUtil.isTokenValid(jwtToken, userDetails.getUsername())){
+            // Check if the token belongs to the customer (signature and expiry are already verified)
+            if(subject.equals(userDetails.getUsername())){
                 //Create the UsernamePasswordAuthenticationToken
                 UsernamePasswordAuthenticationToken authenticationToken =
                         new UsernamePasswordAuthenticationToken(userDetails,
@@ -63,11 +93,9 @@ public class JWTAuthenticationFilter extends OncePerRequestFilter {
                 // Set the Authentication
                 SecurityContextHolder.getContext().setAuthentication(authenticationToken);
             }
-
-            filterChain.doFilter(request, response);
         }
 
-
-
+        // Also when the request was already authenticated or the token had no subject, otherwise the request ends here
+        filterChain.doFilter(request, response);
     }
 }
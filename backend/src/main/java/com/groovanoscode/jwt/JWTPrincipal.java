@@ -0,0 +1,26 @@
+package com.groovanoscode.jwt;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+
+import java.util.List;
+
+/**
+ * The principal of a request authenticated by its token alone (jwt.stateless), built from the verified claims
+ * without going to the database. Whoever needs the customer itself loads it by id.
+ */
+public record JWTPrincipal(String subject, Integer customerId, List<String> scopes) implements AuthenticatedPrincipal {
+
+    public JWTPrincipal {
+        scopes = scopes == null ? List.of() : List.copyOf(scopes);
+    }
+
+    static JWTPrincipal of(VerifiedToken token) {
+        return new JWTPrincipal(token.subject(), token.customerId(), token.scopes());
+    }
+
+    // Authentication.getName() is the subject, i.e. the email, like for a loaded Customer
+    @Override
+    public String getName() {
+        return subject;
+    }
+}
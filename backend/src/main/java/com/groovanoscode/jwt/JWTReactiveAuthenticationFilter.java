@@ -0,0 +1,83 @@
+package com.groovanoscode.jwt;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.NonNull;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+
+/**
+ * {@link JWTAuthenticationFilter} for the reactive profile. It is not a bean: WebFlux would run every
+ * WebFilter bean a second time outside of the security chain, ReactiveSecurityConfig adds it to that chain.
+ */
+public class JWTReactiveAuthenticationFilter implements WebFilter {
+
+    private final JWTUtil jwtUtil;
+
+    private final ReactiveUserDetailsService userDetailsService;
+
+    private final UserCache userCache;
+
+    // See jwt.stateless
+    private final boolean stateless;
+
+    public JWTReactiveAuthenticationFilter(JWTUtil jwtUtil , ReactiveUserDetailsService userDetailsService , UserCache userCache , boolean stateless) {
+        this.jwtUtil = jwtUtil;
+        this.userDetailsService = userDetailsService;
+        this.userCache = userCache;
+        this.stateless = stateless;
+    }
+
+    @Override
+    @NonNull
+    public Mono<Void> filter(@NonNull ServerWebExchange exchange , @NonNull WebFilterChain chain) {
+        String authHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if(authHeader == null || !authHeader.startsWith("Bearer ")){
+            return chain.filter(exchange);
+        }
+
+        // An invalid token leaves the request unauthenticated
+        VerifiedToken token = jwtUtil.verify(authHeader.substring(7)).orElse(null);
+        if(token == null || token.subject() == null){
+            return chain.filter(exchange);
+        }
+
+        // Not switchIfEmpty(chain.filter(...)): the chain itself completes empty and would run twice
+        return authenticate(token)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(authentication -> authentication
+                        .map(a -> chain.filter(exchange).contextWrite(ReactiveSecurityContextHolder.withAuthentication(a)))
+                        .orElseGet(() -> chain.filter(exchange)));
+    }
+
+    private Mono<Authentication> authenticate(VerifiedToken token) {
+        if(stateless){
+            // No database: the signature vouches for the subject, the customer id and the scopes
+            return Mono.just(new UsernamePasswordAuthenticationToken(JWTPrincipal.of(token),
+                    null,
+                    token.scopes().stream().map(SimpleGrantedAuthority::new).toList()));
+        }
+
+        String subject = token.subject();
+        return Mono.justOrEmpty(userCache.getUserFromCache(subject))
+                .switchIfEmpty(Mono.defer(() -> userDetailsService.findByUsername(subject)
+                        .doOnNext(userCache::putUserInCache)))
+                .filter(userDetails -> subject.equals(userDetails.getUsername()))
+                .map(JWTReactiveAuthenticationFilter::authenticated);
+    }
+
+    private static Authentication authenticated(UserDetails userDetails) {
+        return new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+    }
+}
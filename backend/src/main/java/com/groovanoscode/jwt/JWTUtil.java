@@ -1,33 +1,84 @@
 package com.groovanoscode.jwt;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Base64;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class JWTUtil {
 
     private  static  final String SECRET_KEY = "foobar_123456789_foobar_123456789_foobar_123456789_foobar_123456789";
 
+    public static final String SCOPES_CLAIM = "scopes";
+    public static final String CUSTOMER_ID_CLAIM = "customerId";
+
+    private static final int MAX_VERIFIED_TOKENS = 10_000;
+
+    // A token without expiry is still verified again from time to time
+    private static final Duration MAX_VERIFIED_TOKEN_AGE = Duration.ofHours(1);
+
+    // The key and the parser are immutable and thread safe, we build them once
+    private final Key signingKey = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    private final JwtParser parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+
+    // SHA-256 of the token -> its claims. Every entry expires together with its token
+    private final Cache<String, VerifiedToken> verifiedTokens = Caffeine.newBuilder()
+            .maximumSize(MAX_VERIFIED_TOKENS)
+            .expireAfter(new TokenExpiry())
+            .recordStats()
+            .build();
+
+    // jwt.verify times every check, jwt.parse only the cache misses (the signature check)
+    private final Timer validTokens;
+    private final Timer invalidTokens;
+    private final Timer parsedTokens;
+
+    public JWTUtil(MeterRegistry meterRegistry) {
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt.verified.tokens");
+        this.validTokens = Timer.builder("jwt.verify").tag("outcome", "valid").register(meterRegistry);
+        this.invalidTokens = Timer.builder("jwt.verify").tag("outcome", "invalid").register(meterRegistry);
+        this.parsedTokens = Timer.builder("jwt.parse").register(meterRegistry);
+    }
+
     public String issueToken(String subject){
         return  issueToken(subject, Map.of());
     }
 
     public String issueToken(String subject, String ...scopes){ //...scope is an Array
-        return  issueToken(subject, Map.of("scopes", scopes));
+        return  issueToken(subject, Map.of(SCOPES_CLAIM, scopes));
     }
 
     public String issueToken(String subject, List<String> scopes){ //...scope is an Array
-        return  issueToken(subject, Map.of("scopes", scopes));
+        return  issueToken(subject, Map.of(SCOPES_CLAIM, scopes));
+    }
+
+    // With the id of the customer the token is enough to authenticate a request, see jwt.stateless
+    public String issueToken(String subject, Integer customerId, List<String> scopes){
+        return  issueToken(subject, Map.of(CUSTOMER_ID_CLAIM, customerId, SCOPES_CLAIM, scopes));
     }
 
     public String issueToken(String subject, Map<String, Object> claims){
@@ -38,39 +89,98 @@ public class JWTUtil {
                 .setIssuer("https://groovanoscode.com")
                 .setIssuedAt(Date.from(Instant.now()))
                 .setExpiration(Date.from(Instant.now().plus(15 , ChronoUnit.DAYS)))
-                .signWith(getSigningKey() , SignatureAlgorithm.HS256)
+                .signWith(signingKey , SignatureAlgorithm.HS256)
                 .compact();
 
         return token;
     }
 
+    /**
+     * Checks the signature and the expiry of the token and returns its claims, or an empty optional
+     * when the token is not valid. A token is only parsed the first time we see it.
+     */
+    public Optional<VerifiedToken> verify(String token){
+        long start = System.nanoTime();
+        if(token == null || token.isBlank()){
+            invalidTokens.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return Optional.empty();
+        }
+
+        // The loader returns null for invalid tokens, and null is not cached
+        VerifiedToken verified = verifiedTokens.get(digest(token), digest -> parsedTokens.record(() -> parse(token)));
+        if(verified == null || verified.isExpired(Instant.now())){
+            invalidTokens.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return Optional.empty();
+        }
+        validTokens.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return Optional.of(verified);
+    }
+
     public String getSubject(String token){
         Claims claims = getClaims(token);
         return claims.getSubject();
     }
 
     public Claims getClaims(String token){
-        Claims claims = Jwts
-                .parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-
-        return claims;
+        return parser.parseClaimsJws(token).getBody();
+    }
+
+    public boolean isTokenValid(String jwtToken , String username) {
+        return verify(jwtToken)
+                .filter(token -> token.subject() != null && token.subject().equals(username))
+                .isPresent();
     }
 
-    private Key getSigningKey(){
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    private VerifiedToken parse(String token) {
+        try {
+            Claims claims = getClaims(token);
+            Date expiration = claims.getExpiration();
+            return new VerifiedToken(
+                    claims.getSubject(),
+                    claims.get(CUSTOMER_ID_CLAIM) instanceof Number id ? id.intValue() : null,
+                    scopes(claims.get(SCOPES_CLAIM)),
+                    expiration == null ? null : expiration.toInstant());
+        } catch (JwtException | IllegalArgumentException e) {
+            // Bad signature, expired, malformed...
+            return null;
+        }
     }
 
-    public boolean isTokenValid(String jwtToken , String username) {
-        String subject = getSubject(jwtToken);
-        return subject.equals(username) && !isTokenExpired(jwtToken);
+    private static List<String> scopes(Object scopes) {
+        return scopes instanceof List<?> list
+                ? list.stream().map(String::valueOf).toList()
+                : List.of();
+    }
+
+    private static final class TokenExpiry implements Expiry<String, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(String digest, VerifiedToken token, long currentTime) {
+            Duration validity = token.expiresAt() == null
+                    ? MAX_VERIFIED_TOKEN_AGE
+                    : Duration.between(Instant.now(), token.expiresAt());
+            return Math.max(0, validity.toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String digest, VerifiedToken token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String digest, VerifiedToken token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 
-    private boolean isTokenExpired(String jwtToken) {
-        Date today = Date.from(Instant.now());
-        return getClaims(jwtToken).getExpiration().before(today);
+    // The cache keeps digests rather than the bearer tokens themselves
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM has SHA-256
+            throw new IllegalStateException(e);
+        }
     }
 }
@@ -0,0 +1,19 @@
+package com.groovanoscode.jwt;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A token whose signature and expiry {@link JWTUtil#verify(String)} checked, with the claims we use.
+ * The customer id is null for tokens issued before it was a claim.
+ */
+public record VerifiedToken(String subject, Integer customerId, List<String> scopes, Instant expiresAt) {
+
+    public VerifiedToken {
+        scopes = scopes == null ? List.of() : List.copyOf(scopes);
+    }
+
+    public boolean isExpired(Instant now) {
+        return expiresAt != null && !expiresAt.isAfter(now);
+    }
+}
@@ -0,0 +1,43 @@
+package com.groovanoscode.pool;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * The health "connectionPool", part of the readiness probe: down while the requests waited longer than
+ * connection-pool.acquire-slo for a connection on average, or timed out, over the last interval of the
+ * {@link ConnectionPoolManager}. The load balancer then sends the requests to the other instances until it recovers.
+ */
+@Component
+public class ConnectionPoolHealthIndicator extends AbstractHealthIndicator {
+
+    private final ConnectionPoolManager connectionPoolManager;
+    private final Duration acquireSlo;
+
+    public ConnectionPoolHealthIndicator(ConnectionPoolManager connectionPoolManager ,
+                                         @Value("${connection-pool.acquire-slo:100ms}") Duration acquireSlo) {
+        this.connectionPoolManager = connectionPoolManager;
+        this.acquireSlo = acquireSlo;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        ConnectionPoolManager.Sample sample = connectionPoolManager.lastSample();
+        if (sample == null) {
+            builder.up();
+            return;
+        }
+        boolean slow = sample.timeouts() > 0 || sample.meanWaitMs() > acquireSlo.toMillis();
+        (slow ? builder.down() : builder.up())
+                .withDetail("meanWaitMs", sample.meanWaitMs())
+                .withDetail("acquireSloMs", acquireSlo.toMillis())
+                .withDetail("meanUsageMs", sample.meanUsageMs())
+                .withDetail("busyConnections", sample.busyConnections())
+                .withDetail("timeouts", sample.timeouts())
+                .withDetail("pending", sample.pending());
+    }
+}
@@ -0,0 +1,187 @@
+package com.groovanoscode.pool;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sizes the connection pool to the load. Every connection-pool.interval it compares how long the requests waited
+ * for a connection (hikaricp.connections.acquire) with how long they used it (hikaricp.connections.usage,
+ * the latency of the database as the API sees it):
+ * <ul>
+ *     <li>waiting longer than using, or timing out: the pool is the bottleneck, it grows by a quarter.
+ *     Unless the database got twice as slow as when nobody waited, then more connections would only add to its load</li>
+ *     <li>nobody waited and less than half of the pool was busy on average: it shrinks by one</li>
+ * </ul>
+ * always between connection-pool.min-size and max-size (metric connection.pool.resizes). The last measure is the
+ * health of the pool, see {@link ConnectionPoolHealthIndicator}. Leaks are logged by Hikari itself
+ * (leak-detection-threshold), with the stack trace of the borrower.
+ */
+@Component
+public class ConnectionPoolManager implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPoolManager.class);
+
+    // Below that nobody really waited
+    private static final double NO_WAIT_MS = 1;
+
+    private final DataSource dataSource;
+    private final MeterRegistry meterRegistry;
+    private final int minSize;
+    private final int maxSize;
+    private final Duration interval;
+    private ScheduledExecutorService scheduler;
+
+    private Totals last;
+    // The mean usage of a connection while nobody waited, what the database does when it is not overloaded
+    private double baselineUsageMs;
+    private volatile Sample lastSample;
+
+    public ConnectionPoolManager(DataSource dataSource , MeterRegistry meterRegistry ,
+                                 @Value("${connection-pool.min-size:5}") int minSize ,
+                                 @Value("${connection-pool.max-size:30}") int maxSize ,
+                                 @Value("${connection-pool.interval:10s}") Duration interval) {
+        this.dataSource = dataSource;
+        this.meterRegistry = meterRegistry;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.interval = interval;
+    }
+
+    // Once the bean is complete, never from the constructor
+    @Override
+    public void afterPropertiesSet() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("connection-pool-"));
+        scheduler.scheduleWithFixedDelay(this::adjust, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * What the pool did over the last interval, null before the first one.
+     */
+    public Sample lastSample() {
+        return lastSample;
+    }
+
+    private void adjust() {
+        try {
+            if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+                return;
+            }
+            HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+            HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+            Timer acquire = meterRegistry.find("hikaricp.connections.acquire").tag("pool", hikari.getPoolName()).timer();
+            Timer usage = meterRegistry.find("hikaricp.connections.usage").tag("pool", hikari.getPoolName()).timer();
+            Counter timeouts = meterRegistry.find("hikaricp.connections.timeout").tag("pool", hikari.getPoolName()).counter();
+            // Before the first connection there is no pool and no metric
+            if (pool == null || acquire == null || usage == null) {
+                return;
+            }
+
+            Totals totals = new Totals(acquire.count(), acquire.totalTime(TimeUnit.MILLISECONDS),
+                    usage.count(), usage.totalTime(TimeUnit.MILLISECONDS),
+                    timeouts == null ? 0 : (long) timeouts.count());
+            if (last != null) {
+                Sample sample = totals.since(last, interval, pool.getThreadsAwaitingConnection());
+                measured(sample);
+                resize(hikari, sample);
+            }
+            last = totals;
+        } catch (SQLException | RuntimeException e) {
+            log.warn("Could not adjust the connection pool", e);
+        }
+    }
+
+    void measured(Sample sample) {
+        lastSample = sample;
+    }
+
+    private void resize(HikariDataSource hikari, Sample sample) {
+        int size = hikari.getHikariConfigMXBean().getMaximumPoolSize();
+        int next = nextSize(size, sample);
+        if (next == size) {
+            return;
+        }
+        log.info("Connection pool {} -> {}: waited {} ms and used {} ms on average, {} busy",
+                size, next, String.format("%.1f", sample.meanWaitMs()), String.format("%.1f", sample.meanUsageMs()),
+                String.format("%.1f", sample.busyConnections()));
+        hikari.getHikariConfigMXBean().setMaximumPoolSize(next);
+        Counter.builder("connection.pool.resizes")
+                .tag("direction", next > size ? "up" : "down")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    int nextSize(int size, Sample sample) {
+        // Also brings a pool configured out of the bounds back into them
+        int bounded = Math.max(minSize, Math.min(maxSize, size));
+        boolean noWait = sample.timeouts() == 0 && sample.meanWaitMs() <= NO_WAIT_MS;
+        boolean waiting = sample.timeouts() > 0
+                || (!noWait && sample.meanWaitMs() > sample.meanUsageMs());
+
+        if (noWait && sample.acquisitions() > 0) {
+            baselineUsageMs = baselineUsageMs == 0 ? sample.meanUsageMs()
+                    : 0.8 * baselineUsageMs + 0.2 * sample.meanUsageMs();
+        }
+        if (waiting) {
+            boolean databaseSlowedDown = baselineUsageMs > 0 && sample.meanUsageMs() > 2 * baselineUsageMs;
+            return databaseSlowedDown ? bounded : Math.min(maxSize, bounded + Math.max(1, bounded / 4));
+        }
+        // Some waiting but less than the queries take: the size is about right
+        if (noWait && sample.busyConnections() < bounded / 2.0) {
+            return Math.max(minSize, bounded - 1);
+        }
+        return bounded;
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * The connections used and waited for over one interval.
+     *
+     * @param busyConnections how many connections were in use on average
+     * @param pending the requests waiting for a connection at the end of the interval
+     */
+    public record Sample(long acquisitions,
+                         double meanWaitMs,
+                         double meanUsageMs,
+                         double busyConnections,
+                         long timeouts,
+                         int pending) {
+    }
+
+    private record Totals(long acquisitions, double waitMs, long usages, double usageMs, long timeouts) {
+
+        Sample since(Totals previous, Duration interval, int pending) {
+            long acquired = acquisitions - previous.acquisitions;
+            long used = usages - previous.usages;
+            double usedMs = usageMs - previous.usageMs;
+            return new Sample(acquired,
+                    acquired == 0 ? 0 : (waitMs - previous.waitMs) / acquired,
+                    used == 0 ? 0 : usedMs / used,
+                    usedMs / interval.toMillis(),
+                    timeouts - previous.timeouts,
+                    pending);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.groovanoscode.replica;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The read replicas of the database (replica.urls), none by default. Queries run through {@link #read} go to a
+ * replica, everything else stays on the primary.
+ * <p>
+ * A replica is only used while it is at most replica.max-lag behind the primary, its lag is checked every
+ * replica.lag-check-interval (metric replica.lag, NaN while it cannot be reached). After a write, reads of the
+ * same key (a customer id or email) go to the primary for replica.stickiness, so the writer sees its write
+ * even on a lagging replica. The writes are only known to this instance of the API.
+ */
+@Component
+public class ReadReplicas implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadReplicas.class);
+
+    // A url of the primary itself is not in recovery and has no lag, handy locally
+    private static final String LAG = """
+            SELECT CASE
+                       WHEN NOT pg_is_in_recovery() THEN 0
+                       WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                       ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp())
+                   END
+            """;
+
+    private final List<String> urls;
+    private final Duration maxLag;
+    private final Duration lagCheckInterval;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final Cache<Object, Boolean> recentWrites;
+    private final List<Replica> replicas = new ArrayList<>();
+    private ScheduledExecutorService lagChecker;
+
+    public ReadReplicas(@Value("${replica.urls:}") List<String> urls ,
+                        @Value("${replica.stickiness:5s}") Duration stickiness ,
+                        @Value("${replica.max-lag:1s}") Duration maxLag ,
+                        @Value("${replica.lag-check-interval:1s}") Duration lagCheckInterval ,
+                        ObjectProvider<MeterRegistry> meterRegistry) {
+        this.urls = urls.stream().map(String::trim).filter(url -> !url.isEmpty()).toList();
+        this.maxLag = maxLag;
+        this.lagCheckInterval = lagCheckInterval;
+        this.meterRegistry = meterRegistry;
+        this.recentWrites = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(stickiness)
+                .build();
+    }
+
+    public boolean enabled() {
+        return !urls.isEmpty();
+    }
+
+    /**
+     * Runs the query on a replica, unless {@code key} was written within the stickiness.
+     * A null key is never sticky (e.g. a listing).
+     */
+    public <T> T read(Object key, Supplier<T> query) {
+        if (replicas.isEmpty() || (key != null && recentWrites.getIfPresent(key) != null)) {
+            return query.get();
+        }
+        return ReplicaRoutingDataSource.onReplica(query);
+    }
+
+    /**
+     * Sends the reads of {@code key} to the primary for the stickiness.
+     */
+    public void written(Object key) {
+        if (!replicas.isEmpty() && key != null) {
+            recentWrites.put(key, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Creates a pool per replica, like the pool of the primary but with its own url, and returns the data source
+     * routing between them.
+     */
+    DataSource route(DataSource primary) throws SQLException {
+        if (!primary.isWrapperFor(HikariDataSource.class)) {
+            log.warn("The data source is not a Hikari pool, the read replicas are not used");
+            return primary;
+        }
+        HikariDataSource primaryPool = primary.unwrap(HikariDataSource.class);
+        MeterRegistry registry = meterRegistry.getObject();
+
+        for (int i = 0; i < urls.size(); i++) {
+            HikariConfig config = new HikariConfig();
+            primaryPool.copyStateTo(config);
+            config.setJdbcUrl(urls.get(i));
+            config.setPoolName("replica-" + (i + 1));
+            // A replica that is down must neither keep the API from starting nor hold a request for long
+            config.setInitializationFailTimeout(-1);
+            config.setConnectionTimeout(Math.min(config.getConnectionTimeout(), 2000));
+            if (config.getMetricRegistry() == null && config.getMetricsTrackerFactory() == null) {
+                config.setMetricRegistry(registry);
+            }
+
+            Replica replica = new Replica(config.getPoolName(), new HikariDataSource(config));
+            Gauge.builder("replica.lag", replica, Replica::lag)
+                    .tag("replica", replica.name())
+                    .baseUnit("seconds")
+                    .register(registry);
+            replicas.add(replica);
+        }
+
+        lagChecker = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("replica-lag-"));
+        lagChecker.scheduleWithFixedDelay(this::checkLag, 0, lagCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+        return new ReplicaRoutingDataSource(primary, replicas);
+    }
+
+    void checkLag() {
+        for (Replica replica : replicas) {
+            double lag;
+            try {
+                Double seconds = new JdbcTemplate(replica.dataSource()).queryForObject(LAG, Double.class);
+                // No transaction replayed yet, we cannot tell
+                lag = seconds == null ? Double.NaN : seconds;
+            } catch (DataAccessException e) {
+                log.debug("Could not check the lag of {}", replica.name(), e);
+                lag = Double.NaN;
+            }
+            if (replica.updateLag(lag, maxLag)) {
+                log.warn("Read replica {} is {} (lag {} s)",
+                        replica.name(), replica.inSync() ? "in sync" : "out of sync, reading from the primary", lag);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (lagChecker != null) {
+            lagChecker.shutdownNow();
+        }
+        replicas.forEach(replica -> ((HikariDataSource) replica.dataSource()).close());
+    }
+}
@@ -0,0 +1,48 @@
+package com.groovanoscode.replica;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * A read replica and how far it is behind the primary, as last measured by {@link ReadReplicas}.
+ */
+final class Replica {
+
+    private final String name;
+    private final DataSource dataSource;
+    // Seconds, NaN until the first check and while the replica cannot be reached
+    private volatile double lag = Double.NaN;
+    private volatile boolean inSync;
+
+    Replica(String name, DataSource dataSource) {
+        this.name = name;
+        this.dataSource = dataSource;
+    }
+
+    String name() {
+        return name;
+    }
+
+    DataSource dataSource() {
+        return dataSource;
+    }
+
+    double lag() {
+        return lag;
+    }
+
+    boolean inSync() {
+        return inSync;
+    }
+
+    /**
+     * Returns true when the replica went in or out of sync.
+     */
+    boolean updateLag(double lag, Duration maxLag) {
+        this.lag = lag;
+        boolean wasInSync = inSync;
+        // NaN compares false, an unreachable replica is out of sync
+        inSync = lag * 1000 <= maxLag.toMillis();
+        return inSync != wasInSync;
+    }
+}
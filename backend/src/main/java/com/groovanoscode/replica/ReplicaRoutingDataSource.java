@@ -0,0 +1,67 @@
+package com.groovanoscode.replica;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Hands out connections to the primary, except in {@link #onReplica} where they come from the replicas in sync,
+ * in turn. Only the connection is routed: a transaction that already holds one keeps it, so reads inside a write
+ * transaction see its writes. Unwrapping (e.g. to the Hikari pool) reaches the primary.
+ */
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Boolean> ON_REPLICA = new ThreadLocal<>();
+
+    private final List<Replica> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+
+    ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas) {
+        this.replicas = List.copyOf(replicas);
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        replicas.forEach(replica -> targets.put(replica.name(), replica.dataSource()));
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Runs the query on a connection of a replica, or of the primary when no replica is in sync.
+     */
+    static <T> T onReplica(Supplier<T> query) {
+        Boolean previous = ON_REPLICA.get();
+        ON_REPLICA.set(Boolean.TRUE);
+        try {
+            return query.get();
+        } finally {
+            if (previous == null) {
+                ON_REPLICA.remove();
+            } else {
+                ON_REPLICA.set(previous);
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (ON_REPLICA.get() == null) {
+            return PRIMARY;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.inSync()) {
+                return replica.name();
+            }
+        }
+        return PRIMARY;
+    }
+}
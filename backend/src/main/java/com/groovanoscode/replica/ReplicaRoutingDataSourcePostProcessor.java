@@ -0,0 +1,46 @@
+package com.groovanoscode.replica;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Puts the data source behind a {@link ReplicaRoutingDataSource} when there are read replicas.
+ * It runs before the other post processors, so the statement counting sees the statements of the replicas too.
+ */
+@Component
+public class ReplicaRoutingDataSourcePostProcessor implements BeanPostProcessor, Ordered {
+
+    private final ObjectProvider<ReadReplicas> readReplicas;
+
+    public ReplicaRoutingDataSourcePostProcessor(ObjectProvider<ReadReplicas> readReplicas) {
+        this.readReplicas = readReplicas;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (!(bean instanceof DataSource dataSource) || bean instanceof ReplicaRoutingDataSource) {
+            return bean;
+        }
+        ReadReplicas replicas = readReplicas.getObject();
+        if (!replicas.enabled()) {
+            return bean;
+        }
+        try {
+            return replicas.route(dataSource);
+        } catch (SQLException e) {
+            throw new BeanCreationException(beanName, "Could not route to the read replicas", e);
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
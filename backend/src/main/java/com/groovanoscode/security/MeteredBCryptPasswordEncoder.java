@@ -0,0 +1,64 @@
+package com.groovanoscode.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * BCrypt with a configurable cost, timing every hash as password.hash (tagged encode or matches).
+ * <p>
+ * A hash made with another cost, lower or higher, needs an upgrade: the login then rehashes the password
+ * with the current cost (see {@link org.springframework.security.core.userdetails.UserDetailsPasswordService}).
+ */
+public class MeteredBCryptPasswordEncoder implements PasswordEncoder {
+
+    private final BCryptPasswordEncoder delegate;
+    private final int strength;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+
+    public MeteredBCryptPasswordEncoder(int strength, MeterRegistry meterRegistry) {
+        this.delegate = new BCryptPasswordEncoder(strength);
+        this.strength = strength;
+        this.encodeTimer = Timer.builder("password.hash")
+                .tag("operation", "encode")
+                .register(meterRegistry);
+        this.matchesTimer = Timer.builder("password.hash")
+                .tag("operation", "matches")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return encodeTimer.record(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return matchesTimer.record(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        // BCryptPasswordEncoder only upgrades weaker hashes, we also go back down when the cost was lowered
+        Integer cost = cost(encodedPassword);
+        return cost != null && cost != strength;
+    }
+
+    // $2a$10$<salt and hash>
+    private static Integer cost(String encodedPassword) {
+        if(encodedPassword == null){
+            return null;
+        }
+        String[] parts = encodedPassword.split("\\$");
+        if(parts.length < 4){
+            return null;
+        }
+        try {
+            return Integer.valueOf(parts[2]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
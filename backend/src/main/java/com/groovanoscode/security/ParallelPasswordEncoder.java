@@ -0,0 +1,47 @@
+package com.groovanoscode.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Hashes many passwords at once on the threads of the {@link PasswordHashingExecutor}, so the batches and the
+ * logins share one pool sized to the cores instead of competing for them.
+ * <p>
+ * A batch only queues two passwords per hashing thread at a time, the rest of the queue stays free for the
+ * logins. When the queue is full anyway the calling thread hashes the password itself, so a big batch slows
+ * down its own request instead of failing.
+ */
+@Component
+public class ParallelPasswordEncoder {
+
+    private static final int QUEUED_HASHES_PER_THREAD = 2;
+
+    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+
+    public ParallelPasswordEncoder(PasswordEncoder passwordEncoder , PasswordHashingExecutor passwordHashingExecutor) {
+        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+    }
+
+    /**
+     * Returns the hashes in the same order as the raw passwords.
+     */
+    public List<String> encodeAll(List<String> rawPasswords) {
+        int window = passwordHashingExecutor.threads() * QUEUED_HASHES_PER_THREAD;
+        List<String> hashes = new ArrayList<>(rawPasswords.size());
+        for (int from = 0; from < rawPasswords.size(); from += window) {
+            // Submit the whole window first, then wait, otherwise we would hash one password at a time
+            List<CompletableFuture<String>> submitted = rawPasswords
+                    .subList(from, Math.min(from + window, rawPasswords.size())).stream()
+                    .map(rawPassword -> passwordHashingExecutor.submitOrRun(() -> passwordEncoder.encode(rawPassword)))
+                    .toList();
+            submitted.forEach(hash -> hashes.add(hash.join()));
+        }
+        return hashes;
+    }
+}
@@ -0,0 +1,111 @@
+package com.groovanoscode.security;
+
+import com.groovanoscode.exception.ServiceUnavailableException;
+import com.groovanoscode.sql.SqlStatementCounter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs the logins and the registrations, i.e. their password hashing, off the request threads. The batches hash
+ * on the same threads, see {@link ParallelPasswordEncoder}.
+ * A burst of logins waits in a bounded queue instead of holding every Tomcat thread for ~100 ms each,
+ * and once the queue is full we answer 503 right away.
+ * <p>
+ * Metrics: password.hashing.queue.depth, password.hashing.active and password.hashing.rejected.
+ */
+@Component
+public class PasswordHashingExecutor implements DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+    private final Counter rejected;
+    private final int threads;
+
+    public PasswordHashingExecutor(MeterRegistry meterRegistry ,
+                                   @Value("${password-hashing.threads:0}") int threads ,
+                                   @Value("${password-hashing.queue-capacity:100}") int queueCapacity) {
+        // Hashing is pure CPU, more threads than cores would only make every hash slower
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(
+                this.threads, this.threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("login-hashing-"),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("password.hashing.queue.depth", executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("password.hashing.rejected")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the task on a hashing thread, or throws a {@link ServiceUnavailableException} when too many are waiting.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            // The SQL of the login and the registration still counts for their request
+            return CompletableFuture.supplyAsync(SqlStatementCounter.propagate(task), this::execute);
+        } catch (RejectedExecutionException e) {
+            throw saturated();
+        }
+    }
+
+    /**
+     * Runs the task on a hashing thread, or in the calling thread when too many are waiting. For the batches:
+     * they slow down their own request rather than fail, and are not counted as rejected.
+     */
+    public <T> CompletableFuture<T> submitOrRun(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(task.get());
+        }
+    }
+
+    public int threads() {
+        return threads;
+    }
+
+    /**
+     * The hashing threads as a plain executor, e.g. for a Reactor scheduler. It throws a
+     * {@link RejectedExecutionException} when too many tasks are waiting, see {@link #saturated()}.
+     * <p>
+     * Not implemented by this class: an Executor bean would replace the task executor of Spring Boot.
+     */
+    public Executor executor() {
+        return this::execute;
+    }
+
+    private void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    public static ServiceUnavailableException saturated() {
+        return new ServiceUnavailableException("Too many logins and registrations at the moment, please retry");
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
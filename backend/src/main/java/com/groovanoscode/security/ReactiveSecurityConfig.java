@@ -0,0 +1,70 @@
+package com.groovanoscode.security;
+
+import com.groovanoscode.customer.Customer;
+import com.groovanoscode.customer.CustomerUserCache;
+import com.groovanoscode.customer.ReactiveCustomerUserDetailsService;
+import com.groovanoscode.jwt.JWTReactiveAuthenticationFilter;
+import com.groovanoscode.jwt.JWTUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.reactive.EndpointRequest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link SecurityFilterChainConfig} for the reactive profile, without the admin endpoints but with the admin check
+ * of the actuator.
+ */
+@Configuration
+@EnableWebFluxSecurity
+@Profile("reactive")
+public class ReactiveSecurityConfig {
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http , JWTUtil jwtUtil ,
+                                                         ReactiveCustomerUserDetailsService userDetailsService , CustomerUserCache userCache ,
+                                                         @Value("${jwt.stateless:false}") boolean stateless,
+                                                         @Value("#{'${admin.emails:}'.split(',')}") List<String> adminEmails) {
+        Set<String> admins = SecurityFilterChainConfig.normalizeEmails(adminEmails);
+        return http
+                .csrf().disable()
+                .cors(Customizer.withDefaults())
+                .httpBasic().disable()
+                .formLogin().disable()
+                // Stateless like the servlet stack: no session, the token authenticates every request
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .authorizeExchange(exchanges -> exchanges
+                        .pathMatchers(HttpMethod.POST, "/api/v1/customers", "/api/v1/auth/login")
+                        .permitAll()
+                        .pathMatchers(HttpMethod.GET, "/ping")
+                        .permitAll()
+                        // Like the servlet stack: the probes and Prometheus, the other endpoints are for the admins
+                        .matchers(EndpointRequest.to("health", "info", "prometheus"))
+                        .permitAll()
+                        .matchers(EndpointRequest.toAnyEndpoint())
+                        .access((authentication, context) -> authentication
+                                .map(user -> new AuthorizationDecision(admins.contains(Customer.normalizeEmail(user.getName()))))
+                                .defaultIfEmpty(new AuthorizationDecision(false)))
+                        .anyExchange()
+                        .authenticated())
+                .addFilterAt(new JWTReactiveAuthenticationFilter(jwtUtil, userDetailsService, userCache, stateless),
+                        SecurityWebFiltersOrder.AUTHENTICATION)
+                // Like DelegatedAuthEntryPoint: the exception handler writes the error
+                .exceptionHandling(exceptions -> exceptions
+                        .authenticationEntryPoint((exchange, e) -> Mono.error(e))
+                        .accessDeniedHandler((exchange, e) -> Mono.error(e)))
+                .build();
+    }
+}
@@ -1,33 +1,42 @@
 package com.groovanoscode.security;
 
+import com.groovanoscode.customer.CustomerUserDetailsService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
-import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 @Configuration
 public class SecurityConfig {
 
     @Bean
-    public PasswordEncoder passwordEncoder(){
-        return  new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${password-hashing.bcrypt-strength:10}") int strength , MeterRegistry meterRegistry){
+        return  new MeteredBCryptPasswordEncoder(strength, meterRegistry);
     }
 
     @Bean
+    @Profile("!reactive")
     public AuthenticationManager authenticationManager(AuthenticationConfiguration configuration) throws Exception {
         return configuration.getAuthenticationManager();
     }
 
     @Bean
-    public AuthenticationProvider authenticationProvider(UserDetailsService userDetailsService, PasswordEncoder passwordEncoder){
+    @Profile("!reactive")
+    public AuthenticationProvider authenticationProvider(CustomerUserDetailsService userDetailsService, PasswordEncoder passwordEncoder , UserCache userCache){
         DaoAuthenticationProvider daoAuthenticationProvider = new DaoAuthenticationProvider();
         daoAuthenticationProvider.setPasswordEncoder(passwordEncoder);
         daoAuthenticationProvider.setUserDetailsService(userDetailsService);
+        // A successful login rehashes the password when the cost factor changed
+        daoAuthenticationProvider.setUserDetailsPasswordService(userDetailsService);
+        // On a wrong password with a cached user the provider loads the user again before it fails
+        daoAuthenticationProvider.setUserCache(userCache);
         return daoAuthenticationProvider;
     }
 
@@ -1,10 +1,17 @@
 package com.groovanoscode.security;
 
+import com.groovanoscode.customer.Customer;
 import com.groovanoscode.jwt.JWTAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -13,7 +20,12 @@ import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 @Configuration
+@Profile("!reactive")
 @EnableWebSecurity
 public class SecurityFilterChainConfig {
 
@@ -21,11 +33,14 @@ public class SecurityFilterChainConfig {
     private final JWTAuthenticationFilter jwtAuthenticationFilter;
 
     private final AuthenticationEntryPoint authenticationEntryPoint;
+    private final Set<String> adminEmails;
 
-    public SecurityFilterChainConfig(AuthenticationProvider authenticationProvider , JWTAuthenticationFilter jwtAuthenticationFilter , AuthenticationEntryPoint authenticationEntryPoint) {
+    public SecurityFilterChainConfig(AuthenticationProvider authenticationProvider , JWTAuthenticationFilter jwtAuthenticationFilter , AuthenticationEntryPoint authenticationEntryPoint ,
+                                     @Value("#{'${admin.emails:}'.split(',')}") List<String> adminEmails) {
         this.authenticationProvider = authenticationProvider;
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
         this.authenticationEntryPoint = authenticationEntryPoint;
+        this.adminEmails = normalizeEmails(adminEmails);
     }
 
     @Bean
@@ -34,6 +49,12 @@ public class SecurityFilterChainConfig {
                 .csrf().disable()
                 .cors(Customizer.withDefaults())
                 .authorizeHttpRequests()
+                // The request was already authorized before it went async (e.g. the streaming customer export),
+                // the async dispatch and the error page only complete its response
+                .dispatcherTypeMatchers(DispatcherType.ASYNC)
+                .permitAll()
+                .requestMatchers("/error")
+                .permitAll()
                 .requestMatchers(
                         HttpMethod.POST,
                         "/api/v1/customers",
@@ -45,10 +66,14 @@ public class SecurityFilterChainConfig {
                         "/ping"
                 )
                 .permitAll()
-                .requestMatchers(HttpMethod.GET,
-                        "/actuator/**"
-                )
+                // The probes and Prometheus, the other endpoints (slowqueries has the SQL text) are for the admins
+                .requestMatchers(EndpointRequest.to("health", "info", "prometheus"))
                 .permitAll()
+                // There are no roles in the database yet, the admins are the customers listed in admin.emails
+                .requestMatchers(EndpointRequest.toAnyEndpoint())
+                .access((authentication, context) -> new AuthorizationDecision(isAdmin(authentication.get())))
+                .requestMatchers("/api/v1/admin/**")
+                .access((authentication, context) -> new AuthorizationDecision(isAdmin(authentication.get())))
                 .anyRequest()
                 .authenticated()
                 .and()
@@ -63,4 +88,16 @@ public class SecurityFilterChainConfig {
         return http.build();
     }
 
+    private boolean isAdmin(Authentication authentication) {
+        return adminEmails.contains(Customer.normalizeEmail(authentication.getName()));
+    }
+
+    // "a@x.com, B@x.com" is two admins: the entries are trimmed and compared like the emails of the customers
+    static Set<String> normalizeEmails(List<String> emails){
+        return emails.stream()
+                .map(Customer::normalizeEmail)
+                .filter(email -> email != null && !email.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
 }
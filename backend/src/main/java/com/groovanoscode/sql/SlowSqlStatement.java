@@ -0,0 +1,18 @@
+package com.groovanoscode.sql;
+
+import java.time.Instant;
+
+/**
+ * A statement that took longer than the slow statement threshold, as listed by /actuator/slowqueries.
+ *
+ * @param route the request it ran for (e.g. GET /api/v1/customers/{customerId}), null outside of a request
+ * @param thread the thread that ran it, e.g. the batch job
+ */
+public record SlowSqlStatement(Instant at,
+                               String route,
+                               String thread,
+                               String sql,
+                               String parameters,
+                               long rows,
+                               long millis) {
+}
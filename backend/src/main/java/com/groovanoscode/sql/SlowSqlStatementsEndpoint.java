@@ -0,0 +1,26 @@
+package com.groovanoscode.sql;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * The last slow SQL statements, newest first: /actuator/slowqueries.
+ */
+@Component
+@Endpoint(id = "slowqueries")
+public class SlowSqlStatementsEndpoint {
+
+    private final SqlStatementLog sqlStatementLog;
+
+    public SlowSqlStatementsEndpoint(SqlStatementLog sqlStatementLog) {
+        this.sqlStatementLog = sqlStatementLog;
+    }
+
+    @ReadOperation
+    public List<SlowSqlStatement> slowQueries() {
+        return sqlStatementLog.slowStatements();
+    }
+}
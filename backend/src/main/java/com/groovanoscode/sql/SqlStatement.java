@@ -0,0 +1,27 @@
+package com.groovanoscode.sql;
+
+import java.time.Duration;
+import java.util.regex.Pattern;
+
+/**
+ * A statement that ran: its SQL, the types of its bind parameters (e.g. [Int, String], or 50 x [...] for a batch),
+ * the rows it returned or changed (-1 when unknown) and how long the execution took.
+ * The time to read the rows of a query afterwards is not included.
+ */
+public record SqlStatement(String sql, String parameters, long rows, Duration duration) {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // IN (?, ?, ?) and multi-row VALUES have the same shape whatever their length
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+
+    /**
+     * The SQL on a single line, so two executions of the same statement compare equal.
+     */
+    static String shape(String sql) {
+        if(sql == null){
+            return "?";
+        }
+        String line = WHITESPACE.matcher(sql).replaceAll(" ").trim();
+        return PARAMETER_LIST.matcher(line).replaceAll("?...");
+    }
+}
@@ -0,0 +1,122 @@
+package com.groovanoscode.sql;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Counts the SQL statements run by the current thread, and how long they took, between {@link #start()}
+ * and {@link #close()}. The {@link StatementCountingDataSource} feeds it, threads without a counter are not counted.
+ * Work handed to another thread is counted too when it is wrapped with {@link #propagate(Supplier)}.
+ * <p>
+ * It also counts how often each statement ran, the same statement again and again in one request is an N+1.
+ */
+public final class SqlStatementCounter implements AutoCloseable {
+
+    private static final ThreadLocal<SqlStatementCounter> CURRENT = new ThreadLocal<>();
+
+    private static final int MAX_SHAPES = 1000;
+
+    private final SqlStatementCounter previous;
+    private final Supplier<String> route;
+    // Written by the thread the work was handed to, read by the request thread
+    private final AtomicInteger statements = new AtomicInteger();
+    private final AtomicLong nanos = new AtomicLong();
+    private final Map<String, AtomicInteger> executions = new ConcurrentHashMap<>();
+
+    private SqlStatementCounter(SqlStatementCounter previous, Supplier<String> route) {
+        this.previous = previous;
+        this.route = route;
+    }
+
+    public static SqlStatementCounter start() {
+        SqlStatementCounter previous = CURRENT.get();
+        return start(previous == null ? () -> null : previous.route);
+    }
+
+    /**
+     * @param route what the statements run for (e.g. GET /api/v1/customers), asked only when a statement is slow
+     */
+    public static SqlStatementCounter start(Supplier<String> route) {
+        SqlStatementCounter counter = new SqlStatementCounter(CURRENT.get(), route);
+        CURRENT.set(counter);
+        return counter;
+    }
+
+    static void record(String sql, long nanos) {
+        // A nested counter also counts for the outer ones
+        for (SqlStatementCounter counter = CURRENT.get(); counter != null; counter = counter.previous) {
+            counter.statements.incrementAndGet();
+            counter.nanos.addAndGet(nanos);
+            // Bounded, a request building its SQL on the fly should not fill the heap
+            AtomicInteger executions = counter.executions.get(sql);
+            if (executions == null && counter.executions.size() < MAX_SHAPES) {
+                executions = counter.executions.computeIfAbsent(sql, key -> new AtomicInteger());
+            }
+            if (executions != null) {
+                executions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * The route of the counter of the current thread, null outside of a request.
+     */
+    static String currentRoute() {
+        SqlStatementCounter counter = CURRENT.get();
+        return counter == null ? null : counter.route.get();
+    }
+
+    /**
+     * Counts the statements of the task for the counters of the calling thread, whichever thread runs it.
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> task) {
+        SqlStatementCounter counter = CURRENT.get();
+        if (counter == null) {
+            return task;
+        }
+        return () -> {
+            SqlStatementCounter previous = CURRENT.get();
+            CURRENT.set(counter);
+            try {
+                return task.get();
+            } finally {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        };
+    }
+
+    public int statements() {
+        return statements.get();
+    }
+
+    public Duration duration() {
+        return Duration.ofNanos(nanos.get());
+    }
+
+    /**
+     * The statements that ran at least {@code threshold} times, with how many times they ran.
+     */
+    public Map<String, Integer> repeatedStatements(int threshold) {
+        return executions.entrySet().stream()
+                .filter(entry -> entry.getValue().get() >= threshold)
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().get()));
+    }
+
+    @Override
+    public void close() {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
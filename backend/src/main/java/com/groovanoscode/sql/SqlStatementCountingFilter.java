@@ -0,0 +1,135 @@
+package com.groovanoscode.sql;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Counts the SQL statements of every HTTP request, the JWT authentication included, and records them
+ * as the metrics sql.statements.per.request and sql.time.per.request (tagged with method and uri).
+ * <p>
+ * Only the statements of the request thread, and of the work it propagates to other threads (login and
+ * registration, see {@link SqlStatementCounter#propagate}), are counted: the customer export streams on another thread.
+ * An async request is recorded when it completes.
+ * <p>
+ * A statement that runs at least sql.n-plus-one.threshold times in one request is logged as a possible N+1,
+ * and counted in sql.repeated.statements: one statement per row instead of one for all of them.
+ */
+@Component
+@Profile("!reactive")
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SqlStatementCountingFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlStatementCountingFilter.class);
+
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int nPlusOneThreshold;
+
+    public SqlStatementCountingFilter(MeterRegistry meterRegistry ,
+                                      ApplicationEventPublisher eventPublisher ,
+                                      @Value("${sql.n-plus-one.threshold:10}") int nPlusOneThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.eventPublisher = eventPublisher;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request , @NonNull HttpServletResponse response , @NonNull FilterChain filterChain) throws ServletException, IOException {
+        // The route is only known once the request is mapped, so it is asked for when a statement needs it
+        SqlStatementCounter counter = SqlStatementCounter.start(() -> request.getMethod() + " " + uri(request));
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            async = request.isAsyncStarted();
+        } finally {
+            counter.close();
+            if(async){
+                request.getAsyncContext().addListener(new RecordOnComplete(counter), request, response);
+            } else {
+                record(request, response, counter);
+            }
+        }
+    }
+
+    private class RecordOnComplete implements AsyncListener {
+
+        private final SqlStatementCounter counter;
+
+        RecordOnComplete(SqlStatementCounter counter) {
+            this.counter = counter;
+        }
+
+        // Also called after a timeout or an error
+        @Override
+        public void onComplete(AsyncEvent event) {
+            record((HttpServletRequest) event.getSuppliedRequest(), (HttpServletResponse) event.getSuppliedResponse(), counter);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    // The pattern and not the path, otherwise every customer id would be a new metric
+    private static String uri(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? "UNKNOWN" : pattern.toString();
+    }
+
+    private void record(HttpServletRequest request, HttpServletResponse response, SqlStatementCounter counter) {
+        String uri = uri(request);
+        String method = request.getMethod();
+
+        DistributionSummary.builder("sql.statements.per.request")
+                .baseUnit("statements")
+                .tags("method", method, "uri", uri)
+                .register(meterRegistry)
+                .record(counter.statements());
+        Timer.builder("sql.time.per.request")
+                .tags("method", method, "uri", uri)
+                .register(meterRegistry)
+                .record(counter.duration());
+
+        counter.repeatedStatements(nPlusOneThreshold).forEach((sql, executions) -> {
+            log.warn("Possible N+1: {} {} ran the same SQL statement {} times: {}", method, uri, executions, sql);
+            Counter.builder("sql.repeated.statements")
+                    .tags("method", method, "uri", uri)
+                    .register(meterRegistry)
+                    .increment();
+        });
+
+        log.debug("{} {} ran {} SQL statements in {} ms",
+                method, uri, counter.statements(), counter.duration().toMillis());
+        eventPublisher.publishEvent(new SqlStatementsEvent(
+                method, uri, response.getStatus(), counter.statements(), counter.duration()));
+    }
+}
@@ -0,0 +1,70 @@
+package com.groovanoscode.sql;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Gets every statement from the {@link StatementCountingDataSource}. Each one is logged at debug level,
+ * the slow ones as a warning with the route they ran for, and the last of them are kept for /actuator/slowqueries.
+ */
+@Component
+public class SqlStatementLog {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlStatementLog.class);
+
+    private final long thresholdNanos;
+    private final int capacity;
+    // Oldest first. Slow statements are rare, a lock is fine
+    private final Deque<SlowSqlStatement> slowStatements = new ArrayDeque<>();
+
+    public SqlStatementLog(@Value("${sql.slow-statements.threshold:200ms}") Duration threshold,
+                           @Value("${sql.slow-statements.capacity:100}") int capacity) {
+        this.thresholdNanos = threshold.toNanos();
+        this.capacity = capacity;
+    }
+
+    void record(SqlStatement statement) {
+        if (log.isDebugEnabled()) {
+            log.debug("{} ms, {} rows, {}: {}",
+                    statement.duration().toMillis(), statement.rows(), statement.parameters(), statement.sql());
+        }
+        if (statement.duration().toNanos() < thresholdNanos) {
+            return;
+        }
+
+        String route = SqlStatementCounter.currentRoute();
+        String thread = Thread.currentThread().getName();
+        log.warn("Slow SQL statement for {}: {} ms, {} rows, {}: {}",
+                route == null ? thread : route, statement.duration().toMillis(), statement.rows(),
+                statement.parameters(), statement.sql());
+
+        SlowSqlStatement slowStatement = new SlowSqlStatement(Instant.now(), route, thread,
+                statement.sql(), statement.parameters(), statement.rows(), statement.duration().toMillis());
+        synchronized (slowStatements) {
+            if (slowStatements.size() == capacity) {
+                slowStatements.removeFirst();
+            }
+            slowStatements.addLast(slowStatement);
+        }
+    }
+
+    /**
+     * The last slow statements, newest first.
+     */
+    public List<SlowSqlStatement> slowStatements() {
+        synchronized (slowStatements) {
+            List<SlowSqlStatement> newestFirst = new ArrayList<>(slowStatements.size());
+            slowStatements.descendingIterator().forEachRemaining(newestFirst::add);
+            return newestFirst;
+        }
+    }
+}
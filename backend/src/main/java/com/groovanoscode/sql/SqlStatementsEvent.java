@@ -0,0 +1,10 @@
+package com.groovanoscode.sql;
+
+import java.time.Duration;
+
+/**
+ * Published after every HTTP request with the statements it ran, {@code uri} is the mapping pattern
+ * (e.g. /api/v1/customers/{customerId}).
+ */
+public record SqlStatementsEvent(String method, String uri, int status, int statements, Duration duration) {
+}
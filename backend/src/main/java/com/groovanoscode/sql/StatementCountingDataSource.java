@@ -0,0 +1,228 @@
+package com.groovanoscode.sql;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Hands out connections whose statements report every execution to the {@link SqlStatementCounter} of the thread,
+ * and to the {@link SqlStatementLog} with its SQL, the types of its parameters and its row count.
+ * A JDBC batch is one round trip, so executeBatch counts once. COPY (see the CSV import) does not go through
+ * a statement and is not counted.
+ * <p>
+ * The rows of a query are counted as they are read, so the query reaches the log when its result set
+ * (or else its statement) is closed. Its duration is the execution alone, not the reading.
+ */
+public class StatementCountingDataSource extends DelegatingDataSource {
+
+    private final SqlStatementLog sqlStatementLog;
+
+    public StatementCountingDataSource(DataSource targetDataSource, SqlStatementLog sqlStatementLog) {
+        super(targetDataSource);
+        this.sqlStatementLog = sqlStatementLog;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return countingConnection(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return countingConnection(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection countingConnection(Connection connection) {
+        return proxy(Connection.class, connection, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            if (!(result instanceof Statement statement)) {
+                return result;
+            }
+            // prepareStatement and prepareCall get the SQL up front, createStatement with every execute
+            String sql = statement instanceof PreparedStatement && args != null && args[0] instanceof String s ? s : null;
+            return countingStatement(statement, sql);
+        });
+    }
+
+    private Statement countingStatement(Statement statement, String sql) {
+        Class<? extends Statement> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+        return proxy(type, statement, new CountingStatement(statement, sql));
+    }
+
+    /**
+     * Not thread safe, neither are JDBC statements.
+     */
+    private final class CountingStatement implements InvocationHandler {
+
+        private final Statement statement;
+        private final String sql;
+        // The type of every bind parameter by index, e.g. {1=Int, 2=String}
+        private final SortedMap<Integer, String> parameters = new TreeMap<>();
+        private int batchSize;
+        private Query query;
+
+        CountingStatement(Statement statement, String sql) {
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            // setInt(1, 42), setNull(2, Types.VARCHAR)... the setters of the statement itself (setFetchSize...) take one argument
+            if (name.startsWith("set") && args != null && args.length > 1 && args[0] instanceof Integer index) {
+                parameters.put(index, parameterType(name, args[1]));
+            }
+            switch (name) {
+                case "clearParameters" -> parameters.clear();
+                case "addBatch" -> batchSize++;
+                case "clearBatch" -> batchSize = 0;
+                case "close" -> finishQuery();
+                default -> {
+                }
+            }
+            return StatementCountingDataSource.invoke(statement, method, args);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            finishQuery();
+            String executed = sql != null ? sql : args != null && args[0] instanceof String s ? s : null;
+            String shape = SqlStatement.shape(executed);
+            String batch = method.getName().startsWith("executeBatch") || method.getName().startsWith("executeLargeBatch")
+                    ? batchSize + " x " : "";
+            String parameterTypes = batch + parameters.values();
+
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = StatementCountingDataSource.invoke(statement, method, args);
+            } catch (Throwable e) {
+                record(shape, parameterTypes, -1, System.nanoTime() - start);
+                throw e;
+            } finally {
+                batchSize = 0;
+            }
+            long nanos = System.nanoTime() - start;
+
+            if (result instanceof ResultSet resultSet) {
+                query = new Query(shape, parameterTypes, nanos);
+                return countingResultSet(resultSet, query);
+            }
+            record(shape, parameterTypes, rows(result), nanos);
+            return result;
+        }
+
+        private void finishQuery() {
+            if (query != null) {
+                record(query.shape, query.parameters, query.rows, query.nanos);
+                query = null;
+            }
+        }
+
+        private ResultSet countingResultSet(ResultSet resultSet, Query query) {
+            return proxy(ResultSet.class, resultSet, (proxy, method, args) -> {
+                Object result = StatementCountingDataSource.invoke(resultSet, method, args);
+                switch (method.getName()) {
+                    case "next" -> {
+                        if (Boolean.TRUE.equals(result)) {
+                            query.rows++;
+                        }
+                    }
+                    case "close" -> {
+                        if (this.query == query) {
+                            finishQuery();
+                        }
+                    }
+                    default -> {
+                    }
+                }
+                return result;
+            });
+        }
+    }
+
+    private static final class Query {
+
+        private final String shape;
+        private final String parameters;
+        private final long nanos;
+        private long rows;
+
+        Query(String shape, String parameters, long nanos) {
+            this.shape = shape;
+            this.parameters = parameters;
+            this.nanos = nanos;
+        }
+    }
+
+    private void record(String shape, String parameters, long rows, long nanos) {
+        SqlStatementCounter.record(shape, nanos);
+        sqlStatementLog.record(new SqlStatement(shape, parameters, rows, Duration.ofNanos(nanos)));
+    }
+
+    private static String parameterType(String setter, Object value) {
+        if (setter.equals("setNull") || value == null) {
+            return "null";
+        }
+        return setter.equals("setObject") ? value.getClass().getSimpleName() : setter.substring(3);
+    }
+
+    // executeUpdate and executeBatch return their update counts, execute only whether there is a result set
+    private static long rows(Object result) {
+        if (result instanceof Number count) {
+            return count.longValue();
+        }
+        long rows = 0;
+        if (result instanceof int[] counts) {
+            for (int count : counts) {
+                rows += Math.max(count, 0);
+            }
+        } else if (result instanceof long[] counts) {
+            for (long count : counts) {
+                rows += Math.max(count, 0);
+            }
+        } else {
+            rows = -1;
+        }
+        return rows;
+    }
+
+    // Hibernate keeps its statements in hash maps, so the proxies compare by identity and not through the target
+    private static <T> T proxy(Class<? extends T> type, T target, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(
+                StatementCountingDataSource.class.getClassLoader(),
+                new Class<?>[]{type},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "Counting " + target;
+                    default -> handler.invoke(proxy, method, args);
+                }));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
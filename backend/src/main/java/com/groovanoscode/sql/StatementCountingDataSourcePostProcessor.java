@@ -0,0 +1,30 @@
+package com.groovanoscode.sql;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the data source in a {@link StatementCountingDataSource}, so JdbcTemplate, JPA and Flyway all go through it.
+ * The pool stays reachable with unwrap (the Hikari metrics and the batch throttle need it).
+ */
+@Component
+public class StatementCountingDataSourcePostProcessor implements BeanPostProcessor {
+
+    // Lazily, a post processor that injects beans right away keeps them from being post processed themselves
+    private final ObjectProvider<SqlStatementLog> sqlStatementLog;
+
+    public StatementCountingDataSourcePostProcessor(ObjectProvider<SqlStatementLog> sqlStatementLog) {
+        this.sqlStatementLog = sqlStatementLog;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof StatementCountingDataSource)) {
+            return new StatementCountingDataSource(dataSource, sqlStatementLog.getObject());
+        }
+        return bean;
+    }
+}
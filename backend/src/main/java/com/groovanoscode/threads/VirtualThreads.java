@@ -0,0 +1,33 @@
+package com.groovanoscode.threads;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * We still build for Java 17, so the virtual thread API is looked up when the virtual-threads profile
+ * is active instead of being compiled against.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    static boolean isSupported() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    /**
+     * {@code Executors.newVirtualThreadPerTaskExecutor()}: every task gets a new virtual thread.
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (!isSupported()) {
+            throw new IllegalStateException(
+                    "The virtual-threads profile needs Java 21 or later, this is Java " + Runtime.version());
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create the virtual thread executor", e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.groovanoscode.threads;
+
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * With the virtual-threads profile every request, and every async request (the customer export, @Async),
+ * runs on its own virtual thread. A request blocked on JDBC then costs a few hundred bytes instead of a
+ * platform thread, and the Hikari pool, not the 200 Tomcat threads, is what limits the concurrency.
+ * <p>
+ * The password hashing keeps its platform threads: it is CPU bound and virtual threads would not make it faster.
+ */
+@Configuration
+@Profile("virtual-threads")
+public class VirtualThreadsConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService virtualThreadExecutor() {
+        return VirtualThreads.newVirtualThreadPerTaskExecutor();
+    }
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadTomcatCustomizer(ExecutorService virtualThreadExecutor) {
+        // Replaces the worker pool, so server.tomcat.threads.max no longer applies
+        return factory -> factory.addProtocolHandlerCustomizers(
+                protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor));
+    }
+
+    // Under this name it replaces the pool of Spring Boot for @Async and for the async requests of Spring MVC
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor(ExecutorService virtualThreadExecutor) {
+        return new TaskExecutorAdapter(virtualThreadExecutor);
+    }
+}
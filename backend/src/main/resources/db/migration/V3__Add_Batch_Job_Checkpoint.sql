@@ -0,0 +1,9 @@
+CREATE TABLE batch_job_checkpoint(
+     job_name TEXT PRIMARY KEY,
+     last_id BIGINT NOT NULL,
+     processed BIGINT NOT NULL,
+     updated BIGINT NOT NULL,
+     started_at TIMESTAMPTZ NOT NULL,
+     updated_at TIMESTAMPTZ NOT NULL,
+     finished_at TIMESTAMPTZ
+);
@@ -0,0 +1,6 @@
+-- Emails are case insensitive: they are stored in lower case and the index makes them unique whatever their case.
+-- It also serves every lookup by email (login, registration), which used to scan the whole table.
+-- Customers whose emails only differ by case have to be merged by hand, otherwise the index cannot be created.
+UPDATE customer SET email = lower(email) WHERE email <> lower(email);
+
+CREATE UNIQUE INDEX customer_email_unique ON customer (lower(email));
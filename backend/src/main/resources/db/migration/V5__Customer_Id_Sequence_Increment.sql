@@ -0,0 +1,4 @@
+-- Hibernate takes the ids of the JPA inserts 50 at a time: one nextval gives it the 50 ids up to the returned value
+-- (pooled optimizer, allocationSize = 50 on Customer). It checks on startup that the increment matches.
+-- The inserts through the column default (jdbc DAO, CSV import, R2DBC) take one id each and skip the other 49.
+ALTER SEQUENCE customer_id_seq INCREMENT BY 50;
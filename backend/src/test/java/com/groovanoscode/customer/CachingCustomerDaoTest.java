@@ -0,0 +1,195 @@
+package com.groovanoscode.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MockitoExtension.class)
+class CachingCustomerDaoTest {
+
+    private CachingCustomerDao underTest;
+
+    @Mock
+    private CustomerDao customerDao;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final Customer alex = new Customer(1, "Alex", "alex@gmail.com", "password" , 21, Gender.MALE, 0L);
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CachingCustomerDao(customerDao, new CustomerCache(meterRegistry, 100, Duration.ofMinutes(5)));
+    }
+
+    @Test
+    void selectCustomerByIdReadsTheDatabaseOnce() {
+        // Given
+        Mockito.when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(alex));
+
+        // When
+        underTest.selectCustomerById(1);
+        Optional<Customer> actual = underTest.selectCustomerById(1);
+
+        // Then
+        assertThat(actual).contains(alex);
+        Mockito.verify(customerDao, Mockito.times(1)).selectCustomerById(1);
+        assertThat(meterRegistry.get("cache.gets").tags("cache", "customers.by.id", "result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void selectCustomerByIdDoesNotCacheUnknownIds() {
+        // Given
+        Mockito.when(customerDao.selectCustomerById(1)).thenReturn(Optional.empty(), Optional.of(alex));
+
+        // When
+        Optional<Customer> unknown = underTest.selectCustomerById(1);
+        Optional<Customer> actual = underTest.selectCustomerById(1);
+
+        // Then
+        assertThat(unknown).isEmpty();
+        assertThat(actual).contains(alex);
+    }
+
+    @Test
+    void selectCustomerDTOByIdSharesTheCachedCustomer() {
+        // Given
+        Mockito.when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(alex));
+
+        // When
+        underTest.selectCustomerById(1);
+        Optional<CustomerDTO> actual = underTest.selectCustomerDTOById(1);
+
+        // Then
+        assertThat(actual).contains(new CustomerDTOMapper().apply(alex));
+        Mockito.verify(customerDao, Mockito.times(1)).selectCustomerById(1);
+        Mockito.verify(customerDao, Mockito.never()).selectCustomerDTOById(1);
+    }
+
+    @Test
+    void selectVersionedCustomerByIdServesACachedCustomer() {
+        // Given
+        Mockito.when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(alex));
+
+        // When
+        underTest.selectCustomerById(1);
+        Optional<VersionedCustomer> actual = underTest.selectVersionedCustomerById(1);
+
+        // Then
+        assertThat(actual).contains(new VersionedCustomer(new CustomerDTOMapper().apply(alex), 0L));
+        Mockito.verify(customerDao, Mockito.never()).selectVersionedCustomerById(1);
+    }
+
+    @Test
+    void selectVersionedCustomerByIdReadsTheProjectionOnAMiss() {
+        // Given
+        var expected = new VersionedCustomer(1, "Alex", "alex@gmail.com", Gender.MALE, 21, 0L);
+        Mockito.when(customerDao.selectVersionedCustomerById(1)).thenReturn(Optional.of(expected));
+
+        // When
+        Optional<VersionedCustomer> actual = underTest.selectVersionedCustomerById(1);
+
+        // Then: the whole customer, with its password hash, is not loaded
+        assertThat(actual).contains(expected);
+        Mockito.verify(customerDao, Mockito.never()).selectCustomerById(1);
+    }
+
+    @Test
+    void selectUserByEmailIsCachedWhateverTheCase() {
+        // Given
+        Mockito.when(customerDao.selectUserByEmail("alex@gmail.com")).thenReturn(Optional.of(alex));
+        Mockito.when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(alex));
+
+        // When
+        underTest.selectUserByEmail("alex@gmail.com");
+        Optional<Customer> byEmail = underTest.selectUserByEmail("Alex@Gmail.com");
+        Optional<Customer> byId = underTest.selectCustomerById(1);
+
+        // Then
+        assertThat(byEmail).contains(alex);
+        assertThat(byId).contains(alex);
+        Mockito.verify(customerDao, Mockito.times(1)).selectUserByEmail("alex@gmail.com");
+        Mockito.verify(customerDao, Mockito.times(1)).selectCustomerById(1);
+    }
+
+    @Test
+    void selectUserByEmailDoesNotCacheARowUpdatedDuringTheLookup() {
+        // Given
+        Customer updated = new Customer(1, "Alex", "alex@gmail.com", "password" , 22, Gender.MALE, 1L);
+        Customer update = new Customer(1, null, null, null, 22, null);
+        Mockito.when(customerDao.updateCustomer(update, null)).thenReturn(Optional.of(updated));
+        // The update commits and evicts between the read by email and the caching of its result
+        Mockito.when(customerDao.selectUserByEmail("alex@gmail.com")).thenAnswer(invocation -> {
+            underTest.updateCustomer(update, null);
+            return Optional.of(alex);
+        });
+        Mockito.when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(updated));
+
+        // When
+        Optional<Customer> byEmail = underTest.selectUserByEmail("alex@gmail.com");
+        Optional<Customer> byId = underTest.selectCustomerById(1);
+
+        // Then
+        assertThat(byEmail).contains(updated);
+        assertThat(byId).contains(updated);
+    }
+
+    @Test
+    void updateCustomerEvictsTheCustomer() {
+        // Given
+        Customer updated = new Customer(1, "Alex", "alex@gmail.com", "password" , 22, Gender.MALE, 1L);
+        Mockito.when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(alex), Optional.of(updated));
+        Customer update = new Customer(1, null, null, null, 22, null);
+        Mockito.when(customerDao.updateCustomer(update, null)).thenReturn(Optional.of(updated));
+        underTest.selectCustomerById(1);
+
+        // When
+        underTest.updateCustomer(update, null);
+        Optional<Customer> actual = underTest.selectCustomerById(1);
+
+        // Then
+        assertThat(actual).hasValueSatisfying(c -> assertThat(c.getAge()).isEqualTo(22));
+    }
+
+    @Test
+    void selectUserByEmailDoesNotReturnACustomerWhoChangedItsEmail() {
+        // Given
+        Customer renamed = new Customer(1, "Alex", "alex@web.de", "password" , 21, Gender.MALE, 1L);
+        Mockito.when(customerDao.selectUserByEmail("alex@gmail.com")).thenReturn(Optional.of(alex), Optional.empty());
+        Mockito.when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(renamed));
+        Customer update = new Customer(1, null, "alex@web.de", null, null, null);
+        Mockito.when(customerDao.updateCustomer(update, null)).thenReturn(Optional.of(renamed));
+        underTest.selectUserByEmail("alex@gmail.com");
+
+        // When
+        underTest.updateCustomer(update, null);
+        Optional<Customer> actual = underTest.selectUserByEmail("alex@gmail.com");
+
+        // Then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void deleteCustomerByIdEvictsTheCustomer() {
+        // Given
+        Mockito.when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(alex), Optional.empty());
+        Mockito.when(customerDao.deleteCustomerById(1)).thenReturn(true);
+        underTest.selectCustomerById(1);
+
+        // When
+        underTest.deleteCustomerById(1);
+        Optional<Customer> actual = underTest.selectCustomerById(1);
+
+        // Then
+        assertThat(actual).isEmpty();
+    }
+}
@@ -0,0 +1,33 @@
+package com.groovanoscode.customer;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+class CustomerDTORowMapperTest {
+
+    @Test
+    void mapRow() throws SQLException {
+        // Given: the columns of SELECT id, name, email, gender, age
+        ResultSet resultSet = Mockito.mock(ResultSet.class);
+
+        Mockito.when(resultSet.getInt(1)).thenReturn(1);
+        Mockito.when(resultSet.getString(2)).thenReturn("Jamila");
+        Mockito.when(resultSet.getString(3)).thenReturn("jamila@gmail.com");
+        Mockito.when(resultSet.getString(4)).thenReturn("FEMALE");
+        Mockito.when(resultSet.getInt(5)).thenReturn(19);
+
+        // When
+        CustomerDTO actual = CustomerDTORowMapper.INSTANCE.mapRow(resultSet, 1);
+
+        // Then
+        CustomerDTO expected = new CustomerDTOMapper().apply(
+                new Customer(1, "Jamila", "jamila@gmail.com", "password" , 19, Gender.FEMALE));
+
+        Assertions.assertThat(actual).isEqualTo(expected);
+        Mockito.verify(resultSet, Mockito.never()).getString("password");
+    }
+}
@@ -0,0 +1,144 @@
+package com.groovanoscode.customer;
+
+import com.groovanoscode.AbstractTestcontainers;
+import com.groovanoscode.batch.BatchJobCheckpoint;
+import com.groovanoscode.batch.BatchJobCheckpointDao;
+import com.groovanoscode.batch.BatchThrottle;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerGenderJobTest extends AbstractTestcontainers {
+
+    private CustomerGenderJob underTest;
+    private CustomerJDBCDataAccessService customerDao;
+    private BatchJobCheckpointDao checkpointDao;
+    private CachingCustomerDao cachingCustomerDao;
+    private CustomerCache customerCache;
+
+    @BeforeEach
+    void setUp() {
+        JdbcTemplate jdbcTemplate = getJdbcTemplate();
+        customerDao = new CustomerJDBCDataAccessService(jdbcTemplate, new CustomerRowMapper());
+        checkpointDao = new BatchJobCheckpointDao(jdbcTemplate);
+        customerCache = new CustomerCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(5));
+        cachingCustomerDao = new CachingCustomerDao(customerDao, customerCache);
+        underTest = newJob(new SyncTaskExecutor());
+    }
+
+    @SuppressWarnings("unchecked")
+    private CustomerGenderJob newJob(TaskExecutor taskExecutor) {
+        JdbcTemplate jdbcTemplate = getJdbcTemplate();
+        return new CustomerGenderJob(
+                jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource())),
+                checkpointDao,
+                new BatchThrottle(jdbcTemplate.getDataSource(), Duration.ZERO, Duration.ZERO),
+                taskExecutor,
+                customerCache,
+                // No second-level cache
+                Mockito.mock(ObjectProvider.class),
+                // Small chunks, so the test goes through several of them
+                2
+        );
+    }
+
+    @Test
+    void runUpdatesTheGenderFromTheAge() {
+        // Given
+        Customer even = insertCustomer(20, Gender.MALE);
+        Customer odd = insertCustomer(21, Gender.FEMALE);
+        Customer alreadyRight = insertCustomer(22, Gender.FEMALE);
+
+        // When
+        BatchJobCheckpoint actual = underTest.run();
+
+        // Then
+        assertThat(actual.finished()).isTrue();
+        assertThat(actual.lastId()).isGreaterThanOrEqualTo(alreadyRight.getId());
+        assertThat(actual.updated()).isGreaterThanOrEqualTo(2);
+
+        assertThat(customerDao.selectCustomerById(even.getId())).hasValueSatisfying(c -> {
+            assertThat(c.getGender()).isEqualTo(Gender.FEMALE);
+            assertThat(c.getVersion()).isEqualTo(even.getVersion() + 1);
+        });
+        assertThat(customerDao.selectCustomerById(odd.getId())).hasValueSatisfying(c ->
+                assertThat(c.getGender()).isEqualTo(Gender.MALE));
+        // Nothing to change, so no new version
+        assertThat(customerDao.selectCustomerById(alreadyRight.getId())).hasValueSatisfying(c -> {
+            assertThat(c.getGender()).isEqualTo(Gender.FEMALE);
+            assertThat(c.getVersion()).isEqualTo(alreadyRight.getVersion());
+        });
+    }
+
+    @Test
+    void runResumesAnUnfinishedJobAfterItsCheckpoint() {
+        // Given
+        Customer before = insertCustomer(30, Gender.MALE);
+        Customer after = insertCustomer(31, Gender.FEMALE);
+
+        // A previous run stopped right after the first customer
+        checkpointDao.start(CustomerGenderJob.JOB_NAME);
+        checkpointDao.advance(CustomerGenderJob.JOB_NAME, before.getId(), 1, 0);
+
+        // When
+        BatchJobCheckpoint actual = underTest.run();
+
+        // Then
+        assertThat(actual.finished()).isTrue();
+        assertThat(customerDao.selectCustomerById(before.getId())).hasValueSatisfying(c ->
+                assertThat(c.getGender()).isEqualTo(Gender.MALE));
+        assertThat(customerDao.selectCustomerById(after.getId())).hasValueSatisfying(c ->
+                assertThat(c.getGender()).isEqualTo(Gender.MALE));
+    }
+
+    @Test
+    void runClearsTheCustomerCache() {
+        // Given
+        Customer even = insertCustomer(40, Gender.MALE);
+        assertThat(cachingCustomerDao.selectCustomerById(even.getId())).hasValueSatisfying(c ->
+                assertThat(c.getGender()).isEqualTo(Gender.MALE));
+
+        // When
+        underTest.run();
+
+        // Then
+        assertThat(cachingCustomerDao.selectCustomerById(even.getId())).hasValueSatisfying(c ->
+                assertThat(c.getGender()).isEqualTo(Gender.FEMALE));
+    }
+
+    @Test
+    void startCanBeRetriedAfterTheExecutorRejectedTheJob() {
+        // Given
+        CustomerGenderJob job = newJob(task -> {
+            throw new TaskRejectedException("saturated");
+        });
+        assertThatThrownBy(job::start).isInstanceOf(TaskRejectedException.class);
+
+        // When
+        BatchJobCheckpoint actual = job.run();
+
+        // Then
+        assertThat(actual.finished()).isTrue();
+    }
+
+    private Customer insertCustomer(int age, Gender gender) {
+        String email = UUID.randomUUID() + "@groovanoscode.com";
+        customerDao.insertCustomer(new Customer("Someone", email, "password", age, gender));
+        return customerDao.selectUserByEmail(email).orElseThrow();
+    }
+}
@@ -0,0 +1,107 @@
+package com.groovanoscode.customer;
+
+import com.groovanoscode.AbstractTestcontainers;
+import com.groovanoscode.exception.RequestValidationException;
+import com.groovanoscode.security.ParallelPasswordEncoder;
+import com.groovanoscode.security.PasswordHashingExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.StringReader;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerImportServiceTest extends AbstractTestcontainers {
+
+    // The lowest BCrypt strength, the test is about the import and not about the hashing
+    private final BCryptPasswordEncoder passwordEncoder = Mockito.spy(new BCryptPasswordEncoder(4));
+    private final PasswordHashingExecutor passwordHashingExecutor = new PasswordHashingExecutor(new SimpleMeterRegistry(), 2, 10);
+    private final ParallelPasswordEncoder parallelPasswordEncoder = new ParallelPasswordEncoder(passwordEncoder, passwordHashingExecutor);
+
+    private CustomerImportService underTest;
+    private CustomerJDBCDataAccessService customerDao;
+
+    @BeforeEach
+    void setUp() {
+        JdbcTemplate jdbcTemplate = getJdbcTemplate();
+        customerDao = new CustomerJDBCDataAccessService(jdbcTemplate, new CustomerRowMapper());
+        underTest = new CustomerImportService(
+                jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource())),
+                customerDao,
+                parallelPasswordEncoder
+        );
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwordHashingExecutor.destroy();
+    }
+
+    @Test
+    void importCustomers() throws Exception {
+        // Given
+        String existingEmail = "existing_" + UUID.randomUUID() + "@groovanoscode.com";
+        customerDao.insertCustomer(new Customer("Existing", existingEmail, "password" , 30, Gender.MALE));
+
+        String alexEmail = "alex_" + UUID.randomUUID() + "@groovanoscode.com";
+        String jamilaEmail = "jamila_" + UUID.randomUUID() + "@groovanoscode.com";
+        String csv = """
+                name,email,password,age,gender
+                Alex,%1$s,secret,21,MALE
+                "Jamila, Junior",%2$s,"pass""word",19,female
+                Someone,%3$s,password,40,MALE
+                Alex again,%1$s,password,22,MALE
+                Too old,old@groovanoscode.com,password,not a number,MALE
+                No gender,nogender@groovanoscode.com,password,20,
+                """.formatted(alexEmail, jamilaEmail, existingEmail);
+
+        // When
+        CustomerImportResult actual = underTest.importCustomers(new StringReader(csv));
+
+        // Then
+        assertThat(actual).isEqualTo(new CustomerImportResult(6, 2, 2, 2));
+
+        assertThat(customerDao.selectUserByEmail(alexEmail)).hasValueSatisfying(c -> {
+            // The first row of a repeated email wins
+            assertThat(c.getName()).isEqualTo("Alex");
+            assertThat(c.getAge()).isEqualTo(21);
+            assertThat(passwordEncoder.matches("secret", c.getPassword())).isTrue();
+        });
+        assertThat(customerDao.selectUserByEmail(jamilaEmail)).hasValueSatisfying(c -> {
+            assertThat(c.getName()).isEqualTo("Jamila, Junior");
+            assertThat(c.getGender()).isEqualTo(Gender.FEMALE);
+            assertThat(passwordEncoder.matches("pass\"word", c.getPassword())).isTrue();
+        });
+        assertThat(customerDao.selectUserByEmail(existingEmail))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Existing"));
+        // Neither the existing email nor the repeated one are hashed
+        Mockito.verify(passwordEncoder, Mockito.times(2)).encode(Mockito.any());
+    }
+
+    @Test
+    void willThrowWhenHeaderIsMissing() {
+        // Given
+        String csv = "Alex,alex@groovanoscode.com,password,21,MALE\n";
+
+        // When
+        assertThatThrownBy(() -> underTest.importCustomers(new StringReader(csv)))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("the first line must be the header %s".formatted(CustomerImportService.CSV_HEADER));
+    }
+
+    @Test
+    void parseCsvLine() {
+        assertThat(CustomerImportService.parseCsvLine("a,\"b, c\",\"d \"\"e\"\"\",,f"))
+                .containsExactly("a", "b, c", "d \"e\"", "", "f");
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -40,6 +41,116 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
 
     }
 
+    @Test
+    void selectCustomersAfterId() {
+        // Given: three customers, inserted one after the other so their ids are increasing
+        List<String> emails = List.of(
+                FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID(),
+                FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID(),
+                FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID()
+        );
+        emails.forEach(email -> underTest.insertCustomer(
+                new Customer(FAKER.name().fullName(), email, "password" , 20, Gender.MALE)));
+
+        int firstId = underTest.selectUserByEmail(emails.get(0)).map(Customer::getId).orElseThrow();
+
+        // When
+        List<Customer> actual = underTest.selectCustomersAfterId(firstId, 2);
+
+        // Then
+        assertThat(actual).extracting(Customer::getEmail).containsExactly(emails.get(1), emails.get(2));
+    }
+
+    @Test
+    void selectVersionedCustomersAfterId() {
+        // Given
+        List<String> emails = List.of(
+                FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID(),
+                FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID(),
+                FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID()
+        );
+        emails.forEach(email -> underTest.insertCustomer(
+                new Customer(FAKER.name().fullName(), email, "password" , 20, Gender.MALE)));
+
+        int firstId = underTest.selectUserByEmail(emails.get(0)).map(Customer::getId).orElseThrow();
+
+        // When
+        List<VersionedCustomer> actual = underTest.selectVersionedCustomersAfterId(firstId, 2);
+
+        // Then
+        assertThat(actual).extracting(VersionedCustomer::customer)
+                .extracting(CustomerDTO::email).containsExactly(emails.get(1), emails.get(2));
+        assertThat(actual).extracting(VersionedCustomer::customer)
+                .extracting(CustomerDTO::username).containsExactly(emails.get(1), emails.get(2));
+        assertThat(actual).extracting(VersionedCustomer::version).containsExactly(0L, 0L);
+    }
+
+    @Test
+    void selectVersionedCustomersAfterIdUnlessDigestReadsTheCustomersOfAChangedPageOnly() {
+        // Given
+        List<String> emails = List.of(
+                FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID(),
+                FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID(),
+                FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID()
+        );
+        emails.forEach(email -> underTest.insertCustomer(
+                new Customer(FAKER.name().fullName(), email, "password" , 20, Gender.MALE)));
+
+        int firstId = underTest.selectUserByEmail(emails.get(0)).map(Customer::getId).orElseThrow();
+        int secondId = underTest.selectUserByEmail(emails.get(1)).map(Customer::getId).orElseThrow();
+
+        // When
+        VersionedCustomerPage first = underTest.selectVersionedCustomersAfterIdUnlessDigest(firstId, 2, List.of());
+        VersionedCustomerPage unchanged = underTest.selectVersionedCustomersAfterIdUnlessDigest(firstId, 2, List.of("other", first.digest()));
+        underTest.updateCustomer(new Customer(secondId, null, null, null, 30, null), null);
+        VersionedCustomerPage changed = underTest.selectVersionedCustomersAfterIdUnlessDigest(firstId, 2, List.of(first.digest()));
+
+        // Then: SQL and Java agree, and the update changed the digest
+        assertThat(first.customers()).hasSize(2).first().satisfies(c -> assertThat(c.customer().id()).isEqualTo(secondId));
+        assertThat(first.digest()).isEqualTo(CustomerPage.digest(first.customers()));
+        assertThat(unchanged.unchanged()).isTrue();
+        assertThat(unchanged.digest()).isEqualTo(first.digest());
+        assertThat(changed.customers()).isEqualTo(underTest.selectVersionedCustomersAfterId(firstId, 2));
+        assertThat(changed.digest()).isNotEqualTo(first.digest()).isEqualTo(CustomerPage.digest(changed.customers()));
+
+        VersionedCustomerPage empty = underTest.selectVersionedCustomersAfterIdUnlessDigest(Integer.MAX_VALUE, 2, List.of(first.digest()));
+        assertThat(empty.customers()).isEmpty();
+        assertThat(empty.digest()).isEqualTo(CustomerPage.digest(List.of()));
+    }
+
+    @Test
+    void selectCustomerDTOById() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID();
+        Customer customer = new Customer(FAKER.name().fullName(), email, "password" , 20, Gender.FEMALE);
+        int id = underTest.insertCustomer(customer).orElseThrow();
+
+        // When
+        Optional<CustomerDTO> actual = underTest.selectCustomerDTOById(id);
+
+        // Then: the same as the mapped customer
+        assertThat(actual).isEqualTo(underTest.selectCustomerById(id).map(new CustomerDTOMapper()));
+        assertThat(underTest.selectCustomerDTOById(-1)).isEmpty();
+    }
+
+    @Test
+    void selectVersionedCustomerById() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID();
+        Customer customer = new Customer(FAKER.name().fullName(), email, "password" , 20, Gender.FEMALE);
+        int id = underTest.insertCustomer(customer).orElseThrow();
+        underTest.updateCustomer(new Customer(id, null, null, null, 21, null), null);
+
+        // When
+        Optional<VersionedCustomer> actual = underTest.selectVersionedCustomerById(id);
+
+        // Then
+        Customer expected = underTest.selectCustomerById(id).orElseThrow();
+        assertThat(actual).contains(new VersionedCustomer(new CustomerDTOMapper().apply(expected), expected.getVersion()));
+        assertThat(actual.get().version()).isEqualTo(1L);
+        assertThat(underTest.selectVersionedCustomerById(-1)).isEmpty();
+    }
+
     @Test
     void selectCustomerById() {
         // Given
@@ -120,6 +231,20 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         });
     }
 
+    @Test
+    void insertCustomerTakesOneIdOfTheSequence() {
+        // Given
+        Customer first = new Customer(FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID(), "password" , 20, Gender.FEMALE);
+        Customer second = new Customer(FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID(), "password" , 20, Gender.MALE);
+
+        // When
+        int firstId = underTest.insertCustomer(first).orElseThrow();
+        int secondId = underTest.insertCustomer(second).orElseThrow();
+
+        // Then: the sequence increments by 1, only the JPA inserts take their ids in blocks (see CustomerIdGenerator)
+        assertThat(secondId).isEqualTo(firstId + 1);
+    }
+
     @Test
     void existsPersonWithEmail() {
         // Given
@@ -171,11 +296,36 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
                 .orElseThrow();
 
         // When
-        underTest.deleteCustomerById(id);
+        boolean deleted = underTest.deleteCustomerById(id);
 
         // Then
         Optional<Customer> actual = underTest.selectCustomerById(id);
         assertThat(actual).isNotPresent();
+        assertThat(deleted).isTrue();
+        // A second delete finds nothing to delete
+        assertThat(underTest.deleteCustomerById(id)).isFalse();
+    }
+
+    @Test
+    void updateCustomerPassword() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                "password" , 20,
+                Gender.FEMALE);
+
+        int id = underTest.insertCustomer(customer).orElseThrow();
+
+        // When
+        boolean updated = underTest.updateCustomerPassword(id, "rehashed");
+
+        // Then
+        assertThat(updated).isTrue();
+        assertThat(underTest.selectCustomerById(id)).hasValueSatisfying(c ->
+                assertThat(c.getPassword()).isEqualTo("rehashed"));
+        assertThat(underTest.updateCustomerPassword(-1, "rehashed")).isFalse();
     }
 
     @Test
@@ -215,6 +365,78 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         assertThat(actual).isFalse();
     }
 
+    @Test
+    void insertCustomerReturnsEmptyWhenTheEmailIsTakenWhateverItsCase() {
+        // Given
+        String email = "alex_" + UUID.randomUUID() + "@gmail.com";
+        Optional<Integer> id = underTest.insertCustomer(new Customer("Alex", email, "password" , 20, Gender.MALE));
+
+        // When
+        Optional<Integer> actual = underTest.insertCustomer(
+                new Customer("Other Alex", email.toUpperCase(), "password" , 30, Gender.MALE));
+
+        // Then
+        assertThat(id).isPresent();
+        assertThat(actual).isEmpty();
+        assertThat(underTest.selectUserByEmail(email.toUpperCase()))
+                .hasValueSatisfying(c -> assertThat(c.getId()).isEqualTo(id.get()));
+    }
+
+    @Test
+    void insertCustomers() {
+        // Given
+        List<Customer> customers = List.of(
+                new Customer(FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID(), "password" , 20, Gender.MALE),
+                new Customer(FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID(), "password" , 30, Gender.FEMALE));
+
+        // When
+        Set<String> actual = underTest.insertCustomers(customers);
+
+        // Then
+        assertThat(actual).containsExactlyInAnyOrder(customers.get(0).getEmail(), customers.get(1).getEmail());
+        customers.forEach(customer -> assertThat(underTest.selectUserByEmail(customer.getEmail()))
+                .hasValueSatisfying(c -> {
+                    assertThat(c.getName()).isEqualTo(customer.getName());
+                    assertThat(c.getAge()).isEqualTo(customer.getAge());
+                    assertThat(c.getGender()).isEqualTo(customer.getGender());
+                }));
+    }
+
+    @Test
+    void insertCustomersSkipsAnEmailTakenBetweenTheCheckAndTheInsert() {
+        // Given: the batch registration found both emails free
+        String taken = FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID();
+        String free = FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID();
+        assertThat(underTest.selectExistingEmails(List.of(taken, free))).isEmpty();
+        // and a sign-up takes one of them before the insert
+        int signUpId = underTest.insertCustomer(new Customer("Sign-up", taken, "password" , 40, Gender.FEMALE)).orElseThrow();
+
+        // When
+        Set<String> actual = underTest.insertCustomers(List.of(
+                new Customer("Batch", taken.toUpperCase(), "password" , 20, Gender.MALE),
+                new Customer("Batch", free, "password" , 30, Gender.MALE)));
+
+        // Then: no exception, the free email is inserted and the sign-up is left alone
+        assertThat(actual).containsExactly(free);
+        assertThat(underTest.selectUserByEmail(free)).isPresent();
+        assertThat(underTest.selectUserByEmail(taken))
+                .hasValueSatisfying(c -> assertThat(c.getId()).isEqualTo(signUpId));
+    }
+
+    @Test
+    void selectExistingEmails() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID();
+        String unknownEmail = FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, "password" , 20, Gender.MALE));
+
+        // When
+        Set<String> actual = underTest.selectExistingEmails(List.of(email, unknownEmail));
+
+        // Then
+        assertThat(actual).containsExactly(email);
+    }
+
     @Test
     void updateCustomerName() {
         // Given
@@ -239,7 +461,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         update.setId(id);
         update.setName(newName);
 
-        underTest.updateCustomer(update);
+        underTest.updateCustomer(update, null);
 
         // Then
         Optional<Customer> actual = underTest.selectCustomerById(id);
@@ -276,7 +498,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         update.setId(id);
         update.setEmail(newEmail);
 
-        underTest.updateCustomer(update);
+        underTest.updateCustomer(update, null);
 
         // Then
         Optional<Customer> actual = underTest.selectCustomerById(id);
@@ -313,7 +535,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         update.setId(id);
         update.setAge(newAge);
 
-        underTest.updateCustomer(update);
+        underTest.updateCustomer(update, null);
 
         // Then
         Optional<Customer> actual = underTest.selectCustomerById(id);
@@ -350,7 +572,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         update.setId(id);
         update.setGender(newGender);
 
-        underTest.updateCustomer(update);
+        underTest.updateCustomer(update, null);
 
         // Then
         Optional<Customer> actual = underTest.selectCustomerById(id);
@@ -393,7 +615,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         update.setAge(newAge);
         update.setGender(newGender);
 
-        underTest.updateCustomer(update);
+        underTest.updateCustomer(update, null);
 
         // Then
         Optional<Customer> actual = underTest.selectCustomerById(id);
@@ -422,7 +644,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         Customer update = new Customer();
         update.setId(id);
 
-        underTest.updateCustomer(update);
+        Optional<Customer> updated = underTest.updateCustomer(update, null);
 
         // Then
         Optional<Customer> actual = underTest.selectCustomerById(id);
@@ -433,6 +655,108 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
             assertThat(c.getAge()).isEqualTo(customer.getAge());
             assertThat(c.getGender()).isEqualTo(customer.getGender());
         });
+        assertThat(updated).isEmpty();
+    }
+
+    @Test
+    void willNotUpdateWhenValuesAreUnchanged() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID();
+        Customer customer = new Customer(FAKER.name().fullName(), email, "password" , 35, Gender.MALE);
+
+        underTest.insertCustomer(customer);
+
+        Customer inserted = underTest.selectUserByEmail(email).orElseThrow();
+
+        // When the update sets the values the customer already has
+        Customer update = new Customer();
+        update.setId(inserted.getId());
+        update.setName(customer.getName());
+        update.setAge(customer.getAge());
+
+        Optional<Customer> updated = underTest.updateCustomer(update, inserted.getVersion());
+
+        // Then
+        assertThat(updated).isEmpty();
+        assertThat(underTest.selectCustomerById(inserted.getId()))
+                .hasValueSatisfying(c -> assertThat(c.getVersion()).isEqualTo(inserted.getVersion()));
+    }
+
+    @Test
+    void updateCustomerReturnsTheCustomerWithTheNextVersion() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID();
+        Customer customer = new Customer(FAKER.name().fullName(), email, "password" , 35, Gender.MALE);
+
+        underTest.insertCustomer(customer);
+
+        Customer inserted = underTest.selectUserByEmail(email).orElseThrow();
+
+        // When
+        Customer update = new Customer();
+        update.setId(inserted.getId());
+        update.setAge(36);
+
+        Optional<Customer> updated = underTest.updateCustomer(update, inserted.getVersion());
+
+        // Then
+        assertThat(updated).hasValueSatisfying(c -> {
+            assertThat(c.getId()).isEqualTo(inserted.getId());
+            assertThat(c.getName()).isEqualTo(customer.getName());
+            assertThat(c.getAge()).isEqualTo(36);
+            assertThat(c.getVersion()).isEqualTo(inserted.getVersion() + 1);
+        });
+    }
+
+    @Test
+    void willNotUpdateWhenVersionIsStale() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID();
+        Customer customer = new Customer(FAKER.name().fullName(), email, "password" , 35, Gender.MALE);
+
+        underTest.insertCustomer(customer);
+
+        Customer inserted = underTest.selectUserByEmail(email).orElseThrow();
+
+        Customer firstUpdate = new Customer();
+        firstUpdate.setId(inserted.getId());
+        firstUpdate.setName("first");
+        underTest.updateCustomer(firstUpdate, inserted.getVersion());
+
+        // When the second update still expects the version both updates started from
+        Customer secondUpdate = new Customer();
+        secondUpdate.setId(inserted.getId());
+        secondUpdate.setName("second");
+
+        Optional<Customer> updated = underTest.updateCustomer(secondUpdate, inserted.getVersion());
+
+        // Then
+        assertThat(updated).isEmpty();
+        assertThat(underTest.selectCustomerById(inserted.getId()))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("first"));
+    }
+
+    @Test
+    void willNotUpdateWhenEmailBelongsToAnotherCustomer() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID();
+        String otherEmail = FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, "password" , 35, Gender.MALE));
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), otherEmail, "password" , 40, Gender.FEMALE));
+
+        Customer inserted = underTest.selectUserByEmail(email).orElseThrow();
+
+        // When
+        Customer update = new Customer();
+        update.setId(inserted.getId());
+        update.setEmail(otherEmail);
+
+        Optional<Customer> updated = underTest.updateCustomer(update, null);
+
+        // Then
+        assertThat(updated).isEmpty();
+        assertThat(underTest.selectCustomerById(inserted.getId()))
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo(email));
     }
 
 }
\ No newline at end of file
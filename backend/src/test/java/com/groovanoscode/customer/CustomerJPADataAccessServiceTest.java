@@ -8,10 +8,15 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -31,7 +36,7 @@ class CustomerJPADataAccessServiceTest {
     @BeforeEach
     void setUp() {
         autoCloseable = MockitoAnnotations.openMocks(this);//We need to initialize the Mock, because we are using Mock annotations
-        underTest = new CustomerJPADataAccessService(customerRepository);
+        underTest = new CustomerJPADataAccessService(customerRepository, false);
     }
 
     @AfterEach
@@ -58,6 +63,96 @@ class CustomerJPADataAccessServiceTest {
         //Mockito.verify(customerRepository).findAll();
     }
 
+    @Test
+    void selectCustomersAfterId() {
+        // Given
+        int afterId = 10;
+        int limit = 5;
+
+        // When
+        underTest.selectCustomersAfterId(afterId, limit);
+
+        // Then
+        ArgumentCaptor<Pageable> pageableArgumentCaptor = ArgumentCaptor.forClass(Pageable.class);
+        verify(customerRepository).findByIdGreaterThan(eq(afterId), pageableArgumentCaptor.capture());
+        assertThat(pageableArgumentCaptor.getValue()).isEqualTo(PageRequest.of(0, limit, Sort.by("id")));
+    }
+
+    @Test
+    void selectVersionedCustomersAfterId() {
+        // Given
+        int afterId = 10;
+        int limit = 5;
+
+        // When
+        underTest.selectVersionedCustomersAfterId(afterId, limit);
+
+        // Then: the query orders by id, the page only limits
+        verify(customerRepository).findVersionedCustomersByIdGreaterThan(afterId, PageRequest.of(0, limit));
+    }
+
+    @Test
+    void selectVersionedCustomersAfterIdUnlessDigestComparesTheDigestOfThePage() {
+        // Given
+        List<VersionedCustomer> customers = List.of(new VersionedCustomer(11, "Alex", "alex@gmail.com", Gender.MALE, 19, 0L));
+        when(customerRepository.findVersionedCustomersByIdGreaterThan(10, PageRequest.of(0, 5))).thenReturn(customers);
+
+        // When
+        VersionedCustomerPage unchanged = underTest.selectVersionedCustomersAfterIdUnlessDigest(10, 5, List.of(CustomerPage.digest(customers)));
+        VersionedCustomerPage changed = underTest.selectVersionedCustomersAfterIdUnlessDigest(10, 5, List.of("other"));
+
+        // Then
+        assertThat(unchanged.unchanged()).isTrue();
+        assertThat(changed.customers()).isEqualTo(customers);
+        assertThat(changed.digest()).isEqualTo(CustomerPage.digest(customers));
+    }
+
+    @Test
+    void selectCustomerDTOById() {
+        // Given
+        int id = 1;
+
+        // When
+        underTest.selectCustomerDTOById(id);
+
+        // Then
+        Mockito.verify(customerRepository).findCustomerDTOById(id);
+    }
+
+    @Test
+    void selectVersionedCustomerById() {
+        // Given
+        int id = 1;
+
+        // When
+        underTest.selectVersionedCustomerById(id);
+
+        // Then
+        Mockito.verify(customerRepository).findVersionedCustomerById(id);
+    }
+
+    @Test
+    void selectUserByEmailQueriesTheLowerCaseEmail() {
+        // When
+        underTest.selectUserByEmail("Alex@Gmail.com");
+
+        // Then
+        Mockito.verify(customerRepository).findCustomerByEmail("Alex@Gmail.com");
+        Mockito.verify(customerRepository, Mockito.never()).findCustomerByNaturalId(Mockito.any());
+    }
+
+    @Test
+    void selectUserByEmailLooksUpTheNormalizedNaturalIdWithTheSecondLevelCache() {
+        // Given
+        underTest = new CustomerJPADataAccessService(customerRepository, true);
+
+        // When
+        underTest.selectUserByEmail(" Alex@Gmail.com");
+
+        // Then
+        Mockito.verify(customerRepository).findCustomerByNaturalId("alex@gmail.com");
+    }
+
     @Test
     void selectCustomerById() {
         // Given
@@ -78,12 +173,29 @@ class CustomerJPADataAccessServiceTest {
                 FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID(),
                 "password" , 20,
                 Gender.MALE);
+        Mockito.when(customerRepository.saveAndFlush(customer)).thenReturn(new Customer(
+                1, customer.getName(), customer.getEmail(), customer.getPassword(), customer.getAge(), customer.getGender()));
+
+        // When
+        Optional<Integer> actual = underTest.insertCustomer(customer);
+
+        // Then
+        Mockito.verify(customerRepository).saveAndFlush(customer);
+        assertThat(actual).contains(1);
+    }
+
+    @Test
+    void insertCustomerWithTakenEmail() {
+        // Given
+        Customer customer = new Customer("Alex", "alex@gmail.com", "password" , 20, Gender.MALE);
+        Mockito.when(customerRepository.saveAndFlush(customer))
+                .thenThrow(new DataIntegrityViolationException("customer_email_unique"));
 
         // When
-        underTest.insertCustomer(customer);
+        Optional<Integer> actual = underTest.insertCustomer(customer);
 
         // Then
-        Mockito.verify(customerRepository).save(customer);
+        assertThat(actual).isEmpty();
     }
 
     @Test
@@ -98,16 +210,68 @@ class CustomerJPADataAccessServiceTest {
         Mockito.verify(customerRepository).existsCustomerByEmail(email);
     }
 
+    @Test
+    void insertCustomers() {
+        // Given
+        List<Customer> customers = List.of(
+                new Customer(FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID(), "password" , 20, Gender.MALE),
+                new Customer(FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID(), "password" , 30, Gender.FEMALE));
+
+        // When
+        Set<String> actual = underTest.insertCustomers(customers);
+
+        // Then
+        Mockito.verify(customerRepository).saveAll(customers);
+        assertThat(actual).containsExactlyInAnyOrder(customers.get(0).getEmail(), customers.get(1).getEmail());
+    }
+
+    @Test
+    void insertCustomersInsertsOneAtATimeWhenAnEmailWasTaken() {
+        // Given
+        Customer alex = new Customer("Alex", "alex@gmail.com", "password" , 20, Gender.MALE);
+        Customer jamila = new Customer("Jamila", "jamila@gmail.com", "password" , 21, Gender.FEMALE);
+        when(customerRepository.saveAll(List.of(alex, jamila))).thenThrow(new DataIntegrityViolationException("customer_email_unique"));
+        when(customerRepository.saveAndFlush(any())).thenAnswer(invocation -> {
+            Customer customer = invocation.getArgument(0);
+            if (customer.getEmail().equals("alex@gmail.com")) {
+                throw new DataIntegrityViolationException("customer_email_unique");
+            }
+            customer.setId(2);
+            return customer;
+        });
+
+        // When
+        Set<String> actual = underTest.insertCustomers(List.of(alex, jamila));
+
+        // Then
+        assertThat(actual).containsExactly("jamila@gmail.com");
+    }
+
+    @Test
+    void selectExistingEmails() {
+        // Given
+        List<String> emails = List.of("alex@gmail.com", "jamila@gmail.com");
+
+        // When
+        underTest.selectExistingEmails(emails);
+
+        // Then
+        Mockito.verify(customerRepository).findExistingEmails(emails);
+    }
+
     @Test
     void deleteCustomerById() {
         // Given
         int id = 1;
 
+        Mockito.when(customerRepository.deleteCustomerById(id)).thenReturn(1);
+
         // When
-        underTest.deleteCustomerById(id);
+        boolean actual = underTest.deleteCustomerById(id);
 
         // Then
-        Mockito.verify(customerRepository).deleteById(id);
+        Mockito.verify(customerRepository).deleteCustomerById(id);
+        assertThat(actual).isTrue();
     }
 
     @Test
@@ -125,16 +289,39 @@ class CustomerJPADataAccessServiceTest {
     @Test
     void updateCustomer() {
         // Given
-        Customer customer = new Customer(
-                FAKER.name().fullName(),
-                FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID(),
-                "password" , 20,
-                Gender.MALE);
+        int id = 1;
+        Customer customer = new Customer(id, "Alex", "alex@gmail.com", "password" , 20, Gender.MALE, 3L);
+        when(customerRepository.findById(id)).thenReturn(Optional.of(customer));
+        when(customerRepository.saveAndFlush(customer)).thenReturn(customer);
+
+        Customer update = new Customer();
+        update.setId(id);
+        update.setName("Alexandro");
+
+        // When
+        Optional<Customer> actual = underTest.updateCustomer(update, 3L);
+
+        // Then
+        assertThat(actual).hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Alexandro"));
+        Mockito.verify(customerRepository).saveAndFlush(customer);
+    }
+
+    @Test
+    void willNotUpdateCustomerWithAStaleVersion() {
+        // Given
+        int id = 1;
+        Customer customer = new Customer(id, "Alex", "alex@gmail.com", "password" , 20, Gender.MALE, 4L);
+        when(customerRepository.findById(id)).thenReturn(Optional.of(customer));
+
+        Customer update = new Customer();
+        update.setId(id);
+        update.setName("Alexandro");
 
         // When
-        underTest.updateCustomer(customer);
+        Optional<Customer> actual = underTest.updateCustomer(update, 3L);
 
         // Then
-        Mockito.verify(customerRepository).save(customer);
+        assertThat(actual).isEmpty();
+        Mockito.verify(customerRepository, never()).saveAndFlush(any());
     }
 }
\ No newline at end of file
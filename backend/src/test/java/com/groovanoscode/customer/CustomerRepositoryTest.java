@@ -2,7 +2,10 @@ package com.groovanoscode.customer;
 
 import com.groovanoscode.AbstractTestcontainers;
 import com.groovanoscode.TestConfig;
+import jakarta.persistence.EntityManagerFactory;
 import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,8 +13,11 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
 @DataJpaTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
@@ -24,6 +30,9 @@ class CustomerRepositoryTest extends AbstractTestcontainers {
     @Autowired
     private ApplicationContext applicationContext;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @BeforeEach
     void setUp() {
         underTest.deleteAll(); // Make sure we have no data into our database
@@ -98,4 +107,45 @@ class CustomerRepositoryTest extends AbstractTestcontainers {
         // Then
         Assertions.assertThat(actual).isFalse();
     }
-}
\ No newline at end of file
+
+    @Test
+    void findVersionedCustomersByIdGreaterThan() {
+        // Given
+        Customer alex = underTest.save(new Customer(FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID(), "password" , 20, Gender.MALE));
+        Customer jamila = underTest.save(new Customer(FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID(), "password" , 21, Gender.FEMALE));
+
+        // When
+        var actual = underTest.findVersionedCustomersByIdGreaterThan(alex.getId() - 1, PageRequest.of(0, 10));
+
+        // Then
+        CustomerDTOMapper customerDTOMapper = new CustomerDTOMapper();
+        Assertions.assertThat(actual).containsExactly(
+                new VersionedCustomer(customerDTOMapper.apply(alex), alex.getVersion()),
+                new VersionedCustomer(customerDTOMapper.apply(jamila), jamila.getVersion()));
+        Assertions.assertThat(underTest.findCustomerDTOById(jamila.getId())).contains(customerDTOMapper.apply(jamila));
+    }
+
+    @Test
+    void saveAllSendsTheInsertsInBatches() {
+        // Given
+        List<Customer> customers = IntStream.range(0, 120)
+                .mapToObj(i -> new Customer(FAKER.name().fullName(),
+                        FAKER.internet().safeEmailAddress() + "_" + UUID.randomUUID(), "password" , 20, Gender.MALE))
+                .toList();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        // When
+        underTest.saveAll(customers);
+        underTest.flush();
+
+        // Then: a few nextval for 50 ids each and 3 batches of inserts, instead of a nextval and an insert per customer
+        Assertions.assertThat(statistics.getEntityInsertCount()).isEqualTo(120);
+        Assertions.assertThat(statistics.getPrepareStatementCount()).isLessThan(10);
+        Assertions.assertThat(customers).extracting(Customer::getId).doesNotHaveDuplicates().doesNotContainNull();
+        statistics.setStatisticsEnabled(false);
+    }
+}
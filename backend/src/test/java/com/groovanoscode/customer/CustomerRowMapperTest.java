@@ -21,6 +21,7 @@ class CustomerRowMapperTest {
         Mockito.when(resultSet.getString("email")).thenReturn("jamila@gmail.com");
         Mockito.when(resultSet.getInt("age")).thenReturn(19);
         Mockito.when(resultSet.getString("gender")).thenReturn("FEMALE");
+        Mockito.when(resultSet.getLong("version")).thenReturn(3L);
 
         // When
         Customer actual = customerRowMapper.mapRow(resultSet, 1);
@@ -29,5 +30,6 @@ class CustomerRowMapperTest {
         Customer expected = new Customer(1, "Jamila", "jamila@gmail.com", "password" , 19, Gender.FEMALE);
 
         Assertions.assertThat(actual).isEqualTo(expected);
+        Assertions.assertThat(actual.getVersion()).isEqualTo(3L);
     }
 }
\ No newline at end of file
@@ -0,0 +1,166 @@
+package com.groovanoscode.customer;
+
+import com.groovanoscode.AbstractTestcontainers;
+import com.groovanoscode.TestConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+// Without the test transaction: the cache is filled when the transactions of the repository commit
+@DataJpaTest(properties = "customer.second-level-cache.enabled=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({TestConfig.class, CustomerSecondLevelCacheConfig.class, CustomerSecondLevelCacheTest.Metrics.class})
+class CustomerSecondLevelCacheTest extends AbstractTestcontainers {
+
+    @TestConfiguration
+    static class Metrics {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private CustomerSecondLevelCache secondLevelCache;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private CustomerDao jdbc;
+    private Statistics statistics;
+    private Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        // The jdbc DAO as the application wires it when the cache is enabled
+        jdbc = new SecondLevelCacheEvictingCustomerDao(
+                new CustomerJDBCDataAccessService(getJdbcTemplate(), new CustomerRowMapper()), secondLevelCache);
+        customer = customerRepository.save(new Customer(FAKER.name().fullName(),
+                "second-level-" + UUID.randomUUID() + "@gmail.com", "password" , 20, Gender.MALE));
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        statistics.setStatisticsEnabled(false);
+        jdbc.deleteCustomerById(customer.getId());
+    }
+
+    @Test
+    void findCustomerByNaturalIdIsServedFromTheCache() {
+        // Given
+        double hits = emailHits();
+
+        // When
+        var actual = customerRepository.findCustomerByNaturalId(customer.getEmail());
+
+        // Then: the insert filled both regions, no query at all
+        Assertions.assertThat(actual).contains(customer);
+        Assertions.assertThat(statistics.getNaturalIdCacheHitCount()).isEqualTo(1);
+        Assertions.assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(1);
+        Assertions.assertThat(statistics.getPrepareStatementCount()).isZero();
+        Assertions.assertThat(emailHits()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    void aMissIsQueriedOnceThenServedFromTheCache() {
+        // Given
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        sessionFactory.getCache().evictNaturalIdData(Customer.class);
+        sessionFactory.getCache().evictEntityData(Customer.class);
+
+        // When
+        var miss = customerRepository.findCustomerByNaturalId(customer.getEmail());
+        long missStatements = statistics.getPrepareStatementCount();
+        var hit = customerRepository.findCustomerByNaturalId(customer.getEmail());
+
+        // Then: one query by lower(email), and the customer it loaded fills both regions
+        Assertions.assertThat(miss).contains(customer);
+        Assertions.assertThat(hit).contains(customer);
+        Assertions.assertThat(missStatements).isEqualTo(1);
+        Assertions.assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void jdbcUpdatesAreSeen() {
+        // Given
+        String newEmail = "second-level-" + UUID.randomUUID() + "@gmail.com";
+
+        // When
+        jdbc.updateCustomer(new Customer(customer.getId(), "New name", newEmail, null, null, null), null);
+
+        // Then: the old email still resolves to the id in the cache, but the customer has another email now
+        Assertions.assertThat(customerRepository.findCustomerByNaturalId(customer.getEmail())).isEmpty();
+        Assertions.assertThat(customerRepository.findCustomerByNaturalId(newEmail))
+                .hasValueSatisfying(c -> Assertions.assertThat(c.getName()).isEqualTo("New name"));
+    }
+
+    @Test
+    void aStaleEmailDoesNotEvictTheOtherCustomers() {
+        // Given
+        Customer other = customerRepository.save(new Customer("Other", "second-level-" + UUID.randomUUID() + "@gmail.com",
+                "password" , 40, Gender.FEMALE));
+        jdbc.updateCustomer(new Customer(customer.getId(), null, "second-level-" + UUID.randomUUID() + "@gmail.com",
+                null, null, null), null);
+
+        try {
+            // When
+            Assertions.assertThat(customerRepository.findCustomerByNaturalId(customer.getEmail())).isEmpty();
+            statistics.clear();
+            var actual = customerRepository.findCustomerByNaturalId(other.getEmail());
+
+            // Then: still served from the cache
+            Assertions.assertThat(actual).contains(other);
+            Assertions.assertThat(statistics.getPrepareStatementCount()).isZero();
+        } finally {
+            jdbc.deleteCustomerById(other.getId());
+        }
+    }
+
+    @Test
+    void jdbcDeletesAreSeen() {
+        // When
+        jdbc.deleteCustomerById(customer.getId());
+        Customer again = customerRepository.save(new Customer("Again", customer.getEmail(), "password" , 30, Gender.FEMALE));
+
+        // Then: the email belongs to the new customer
+        try {
+            Assertions.assertThat(customerRepository.findCustomerByNaturalId(customer.getEmail()))
+                    .hasValueSatisfying(c -> Assertions.assertThat(c.getId()).isEqualTo(again.getId()));
+        } finally {
+            jdbc.deleteCustomerById(again.getId());
+        }
+    }
+
+    private double emailHits() {
+        return meterRegistry.get("cache.gets")
+                .tags("cache", CustomerSecondLevelCacheConfig.CUSTOMERS_BY_EMAIL, "result", "hit")
+                .functionCounter().count();
+    }
+}
@@ -0,0 +1,77 @@
+package com.groovanoscode.customer;
+
+import com.groovanoscode.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerServiceMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    private CustomerService customerService;
+
+    private CustomerService underTest;
+
+    @BeforeEach
+    void setUp() {
+        AspectJProxyFactory factory = new AspectJProxyFactory(customerService);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new CustomerServiceMetrics(meterRegistry));
+        underTest = factory.getProxy();
+    }
+
+    @Test
+    void exceptionsAreTaggedWithTheirOutcome() {
+        // Given
+        Mockito.when(customerService.getCustomer(1)).thenThrow(new ResourceNotFoundException("not found"));
+
+        // When / Then
+        assertThatThrownBy(() -> underTest.getCustomer(1)).isInstanceOf(ResourceNotFoundException.class);
+        assertThat(count("getCustomer", "not-found")).isEqualTo(1);
+    }
+
+    @Test
+    void futuresAreTimedWhenTheyComplete() {
+        // Given
+        CompletableFuture<Integer> id = new CompletableFuture<>();
+        CompletableFuture<Integer> failure = new CompletableFuture<>();
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest("Alex", "alex@gmail.com", "password", 21, Gender.MALE);
+        Mockito.when(customerService.addCustomer(request)).thenReturn(id, failure);
+
+        // When
+        CompletableFuture<Integer> actual = underTest.addCustomer(request);
+        CompletableFuture<Integer> actualFailure = underTest.addCustomer(request);
+
+        // Then
+        assertThat(meterRegistry.find(CustomerServiceMetrics.TIMER).timers()).isEmpty();
+
+        id.complete(1);
+        failure.completeExceptionally(new CompletionException(new ResourceNotFoundException("gone")));
+
+        assertThat(actual.join()).isEqualTo(1);
+        assertThat(actualFailure).isCompletedExceptionally();
+        assertThat(count("addCustomer", "success")).isEqualTo(1);
+        assertThat(count("addCustomer", "not-found")).isEqualTo(1);
+    }
+
+    private long count(String method, String outcome) {
+        return meterRegistry.get(CustomerServiceMetrics.TIMER)
+                .tags("method", method, "outcome", outcome)
+                .timer()
+                .count();
+    }
+}
@@ -1,19 +1,34 @@
 package com.groovanoscode.customer;
 
 import com.groovanoscode.exception.DuplicateResourceException;
+import com.groovanoscode.exception.PreconditionFailedException;
 import com.groovanoscode.exception.RequestValidationException;
 import com.groovanoscode.exception.ResourceNotFoundException;
+import com.groovanoscode.jwt.JWTPrincipal;
+import com.groovanoscode.security.ParallelPasswordEncoder;
+import com.groovanoscode.security.PasswordHashingExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 @ExtendWith(MockitoExtension.class)
 class CustomerServiceTest {
@@ -24,40 +39,189 @@ class CustomerServiceTest {
     private CustomerDao customerDao;
     @Mock
     PasswordEncoder passwordEncoder;
+    @Mock
+    ParallelPasswordEncoder parallelPasswordEncoder;
+    @Mock
+    CustomerUserCache customerUserCache;
 
     private final CustomerDTOMapper customerDTOMapper = new CustomerDTOMapper();
 
+    private final PasswordHashingExecutor passwordHashingExecutor = new PasswordHashingExecutor(new SimpleMeterRegistry(), 1, 10);
+
 
     @BeforeEach
     void setUp() {
-        underTest = new CustomerService(customerDao , customerDTOMapper , passwordEncoder);
+        underTest = new CustomerService(customerDao , customerDTOMapper , passwordEncoder , parallelPasswordEncoder , customerUserCache ,
+                passwordHashingExecutor);
+
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwordHashingExecutor.destroy();
+    }
+
+
+    @Test
+    void getCustomers() {
+        // Given
+        int limit = 2;
+        List<VersionedCustomer> customers = List.of(
+                new VersionedCustomer(1, "Alex", "alex@gmail.com", Gender.MALE, 19, 0L)
+        );
+        Mockito.when(customerDao.selectVersionedCustomersAfterId(0, limit + 1)).thenReturn(customers);
+
+        // When
+        CustomerPage actual = underTest.getCustomers(null, limit);
+
+        // Then: there is no next page because the dao returned less than "limit + 1" customers
+        Assertions.assertThat(actual.customers()).extracting(CustomerDTO::id).containsExactly(1);
+        Assertions.assertThat(actual.nextCursor()).isNull();
+        Assertions.assertThat(actual.eTag()).isEqualTo(CustomerPage.digest(customers));
+    }
+
+    @Test
+    void getCustomersReturnsTheNextCursorWhenThereAreMoreCustomers() {
+        // Given
+        int afterId = 10;
+        int limit = 2;
+        List<VersionedCustomer> customers = List.of(
+                new VersionedCustomer(11, "Alex", "alex@gmail.com", Gender.MALE, 19, 0L),
+                new VersionedCustomer(12, "Jamila", "jamila@gmail.com", Gender.FEMALE, 21, 3L),
+                new VersionedCustomer(13, "Ali", "ali@gmail.com", Gender.MALE, 25, 1L)
+        );
+        Mockito.when(customerDao.selectVersionedCustomersAfterId(afterId, limit + 1)).thenReturn(customers);
+
+        // When
+        CustomerPage actual = underTest.getCustomers(afterId, limit);
+
+        // Then: the ETag covers the extra customer too, it decides the next cursor
+        Assertions.assertThat(actual.customers()).extracting(CustomerDTO::id).containsExactly(11, 12);
+        Assertions.assertThat(actual.nextCursor()).isEqualTo(12);
+        Assertions.assertThat(actual.eTag()).isEqualTo(CustomerPage.digest(customers));
+    }
 
+    @Test
+    void getCustomersWithTheETagOfTheClientReturnsAnUnchangedPageWithoutCustomers() {
+        // Given
+        Mockito.when(customerDao.selectVersionedCustomersAfterIdUnlessDigest(10, 3, Set.of("digest")))
+                .thenReturn(new VersionedCustomerPage("digest", null));
+
+        // When
+        CustomerPage actual = underTest.getCustomers(10, 2, Set.of("digest"));
+
+        // Then: the same customers as getCustomers, none of them read
+        Assertions.assertThat(actual.unchanged()).isTrue();
+        Assertions.assertThat(actual.eTag()).isEqualTo("digest");
+        Mockito.verify(customerDao, Mockito.never()).selectVersionedCustomersAfterId(ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt());
+    }
+
+    @Test
+    void getCustomersWithAnOldETagReturnsTheChangedPage() {
+        // Given
+        List<VersionedCustomer> customers = List.of(
+                new VersionedCustomer(11, "Alex", "alex@gmail.com", Gender.MALE, 19, 1L),
+                new VersionedCustomer(12, "Jamila", "jamila@gmail.com", Gender.FEMALE, 21, 3L),
+                new VersionedCustomer(13, "Ali", "ali@gmail.com", Gender.MALE, 25, 1L)
+        );
+        Mockito.when(customerDao.selectVersionedCustomersAfterIdUnlessDigest(10, 3, Set.of("old")))
+                .thenReturn(new VersionedCustomerPage(CustomerPage.digest(customers), customers));
+
+        // When
+        CustomerPage actual = underTest.getCustomers(10, 2, Set.of("old"));
+
+        // Then
+        Assertions.assertThat(actual.unchanged()).isFalse();
+        Assertions.assertThat(actual.customers()).extracting(CustomerDTO::id).containsExactly(11, 12);
+        Assertions.assertThat(actual.nextCursor()).isEqualTo(12);
+        Assertions.assertThat(actual.eTag()).isEqualTo(CustomerPage.digest(customers));
     }
 
+    @Test
+    void pageDigestChangesWithTheVersions() {
+        VersionedCustomer alex = new VersionedCustomer(1, "Alex", "alex@gmail.com", Gender.MALE, 19, 0L);
+        VersionedCustomer updatedAlex = new VersionedCustomer(1, "Alex", "alex@gmail.com", Gender.MALE, 20, 1L);
+        VersionedCustomer jamila = new VersionedCustomer(2, "Jamila", "jamila@gmail.com", Gender.FEMALE, 21, 0L);
+
+        Assertions.assertThat(CustomerPage.digest(List.of(alex, jamila)))
+                .isEqualTo(CustomerPage.digest(List.of(alex, jamila)))
+                .isNotEqualTo(CustomerPage.digest(List.of(updatedAlex, jamila)))
+                .isNotEqualTo(CustomerPage.digest(List.of(alex)));
+    }
 
     @Test
-    void getAllCustomers() {
+    void willThrowWhenPageLimitIsOutOfRange() {
         // When
-        underTest.getAllCustomers();
+        Assertions.assertThatThrownBy(() -> underTest.getCustomers(null, CustomerService.MAX_PAGE_SIZE + 1))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("limit must be between 1 and %s".formatted(CustomerService.MAX_PAGE_SIZE));
 
         // Then
-        Mockito.verify(customerDao).selectAllCustomers();
+        Mockito.verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void exportCustomersStreamsEveryCustomerAndClosesTheStream() {
+        // Given
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<CustomerDTO> customers = Stream.of(
+                new CustomerDTO(1, "Alex", "alex@gmail.com", Gender.MALE, 19),
+                new CustomerDTO(2, "Jamila", "jamila@gmail.com", Gender.FEMALE, 21)
+        ).onClose(() -> closed.set(true));
+        Mockito.when(customerDao.streamAllCustomerDTOs()).thenReturn(customers);
+
+        List<CustomerDTO> exported = new ArrayList<>();
+
+        // When
+        underTest.exportCustomers(exported::add);
+
+        // Then: the stream holds a database cursor so it must be closed once the export is done
+        Assertions.assertThat(exported).extracting(CustomerDTO::id).containsExactly(1, 2);
+        Assertions.assertThat(closed).isTrue();
     }
 
     @Test
     void canGetCustomer() {
         // Given
         int id = 10;
-        Customer customer = new Customer(id, "Alex", "alex@gmail.com", "password" , 19, Gender.MALE);
-        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer)); // Optional because the return typ of selectCustomerById is an Optional
-
-        CustomerDTO expected = customerDTOMapper.apply(customer);
+        CustomerDTO expected = new CustomerDTO(id, "Alex", "alex@gmail.com", Gender.MALE, 19);
+        Mockito.when(customerDao.selectCustomerDTOById(id)).thenReturn(Optional.of(expected)); // Optional because the return typ of selectCustomerDTOById is an Optional
 
         // When
         CustomerDTO actual = underTest.getCustomer(id);
 
-        // Then
+        // Then: the projection, the customer and its password hash are not loaded
+        Assertions.assertThat(actual).isEqualTo(expected);
+        Assertions.assertThat(actual.roles()).containsExactly("ROLE_USER");
+        Assertions.assertThat(actual.username()).isEqualTo("alex@gmail.com");
+        Mockito.verify(customerDao, Mockito.never()).selectCustomerById(Mockito.any());
+    }
+
+    @Test
+    void getVersionedCustomerReadsTheProjection() {
+        // Given
+        int id = 10;
+        VersionedCustomer expected = new VersionedCustomer(id, "Alex", "alex@gmail.com", Gender.MALE, 19, 3L);
+        Mockito.when(customerDao.selectVersionedCustomerById(id)).thenReturn(Optional.of(expected));
+
+        // When
+        VersionedCustomer actual = underTest.getVersionedCustomer(id);
+
+        // Then: the customer and its password hash are not loaded
         Assertions.assertThat(actual).isEqualTo(expected);
+        Mockito.verify(customerDao, Mockito.never()).selectCustomerById(Mockito.any());
+    }
+
+    @Test
+    void getVersionedCustomerFailsWhenTheCustomerDoesNotExist() {
+        // Given
+        int id = 10;
+        Mockito.when(customerDao.selectVersionedCustomerById(id)).thenReturn(Optional.empty());
+
+        // When / Then
+        Assertions.assertThatThrownBy(() -> underTest.getVersionedCustomer(id))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("Customer with id [%s] not found".formatted(id));
     }
 
     @Test
@@ -65,7 +229,7 @@ class CustomerServiceTest {
         // Given
         int id = 10;
 
-        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.empty());
+        Mockito.when(customerDao.selectCustomerDTOById(id)).thenReturn(Optional.empty());
 
         // When
 
@@ -78,9 +242,7 @@ class CustomerServiceTest {
     @Test
     void addCustomer() {
         // Given
-        String email = "alex@gmail.com";
-
-        Mockito.when(customerDao.existsPersonWithEmail(email)).thenReturn(false);
+        String email = " Alex@Gmail.com";
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "Alex", email, "password" , 19, Gender.MALE
@@ -88,9 +250,10 @@ class CustomerServiceTest {
 
         String passwordHash = "ç5554ml;f;lsd"; //just put some random number as hashcode
         Mockito.when(passwordEncoder.encode(request.password())).thenReturn(passwordHash);
+        Mockito.when(customerDao.insertCustomer(Mockito.any())).thenReturn(Optional.of(1));
 
         // When
-        underTest.addCustomer(request);
+        Integer actual = underTest.addCustomer(request).join();
 
         // Then
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
@@ -101,9 +264,11 @@ class CustomerServiceTest {
 
         Assertions.assertThat(capturedCustomer.getId()).isNull(); // Id is not because it is generated by the database
         Assertions.assertThat(capturedCustomer.getName()).isEqualTo(request.name());
-        Assertions.assertThat(capturedCustomer.getEmail()).isEqualTo(request.email());
+        // Emails are stored trimmed and in lower case
+        Assertions.assertThat(capturedCustomer.getEmail()).isEqualTo("alex@gmail.com");
         Assertions.assertThat(capturedCustomer.getAge()).isEqualTo(request.age());
         Assertions.assertThat(capturedCustomer.getPassword()).isEqualTo(passwordHash);
+        Assertions.assertThat(actual).isEqualTo(1);
     }
 
     @Test
@@ -111,47 +276,178 @@ class CustomerServiceTest {
         // Given
         String email = "alex@gmail.com";
 
-        Mockito.when(customerDao.existsPersonWithEmail(email)).thenReturn(true);
+        // The insert does nothing when the email is taken
+        Mockito.when(customerDao.insertCustomer(Mockito.any())).thenReturn(Optional.empty());
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "Alex", email, "password" , 19, Gender.MALE
         );
 
         // When
-        Assertions.assertThatThrownBy(() -> underTest.addCustomer(request))
-                .isInstanceOf(DuplicateResourceException.class)
-                .hasMessage("email already taken");
+        Assertions.assertThatThrownBy(() -> underTest.addCustomer(request).join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(DuplicateResourceException.class)
+                .hasRootCauseMessage("email already taken");
+
+        // Then: no separate existence check before the insert
+        Mockito.verify(customerDao, Mockito.never()).existsPersonWithEmail(Mockito.any());
+    }
+
+    @Test
+    void addCustomers() {
+        // Given
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", "password1" , 19, Gender.MALE),
+                new CustomerRegistrationRequest("Jamila", "jamila@gmail.com", "password2" , 21, Gender.FEMALE),
+                new CustomerRegistrationRequest("Ali", "ali@gmail.com", "password3" , 25, Gender.MALE)
+        );
+        Mockito.when(customerDao.selectExistingEmails(Mockito.anyCollection())).thenReturn(Set.of());
+        Mockito.when(parallelPasswordEncoder.encodeAll(List.of("password1", "password2", "password3")))
+                .thenReturn(List.of("hash1", "hash2", "hash3"));
+        Mockito.when(customerDao.insertCustomers(Mockito.anyList()))
+                .thenReturn(Set.of("alex@gmail.com", "jamila@gmail.com", "ali@gmail.com"));
+
+        // When
+        List<CustomerBatchResult> actual = underTest.addCustomers(requests);
 
-        // Then: Verify that the customerDao.insertCustomer() is never invoke or will never insert a customer
+        // Then
+        Assertions.assertThat(actual).extracting(CustomerBatchResult::status)
+                .containsOnly(CustomerBatchResult.Status.CREATED);
+
+        ArgumentCaptor<List<Customer>> customersArgumentCaptor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(customerDao).insertCustomers(customersArgumentCaptor.capture());
+        Assertions.assertThat(customersArgumentCaptor.getValue())
+                .extracting(Customer::getEmail, Customer::getPassword)
+                .containsExactly(
+                        Assertions.tuple("alex@gmail.com", "hash1"),
+                        Assertions.tuple("jamila@gmail.com", "hash2"),
+                        Assertions.tuple("ali@gmail.com", "hash3"));
+        // No query per customer
+        Mockito.verify(customerDao, Mockito.never()).existsPersonWithEmail(Mockito.any());
         Mockito.verify(customerDao, Mockito.never()).insertCustomer(Mockito.any());
     }
 
+    @Test
+    void addCustomersReportsDuplicateAndInvalidRequests() {
+        // Given
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", "password" , 19, Gender.MALE),
+                new CustomerRegistrationRequest("Jamila", "jamila@gmail.com", "password" , 21, Gender.FEMALE),
+                new CustomerRegistrationRequest("Jamila", "jamila@gmail.com", "password" , 21, Gender.FEMALE),
+                new CustomerRegistrationRequest("Ali", "ali@gmail.com", null , 25, Gender.MALE)
+        );
+        Mockito.when(customerDao.selectExistingEmails(Set.of("alex@gmail.com", "jamila@gmail.com")))
+                .thenReturn(Set.of("alex@gmail.com"));
+        Mockito.when(parallelPasswordEncoder.encodeAll(List.of("password"))).thenReturn(List.of("hash"));
+        Mockito.when(customerDao.insertCustomers(Mockito.anyList())).thenReturn(Set.of("jamila@gmail.com"));
+
+        // When
+        List<CustomerBatchResult> actual = underTest.addCustomers(requests);
+
+        // Then
+        Assertions.assertThat(actual).containsExactly(
+                new CustomerBatchResult(0, "alex@gmail.com", CustomerBatchResult.Status.DUPLICATE),
+                new CustomerBatchResult(1, "jamila@gmail.com", CustomerBatchResult.Status.CREATED),
+                new CustomerBatchResult(2, "jamila@gmail.com", CustomerBatchResult.Status.DUPLICATE),
+                new CustomerBatchResult(3, "ali@gmail.com", CustomerBatchResult.Status.INVALID));
+
+        ArgumentCaptor<List<Customer>> customersArgumentCaptor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(customerDao).insertCustomers(customersArgumentCaptor.capture());
+        Assertions.assertThat(customersArgumentCaptor.getValue())
+                .extracting(Customer::getEmail)
+                .containsExactly("jamila@gmail.com");
+    }
+
+    @Test
+    void addCustomersReportsEmailsTakenBetweenTheCheckAndTheInsertAsDuplicates() {
+        // Given: jamila registers on her own after the check of the existing emails
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", "password" , 19, Gender.MALE),
+                new CustomerRegistrationRequest("Jamila", "jamila@gmail.com", "password" , 21, Gender.FEMALE)
+        );
+        Mockito.when(customerDao.selectExistingEmails(Mockito.anyCollection())).thenReturn(Set.of());
+        Mockito.when(parallelPasswordEncoder.encodeAll(List.of("password", "password"))).thenReturn(List.of("hash", "hash"));
+        Mockito.when(customerDao.insertCustomers(Mockito.anyList())).thenReturn(Set.of("alex@gmail.com"));
+
+        // When
+        List<CustomerBatchResult> actual = underTest.addCustomers(requests);
+
+        // Then: the insert skipped her, the rest of the batch is created
+        Assertions.assertThat(actual).containsExactly(
+                new CustomerBatchResult(0, "alex@gmail.com", CustomerBatchResult.Status.CREATED),
+                new CustomerBatchResult(1, "jamila@gmail.com", CustomerBatchResult.Status.DUPLICATE));
+    }
+
+    @Test
+    void willThrowWhenBatchIsTooBig() {
+        // Given
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                "Alex", "alex@gmail.com", "password" , 19, Gender.MALE);
+        List<CustomerRegistrationRequest> requests = Collections.nCopies(CustomerService.MAX_BATCH_SIZE + 1, request);
+
+        // When
+        Assertions.assertThatThrownBy(() -> underTest.addCustomers(requests))
+                .isInstanceOf(RequestValidationException.class);
+
+        // Then
+        Mockito.verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void getAuthenticatedCustomerLoadsTheCustomerOfAStatelessPrincipal() {
+        // Given
+        Customer alex = new Customer(42, "Alex", "alex@gmail.com", "password" , 19, Gender.MALE);
+        Mockito.when(customerDao.selectCustomerDTOById(42)).thenReturn(Optional.of(customerDTOMapper.apply(alex)));
+        var authentication = new UsernamePasswordAuthenticationToken(
+                new JWTPrincipal("alex@gmail.com", 42, List.of("ROLE_USER")), null, List.of());
+
+        // When
+        CustomerDTO actual = underTest.getAuthenticatedCustomer(authentication);
+
+        // Then
+        Assertions.assertThat(actual).isEqualTo(customerDTOMapper.apply(alex));
+        Mockito.verify(customerDao, Mockito.never()).selectUserByEmail(Mockito.any());
+    }
+
+    @Test
+    void getAuthenticatedCustomerUsesALoadedPrincipal() {
+        // Given
+        Customer alex = new Customer(42, "Alex", "alex@gmail.com", "password" , 19, Gender.MALE);
+        var authentication = new UsernamePasswordAuthenticationToken(alex, null, alex.getAuthorities());
+
+        // When
+        CustomerDTO actual = underTest.getAuthenticatedCustomer(authentication);
+
+        // Then
+        Assertions.assertThat(actual).isEqualTo(customerDTOMapper.apply(alex));
+        Mockito.verifyNoInteractions(customerDao);
+    }
+
     @Test
     void deleteCustomer() {
         // Given
         int id = 10;
-        Mockito.when(customerDao.existsCustomerWithId(id)).thenReturn(true);
+        Mockito.when(customerDao.deleteCustomerById(id)).thenReturn(true);
 
         // When
         underTest.deleteCustomer(id);
 
-        // Then
+        // Then: one statement, no existence check before it
         Mockito.verify(customerDao).deleteCustomerById(id);
+        Mockito.verify(customerDao, Mockito.never()).existsCustomerWithId(id);
+        Mockito.verify(customerUserCache).removeCustomerFromCache(id);
     }
 
     @Test
     void willThrowWhenIdNotExistWhileDeletingACustomer() {
         // Given
         int id = 10;
-        Mockito.when(customerDao.existsCustomerWithId(id)).thenReturn(false);
+        Mockito.when(customerDao.deleteCustomerById(id)).thenReturn(false);
 
         // When
         Assertions.assertThatThrownBy(() -> underTest.deleteCustomer(id))
                 .isInstanceOf(ResourceNotFoundException.class)
                 .hasMessage("Customer with id [%s] not found".formatted(id));
-
-        // Then
-        Mockito.verify(customerDao, Mockito.never()).deleteCustomerById(id);
     }
 
     @Test
@@ -195,170 +491,199 @@ class CustomerServiceTest {
     void canUpdateAllCustomersProperties() {
         // Given
         int id = 10;
-        Customer customer = new Customer(id, "Alex", "alex@gmail.com", "password" , 19, Gender.MALE);
-
-        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
         String newEmail = "alexandro@groovanoscode.com";
         CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Alexandro", newEmail, 23, Gender.FEMALE);
-        Mockito.when(customerDao.existsPersonWithEmail(newEmail)).thenReturn(false);
+        Customer updated = new Customer(id, "Alexandro", newEmail, "password" , 23, Gender.FEMALE, 1L);
+        Mockito.when(customerDao.updateCustomer(Mockito.any(), Mockito.isNull())).thenReturn(Optional.of(updated));
 
         // When
-        underTest.updateCustomerById(id, updateRequest);
+        VersionedCustomer actual = underTest.updateCustomerById(id, updateRequest, null);
 
         // Then
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
-        Mockito.verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        Mockito.verify(customerDao).updateCustomer(customerArgumentCaptor.capture(), Mockito.isNull());
         Customer capturedCustomer = customerArgumentCaptor.getValue();
 
+        Assertions.assertThat(capturedCustomer.getId()).isEqualTo(id);
         Assertions.assertThat(capturedCustomer.getName()).isEqualTo(updateRequest.name());
         Assertions.assertThat(capturedCustomer.getEmail()).isEqualTo(updateRequest.email());
         Assertions.assertThat(capturedCustomer.getAge()).isEqualTo(updateRequest.age());
         Assertions.assertThat(capturedCustomer.getGender()).isEqualTo(updateRequest.gender());
+
+        Assertions.assertThat(actual.customer()).isEqualTo(customerDTOMapper.apply(updated));
+        Assertions.assertThat(actual.version()).isEqualTo(1L);
+        // The happy path is the update statement only
+        Mockito.verifyNoMoreInteractions(customerDao);
+        // The principal of the customer is outdated
+        Mockito.verify(customerUserCache).removeCustomerFromCache(id);
     }
 
     @Test
     void canUpdateOnlyCustomerName() {
         // Given
         int id = 10;
-        Customer customer = new Customer(id, "Alex", "alex@gmail.com", "password" , 19, Gender.MALE);
-
-        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
-        String newEmail = "alexandro@groovanoscode.com";
         String newName = "Alexandro";
         CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(newName, null, null, null);
+        Customer updated = new Customer(id, newName, "alex@gmail.com", "password" , 19, Gender.MALE, 1L);
+        Mockito.when(customerDao.updateCustomer(Mockito.any(), Mockito.isNull())).thenReturn(Optional.of(updated));
 
         // When
-        underTest.updateCustomerById(id, updateRequest);
+        underTest.updateCustomerById(id, updateRequest, null);
 
-        // Then
+        // Then: only the name is part of the update, the other columns are left alone
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
-        Mockito.verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        Mockito.verify(customerDao).updateCustomer(customerArgumentCaptor.capture(), Mockito.isNull());
         Customer capturedCustomer = customerArgumentCaptor.getValue();
 
         Assertions.assertThat(capturedCustomer.getName()).isEqualTo(newName);
-        Assertions.assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
-        Assertions.assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
-        Assertions.assertThat(capturedCustomer.getGender()).isEqualTo(customer.getGender());
+        Assertions.assertThat(capturedCustomer.getEmail()).isNull();
+        Assertions.assertThat(capturedCustomer.getAge()).isNull();
+        Assertions.assertThat(capturedCustomer.getGender()).isNull();
     }
 
     @Test
     void canUpdateOnlyCustomerEmail() {
         // Given
         int id = 10;
-        Customer customer = new Customer(id, "Alex", "alex@gmail.com", "password" , 19, Gender.MALE);
-        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
         String newEmail = "alexandro@groovanoscode.com";
-        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(null, newEmail, null, Gender.MALE);
-
-        Mockito.when(customerDao.existsPersonWithEmail(newEmail)).thenReturn(false);
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(null, newEmail, null, null);
+        Customer updated = new Customer(id, "Alex", newEmail, "password" , 19, Gender.MALE, 1L);
+        Mockito.when(customerDao.updateCustomer(Mockito.any(), Mockito.isNull())).thenReturn(Optional.of(updated));
 
         // When
-        underTest.updateCustomerById(id, updateRequest);
+        underTest.updateCustomerById(id, updateRequest, null);
 
         // Then
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
-        Mockito.verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        Mockito.verify(customerDao).updateCustomer(customerArgumentCaptor.capture(), Mockito.isNull());
         Customer capturedCustomer = customerArgumentCaptor.getValue();
 
-        Assertions.assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
+        Assertions.assertThat(capturedCustomer.getName()).isNull();
         Assertions.assertThat(capturedCustomer.getEmail()).isEqualTo(newEmail);
-        Assertions.assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
-        Assertions.assertThat(capturedCustomer.getGender()).isEqualTo(customer.getGender());
+        Assertions.assertThat(capturedCustomer.getAge()).isNull();
+        Assertions.assertThat(capturedCustomer.getGender()).isNull();
+        // The email check is part of the update statement
+        Mockito.verify(customerDao, Mockito.never()).existsPersonWithEmail(newEmail);
     }
 
     @Test
     void canUpdateOnlyCustomerAge() {
         // Given
         int id = 10;
-        Customer customer = new Customer(id, "Alex", "alex@gmail.com", "password" , 19, Gender.MALE);
-        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
-        int newAge = 29;
-
-        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(null, null, newAge, Gender.MALE);
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(null, null, 23, null);
+        Customer updated = new Customer(id, "Alex", "alex@gmail.com", "password" , 23, Gender.MALE, 1L);
+        Mockito.when(customerDao.updateCustomer(Mockito.any(), Mockito.isNull())).thenReturn(Optional.of(updated));
 
         // When
-        underTest.updateCustomerById(id, updateRequest);
+        underTest.updateCustomerById(id, updateRequest, null);
 
         // Then
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
-        Mockito.verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        Mockito.verify(customerDao).updateCustomer(customerArgumentCaptor.capture(), Mockito.isNull());
         Customer capturedCustomer = customerArgumentCaptor.getValue();
 
-        Assertions.assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
-        Assertions.assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
-        Assertions.assertThat(capturedCustomer.getAge()).isEqualTo(newAge);
-        Assertions.assertThat(capturedCustomer.getGender()).isEqualTo(customer.getGender());
+        Assertions.assertThat(capturedCustomer.getName()).isNull();
+        Assertions.assertThat(capturedCustomer.getEmail()).isNull();
+        Assertions.assertThat(capturedCustomer.getAge()).isEqualTo(23);
+        Assertions.assertThat(capturedCustomer.getGender()).isNull();
     }
 
     @Test
     void canUpdateOnlyCustomerGender() {
         // Given
         int id = 10;
-        Customer customer = new Customer(id, "Alex", "alex@gmail.com", "password" , 19, Gender.MALE);
-        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
-        Gender newGender = Gender.FEMALE;
-
-        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(null, null, null, newGender);
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(null, null, null, Gender.FEMALE);
+        Customer updated = new Customer(id, "Alex", "alex@gmail.com", "password" , 19, Gender.FEMALE, 1L);
+        Mockito.when(customerDao.updateCustomer(Mockito.any(), Mockito.isNull())).thenReturn(Optional.of(updated));
 
         // When
-        underTest.updateCustomerById(id, updateRequest);
+        underTest.updateCustomerById(id, updateRequest, null);
 
         // Then
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
-        Mockito.verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        Mockito.verify(customerDao).updateCustomer(customerArgumentCaptor.capture(), Mockito.isNull());
         Customer capturedCustomer = customerArgumentCaptor.getValue();
 
-        Assertions.assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
-        Assertions.assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
-        Assertions.assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
-        Assertions.assertThat(capturedCustomer.getGender()).isEqualTo(newGender);
+        Assertions.assertThat(capturedCustomer.getName()).isNull();
+        Assertions.assertThat(capturedCustomer.getEmail()).isNull();
+        Assertions.assertThat(capturedCustomer.getAge()).isNull();
+        Assertions.assertThat(capturedCustomer.getGender()).isEqualTo(Gender.FEMALE);
     }
 
     @Test
-    void willThrowWhenTryingToUpdateCustomerEmailWhenAlreadyTaken() {
+    void canUpdateCustomerWithTheExpectedVersion() {
         // Given
         int id = 10;
-        Customer customer = new Customer(id, "Alex", "alex@gmail.com", "password" , 19, Gender.MALE);
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(null, null, 23, null);
+        Customer updated = new Customer(id, "Alex", "alex@gmail.com", "password" , 23, Gender.MALE, 4L);
+        Mockito.when(customerDao.updateCustomer(Mockito.any(), Mockito.eq(3L))).thenReturn(Optional.of(updated));
+
+        // When
+        VersionedCustomer actual = underTest.updateCustomerById(id, updateRequest, 3L);
+
+        // Then
+        Assertions.assertThat(actual.version()).isEqualTo(4L);
+        Assertions.assertThat(actual.customer().age()).isEqualTo(23);
+    }
+
+    @Test
+    void willThrowWhenCustomerToUpdateDoesNotExist() {
+        // Given
+        int id = 10;
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Alexandro", null, null, null);
+        Mockito.when(customerDao.updateCustomer(Mockito.any(), Mockito.isNull())).thenReturn(Optional.empty());
+        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.empty());
+
+        // When
+        Assertions.assertThatThrownBy(() -> underTest.updateCustomerById(id, updateRequest, null))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with [%s] not found".formatted(id));
+    }
+
+    @Test
+    void willThrowWhenCustomerWasModifiedSinceTheExpectedVersion() {
+        // Given
+        int id = 10;
+        Customer customer = new Customer(id, "Alex", "alex@gmail.com", "password" , 19, Gender.MALE, 5L);
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Alexandro", null, null, null);
+        Mockito.when(customerDao.updateCustomer(Mockito.any(), Mockito.eq(4L))).thenReturn(Optional.empty());
         Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
 
+        // When
+        Assertions.assertThatThrownBy(() -> underTest.updateCustomerById(id, updateRequest, 4L))
+                .isInstanceOf(PreconditionFailedException.class);
+    }
+
+    @Test
+    void willThrowWhenTryingToUpdateCustomerEmailWhenAlreadyTaken() {
+        // Given
+        int id = 10;
+        Customer customer = new Customer(id, "Alex", "alex@gmail.com", "password" , 19, Gender.MALE, 0L);
         String newEmail = "alexandro@groovanoscode.com";
         CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(null, newEmail, null, null);
-
-        Mockito.when(customerDao.existsPersonWithEmail(newEmail)).thenReturn(true);
+        Mockito.when(customerDao.updateCustomer(Mockito.any(), Mockito.isNull())).thenReturn(Optional.empty());
+        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
 
         // When
-        Assertions.assertThatThrownBy(() -> underTest.updateCustomerById(id, updateRequest))
+        Assertions.assertThatThrownBy(() -> underTest.updateCustomerById(id, updateRequest, null))
                 .isInstanceOf(DuplicateResourceException.class)
                 .hasMessage("email already taken");
-
-        // Then
-        Mockito.verify(customerDao, Mockito.never()).updateCustomer(Mockito.any());
     }
 
     @Test
     void willThrowWhenCustomerUpdateHasNoChanges() {
         // Given
         int id = 10;
-        Customer customer = new Customer(id, "Alex", "alex@gmail.com", "password" , 19, Gender.MALE);
-
-        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
-        String newEmail = "alexandro@groovanoscode.com";
+        Customer customer = new Customer(id, "Alex", "alex@gmail.com", "password" , 19, Gender.MALE, 0L);
         CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(customer.getName(), customer.getEmail(), customer.getAge(), customer.getGender());
+        Mockito.when(customerDao.updateCustomer(Mockito.any(), Mockito.isNull())).thenReturn(Optional.empty());
+        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
 
         // When
-        Assertions.assertThatThrownBy(() -> underTest.updateCustomerById(id, updateRequest))
+        Assertions.assertThatThrownBy(() -> underTest.updateCustomerById(id, updateRequest, null))
                 .isInstanceOf(RequestValidationException.class)
                 .hasMessage("No data changes found");
-
-        // Then
-        Mockito.verify(customerDao, Mockito.never()).updateCustomer(Mockito.any());
     }
 
 
-}
\ No newline at end of file
+}
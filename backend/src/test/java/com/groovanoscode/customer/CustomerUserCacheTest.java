@@ -0,0 +1,43 @@
+package com.groovanoscode.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerUserCacheTest {
+
+    private final CustomerUserCache underTest = new CustomerUserCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(1));
+
+    private final Customer alex = new Customer(1, "Alex", "alex@gmail.com", "password" , 21, Gender.MALE, 0L);
+    private final Customer jamila = new Customer(2, "Jamila", "jamila@gmail.com", "password" , 19, Gender.FEMALE, 0L);
+
+    @Test
+    void getUserFromCacheIgnoresTheCaseOfTheEmail() {
+        // Given
+        underTest.putUserInCache(alex);
+
+        // When
+        var actual = underTest.getUserFromCache("Alex@Gmail.com");
+
+        // Then
+        assertThat(actual).isSameAs(alex);
+        assertThat(underTest.getUserFromCache("jamila@gmail.com")).isNull();
+    }
+
+    @Test
+    void removeCustomerFromCacheOnlyEvictsThatCustomer() {
+        // Given
+        underTest.putUserInCache(alex);
+        underTest.putUserInCache(jamila);
+
+        // When
+        underTest.removeCustomerFromCache(alex.getId());
+
+        // Then
+        assertThat(underTest.getUserFromCache(alex.getUsername())).isNull();
+        assertThat(underTest.getUserFromCache(jamila.getUsername())).isSameAs(jamila);
+    }
+}
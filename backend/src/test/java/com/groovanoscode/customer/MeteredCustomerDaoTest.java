@@ -0,0 +1,83 @@
+package com.groovanoscode.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ExtendWith(MockitoExtension.class)
+class MeteredCustomerDaoTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    private CustomerDao customerDao;
+
+    private MeteredCustomerDao underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new MeteredCustomerDao(customerDao, "jdbc", meterRegistry);
+    }
+
+    @Test
+    void selectCustomerByIdIsTaggedFoundOrNotFound() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", "password" , 21, Gender.MALE);
+        Mockito.when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(alex));
+        Mockito.when(customerDao.selectCustomerById(2)).thenReturn(Optional.empty());
+
+        // When
+        var found = underTest.selectCustomerById(1);
+        underTest.selectCustomerById(2);
+        underTest.selectCustomerById(2);
+
+        // Then
+        assertThat(found).contains(alex);
+        assertThat(count("selectCustomerById", "found")).isEqualTo(1);
+        assertThat(count("selectCustomerById", "not-found")).isEqualTo(2);
+    }
+
+    @Test
+    void insertCustomerIsTaggedDuplicateWhenTheEmailIsTaken() {
+        // Given
+        Customer alex = new Customer("Alex", "alex@gmail.com", "password" , 21, Gender.MALE);
+        Mockito.when(customerDao.insertCustomer(alex)).thenReturn(Optional.empty());
+
+        // When
+        underTest.insertCustomer(alex);
+
+        // Then
+        assertThat(count("insertCustomer", "duplicate")).isEqualTo(1);
+        assertThat(meterRegistry.find(MeteredCustomerDao.TIMER).tag("outcome", "success").timer()).isNull();
+    }
+
+    @Test
+    void exceptionsAreTimedAndRethrown() {
+        // Given
+        Mockito.when(customerDao.updateCustomerPassword(1, "hash")).thenThrow(new DuplicateKeyException("duplicate"));
+        Mockito.when(customerDao.existsCustomerWithId(1)).thenThrow(new IllegalStateException("boom"));
+
+        // When / Then
+        assertThatThrownBy(() -> underTest.updateCustomerPassword(1, "hash")).isInstanceOf(DuplicateKeyException.class);
+        assertThatThrownBy(() -> underTest.existsCustomerWithId(1)).isInstanceOf(IllegalStateException.class);
+        assertThat(count("updateCustomerPassword", "duplicate")).isEqualTo(1);
+        assertThat(count("existsCustomerWithId", "error")).isEqualTo(1);
+    }
+
+    private long count(String method, String outcome) {
+        return meterRegistry.get(MeteredCustomerDao.TIMER)
+                .tags("dao", "jdbc", "method", method, "outcome", outcome)
+                .timer()
+                .count();
+    }
+}
@@ -0,0 +1,188 @@
+package com.groovanoscode.customer;
+
+import com.groovanoscode.exception.DuplicateResourceException;
+import com.groovanoscode.exception.PreconditionFailedException;
+import com.groovanoscode.exception.RequestValidationException;
+import com.groovanoscode.exception.ResourceNotFoundException;
+import com.groovanoscode.jwt.JWTPrincipal;
+import com.groovanoscode.security.PasswordHashingExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveCustomerServiceTest {
+
+    private ReactiveCustomerService underTest;
+
+    @Mock
+    private ReactiveCustomerDao customerDao;
+    @Mock
+    PasswordEncoder passwordEncoder;
+    @Mock
+    CustomerUserCache customerUserCache;
+
+    private final CustomerDTOMapper customerDTOMapper = new CustomerDTOMapper();
+
+    private final PasswordHashingExecutor passwordHashingExecutor = new PasswordHashingExecutor(new SimpleMeterRegistry(), 1, 10);
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ReactiveCustomerService(customerDao , customerDTOMapper , passwordEncoder , passwordHashingExecutor ,
+                customerUserCache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwordHashingExecutor.destroy();
+    }
+
+    @Test
+    void getCustomersReturnsTheCursorOfTheNextPage() {
+        // Given
+        Mockito.when(customerDao.selectVersionedCustomersAfterId(0, 2)).thenReturn(Flux.just(
+                new VersionedCustomer(1, "Alex", "alex@gmail.com", Gender.MALE, 19, 0L),
+                new VersionedCustomer(2, "Jamila", "jamila@gmail.com", Gender.FEMALE, 21, 0L)
+        ));
+
+        // When
+        CustomerPage actual = underTest.getCustomers(null, 1).block();
+
+        // Then
+        assertThat(actual.customers()).extracting(CustomerDTO::id).containsExactly(1);
+        assertThat(actual.nextCursor()).isEqualTo(1);
+    }
+
+    @Test
+    void getCustomersRejectsALimitOutOfRange() {
+        assertThatThrownBy(() -> underTest.getCustomers(null, CustomerService.MAX_PAGE_SIZE + 1).block())
+                .isInstanceOf(RequestValidationException.class);
+        Mockito.verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void getVersionedCustomerFailsWhenTheCustomerDoesNotExist() {
+        // Given
+        Mockito.when(customerDao.selectVersionedCustomerById(10)).thenReturn(Mono.empty());
+
+        // When / Then
+        assertThatThrownBy(() -> underTest.getVersionedCustomer(10).block())
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("Customer with id [10] not found");
+    }
+
+    @Test
+    void getAuthenticatedCustomerLoadsAJWTPrincipalById() {
+        // Given
+        var principal = new JWTPrincipal("alex@gmail.com", 1, List.of("ROLE_USER"));
+        var authentication = new UsernamePasswordAuthenticationToken(principal, null, List.of());
+        Mockito.when(customerDao.selectVersionedCustomerById(1)).thenReturn(Mono.just(
+                new VersionedCustomer(1, "Alex", "alex@gmail.com", Gender.MALE, 19, 0L)));
+
+        // When
+        CustomerDTO actual = underTest.getAuthenticatedCustomer(authentication).block();
+
+        // Then
+        assertThat(actual.email()).isEqualTo("alex@gmail.com");
+        Mockito.verify(customerDao, Mockito.never()).selectUserByEmail(Mockito.any());
+    }
+
+    @Test
+    void addCustomerStoresTheHashedPassword() {
+        // Given
+        var request = new CustomerRegistrationRequest("Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+        Mockito.when(passwordEncoder.encode("password")).thenReturn("hash");
+        Mockito.when(customerDao.insertCustomer(Mockito.any())).thenReturn(Mono.just(7));
+
+        // When
+        Integer actual = underTest.addCustomer(request).block();
+
+        // Then
+        assertThat(actual).isEqualTo(7);
+        ArgumentCaptor<Customer> captor = ArgumentCaptor.forClass(Customer.class);
+        Mockito.verify(customerDao).insertCustomer(captor.capture());
+        assertThat(captor.getValue().getPassword()).isEqualTo("hash");
+        assertThat(captor.getValue().getEmail()).isEqualTo("alex@gmail.com");
+    }
+
+    @Test
+    void addCustomerFailsWhenTheEmailIsTaken() {
+        // Given
+        var request = new CustomerRegistrationRequest("Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+        Mockito.when(passwordEncoder.encode("password")).thenReturn("hash");
+        Mockito.when(customerDao.insertCustomer(Mockito.any())).thenReturn(Mono.empty());
+
+        // When / Then
+        assertThatThrownBy(() -> underTest.addCustomer(request).block())
+                .isInstanceOf(DuplicateResourceException.class)
+                .hasMessage("email already taken");
+    }
+
+    @Test
+    void deleteCustomerEvictsTheCustomerFromTheCache() {
+        // Given
+        Mockito.when(customerDao.deleteCustomerById(10)).thenReturn(Mono.just(true));
+
+        // When
+        underTest.deleteCustomer(10).block();
+
+        // Then
+        Mockito.verify(customerUserCache).removeCustomerFromCache(10);
+    }
+
+    @Test
+    void deleteCustomerFailsWhenTheCustomerDoesNotExist() {
+        // Given
+        Mockito.when(customerDao.deleteCustomerById(10)).thenReturn(Mono.just(false));
+
+        // When / Then
+        assertThatThrownBy(() -> underTest.deleteCustomer(10).block())
+                .isInstanceOf(ResourceNotFoundException.class);
+        Mockito.verifyNoInteractions(customerUserCache);
+    }
+
+    @Test
+    void updateCustomerFailsWhenTheVersionIsStale() {
+        // Given
+        var request = new CustomerUpdateRequest("Alexandro", null, null, null);
+        Mockito.when(customerDao.updateCustomer(Mockito.any(), Mockito.eq(0L))).thenReturn(Mono.empty());
+        Mockito.when(customerDao.selectVersionedCustomerById(10)).thenReturn(Mono.just(
+                new VersionedCustomer(10, "Alex", "alex@gmail.com", Gender.MALE, 19, 1L)));
+
+        // When / Then
+        assertThatThrownBy(() -> underTest.updateCustomerById(10, request, 0L).block())
+                .isInstanceOf(PreconditionFailedException.class);
+        Mockito.verifyNoInteractions(customerUserCache);
+    }
+
+    @Test
+    void updateCustomerReturnsTheNewVersion() {
+        // Given
+        var request = new CustomerUpdateRequest("Alexandro", null, null, null);
+        Mockito.when(customerDao.updateCustomer(Mockito.any(), Mockito.eq(0L))).thenReturn(Mono.just(
+                new Customer(10, "Alexandro", "alex@gmail.com", "password" , 19, Gender.MALE, 1L)));
+
+        // When
+        VersionedCustomer actual = underTest.updateCustomerById(10, request, 0L).block();
+
+        // Then
+        assertThat(actual.version()).isEqualTo(1L);
+        assertThat(actual.customer().name()).isEqualTo("Alexandro");
+        Mockito.verify(customerUserCache).removeCustomerFromCache(10);
+    }
+}
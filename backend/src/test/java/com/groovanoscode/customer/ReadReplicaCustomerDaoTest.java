@@ -0,0 +1,82 @@
+package com.groovanoscode.customer;
+
+import com.groovanoscode.replica.ReadReplicas;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ExtendWith(MockitoExtension.class)
+class ReadReplicaCustomerDaoTest {
+
+    @Mock
+    private CustomerDao customerDao;
+    @Mock
+    private ReadReplicas readReplicas;
+
+    private ReadReplicaCustomerDao underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ReadReplicaCustomerDao(customerDao, readReplicas);
+    }
+
+    @Test
+    void readsGoToTheReplicasKeyedByIdOrEmail() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", "password" , 21, Gender.MALE);
+        Mockito.when(readReplicas.read(ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        Mockito.when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(alex));
+        Mockito.when(customerDao.selectUserByEmail(" Alex@Gmail.com")).thenReturn(Optional.of(alex));
+
+        // When
+        var byId = underTest.selectCustomerById(1);
+        var byEmail = underTest.selectUserByEmail(" Alex@Gmail.com");
+        underTest.selectCustomersAfterId(0, 10);
+        underTest.selectVersionedCustomersAfterId(0, 10);
+        underTest.selectVersionedCustomersAfterIdUnlessDigest(0, 10, List.of("digest"));
+        underTest.selectCustomerDTOById(2);
+
+        // Then
+        assertThat(byId).contains(alex);
+        assertThat(byEmail).contains(alex);
+        Mockito.verify(readReplicas).read(ArgumentMatchers.eq(1), ArgumentMatchers.any());
+        Mockito.verify(readReplicas).read(ArgumentMatchers.eq("alex@gmail.com"), ArgumentMatchers.any());
+        Mockito.verify(readReplicas, Mockito.times(3)).read(ArgumentMatchers.isNull(), ArgumentMatchers.any());
+        Mockito.verify(readReplicas).read(ArgumentMatchers.eq(2), ArgumentMatchers.any());
+    }
+
+    @Test
+    void writesAreStickyEvenWhenTheyFail() {
+        // Given
+        Customer update = new Customer(1, null, "New@gmail.com", null, null, null);
+        Customer alex = new Customer("Alex", "Alex@gmail.com", "password" , 21, Gender.MALE);
+        Mockito.when(customerDao.updateCustomer(update, 3L)).thenThrow(new DuplicateKeyException("duplicate"));
+        Mockito.when(customerDao.insertCustomer(alex)).thenReturn(Optional.of(4));
+
+        // When
+        assertThatThrownBy(() -> underTest.updateCustomer(update, 3L)).isInstanceOf(DuplicateKeyException.class);
+        underTest.deleteCustomerById(2);
+        underTest.insertCustomer(alex);
+
+        // Then
+        Mockito.verify(readReplicas).written(1);
+        Mockito.verify(readReplicas).written("new@gmail.com");
+        Mockito.verify(readReplicas).written(2);
+        Mockito.verify(readReplicas).written("alex@gmail.com");
+        Mockito.verify(readReplicas).written(4);
+        Mockito.verifyNoMoreInteractions(readReplicas);
+    }
+}
@@ -0,0 +1,70 @@
+package com.groovanoscode.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ExtendWith(MockitoExtension.class)
+class SecondLevelCacheEvictingCustomerDaoTest {
+
+    @Mock
+    private CustomerDao customerDao;
+    @Mock
+    private CustomerSecondLevelCache secondLevelCache;
+
+    private SecondLevelCacheEvictingCustomerDao underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new SecondLevelCacheEvictingCustomerDao(customerDao, secondLevelCache);
+    }
+
+    @Test
+    void writesEvictTheCustomerEvenWhenTheyFail() {
+        // Given
+        Customer update = new Customer(1, null, "new@gmail.com", null, null, null);
+        Mockito.when(customerDao.updateCustomer(update, 3L)).thenThrow(new DuplicateKeyException("duplicate"));
+
+        // When
+        assertThatThrownBy(() -> underTest.updateCustomer(update, 3L)).isInstanceOf(DuplicateKeyException.class);
+        underTest.updateCustomerPassword(2, "hash");
+
+        // Then
+        Mockito.verify(secondLevelCache).evict(1);
+        Mockito.verify(secondLevelCache).evict(2);
+    }
+
+    @Test
+    void deleteEvictsTheCustomerOnly() {
+        // When
+        underTest.deleteCustomerById(1);
+
+        // Then: the other customers stay cached
+        Mockito.verify(secondLevelCache).evict(1);
+        Mockito.verifyNoMoreInteractions(secondLevelCache);
+    }
+
+    @Test
+    void insertsAndReadsEvictNothing() {
+        // Given
+        Customer alex = new Customer("Alex", "alex@gmail.com", "password" , 21, Gender.MALE);
+        Mockito.when(customerDao.insertCustomer(alex)).thenReturn(Optional.of(1));
+
+        // When
+        underTest.insertCustomer(alex);
+        underTest.insertCustomers(List.of(alex));
+        underTest.selectUserByEmail("alex@gmail.com");
+
+        // Then
+        Mockito.verifyNoInteractions(secondLevelCache);
+    }
+}
@@ -0,0 +1,108 @@
+package com.groovanoscode.journey;
+
+import com.groovanoscode.auth.AuthenticationRequest;
+import com.groovanoscode.customer.CustomerRegistrationRequest;
+import com.groovanoscode.customer.Gender;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+// The probes and Prometheus are open, the other endpoints (slowqueries has the SQL text) are for the admins
+// The tests turn the metrics exporters off by default, Prometheus is one of the open endpoints
+@AutoConfigureObservability(tracing = false)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "admin.emails=" + ActuatorIT.ADMIN_EMAIL)
+public class ActuatorIT {
+
+    static final String ADMIN_EMAIL = "actuator-admin@groovanoscode.com";
+
+    private  static  final String CUSTOMER_PATH = "api/v1/customers";
+    private  static  final String AUTHENTICATION_PATH = "api/v1/auth";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @LocalManagementPort
+    private int managementPort;
+
+    private WebTestClient management;
+
+    @BeforeEach
+    void setUp() {
+        management = WebTestClient.bindToServer()
+                .baseUrl("http://localhost:" + managementPort)
+                .build();
+    }
+
+    @Test
+    void probesAndPrometheusAreOpen() {
+        management.get().uri("/actuator/health/liveness").exchange().expectStatus().isOk();
+        management.get().uri("/actuator/info").exchange().expectStatus().isOk();
+        management.get().uri("/actuator/prometheus").exchange().expectStatus().isOk();
+    }
+
+    @Test
+    void slowQueriesAndBatchJobsAreForTheAdmins() {
+        String customerToken = register("actuator_" + UUID.randomUUID() + "@groovanoscode.com");
+        register(ADMIN_EMAIL);
+        String adminToken = login(ADMIN_EMAIL);
+
+        for (String endpoint : new String[]{"/actuator/slowqueries", "/actuator/batchjobs"}) {
+            // Anonymous, like the rest of the API: 403
+            management.get().uri(endpoint)
+                    .exchange()
+                    .expectStatus()
+                    .isForbidden();
+
+            management.get().uri(endpoint)
+                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + customerToken)
+                    .exchange()
+                    .expectStatus()
+                    .isForbidden();
+
+            management.get().uri(endpoint)
+                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminToken)
+                    .exchange()
+                    .expectStatus()
+                    .isOk();
+        }
+    }
+
+    // The admin is registered by the first run, the next runs get a 409 and log in
+    private String register(String email) {
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                "Actuator", email, "password", 30, Gender.FEMALE
+        );
+
+        return webTestClient.post()
+                .uri(CUSTOMER_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .returnResult(Void.class)
+                .getResponseHeaders()
+                .getFirst(HttpHeaders.AUTHORIZATION);
+    }
+
+    private String login(String email) {
+        return webTestClient.post()
+                .uri(AUTHENTICATION_PATH + "/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new AuthenticationRequest(email, "password")), AuthenticationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Void.class)
+                .getResponseHeaders()
+                .getFirst(HttpHeaders.AUTHORIZATION);
+    }
+}
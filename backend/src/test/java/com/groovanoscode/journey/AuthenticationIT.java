@@ -46,7 +46,7 @@ public class AuthenticationIT {
         Faker faker = new Faker();
         Name fakerName = faker.name();
         String name = fakerName.fullName();
-        String email = fakerName.lastName() + "_" + UUID.randomUUID() + "@groovanoscode.com";
+        String email = (fakerName.lastName() + "_" + UUID.randomUUID() + "@groovanoscode.com").toLowerCase();
         int age = RANDOM.nextInt(1, 100);
 
         Gender gender = age % 2 == 0 ? Gender.MALE : Gender.FEMALE;
@@ -2,13 +2,19 @@ package com.groovanoscode.journey;
 
 import com.github.javafaker.Faker;
 import com.github.javafaker.Name;
+import com.groovanoscode.auth.AuthenticationRequest;
 import com.groovanoscode.customer.*;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
 
@@ -19,11 +25,15 @@ import java.util.UUID;
 import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(SqlStatementBudget.class)
 public class CustomerIntegrationTest {
 
     @Autowired
     private WebTestClient webTestClient; // the webTestClient is going to be our Postman and we will use it to send request to our server
 
+    @Autowired
+    private SqlStatementBudget sqlStatementBudget;
+
     private static final Random RANDOM = new Random();
     private  static  final String CUSTOMER_PATH = "api/v1/customers";
     @Test
@@ -32,7 +42,7 @@ public class CustomerIntegrationTest {
         Faker faker = new Faker();
         Name fakerName = faker.name();
         String name = fakerName.fullName();
-        String email = fakerName.lastName() + "_" + UUID.randomUUID() + "@groovanoscode.com";
+        String email = (fakerName.lastName() + "_" + UUID.randomUUID() + "@groovanoscode.com").toLowerCase();
         int age = RANDOM.nextInt(1, 100);
 
         Gender gender = age % 2 == 0 ? Gender.MALE : Gender.FEMALE;
@@ -99,12 +109,12 @@ public class CustomerIntegrationTest {
     }
 
     @Test
-    void canDeleteCustomer() {
+    void canDeleteCustomer() throws InterruptedException {
         // create a registration request
         Faker faker = new Faker();
         Name fakerName = faker.name();
         String name = fakerName.fullName();
-        String email = fakerName.lastName() + "_" + UUID.randomUUID() + "@groovanoscode.com";
+        String email = (fakerName.lastName() + "_" + UUID.randomUUID() + "@groovanoscode.com").toLowerCase();
         int age = RANDOM.nextInt(1, 100);
 
         Gender gender = age % 2 == 0 ? Gender.MALE : Gender.FEMALE;
@@ -166,6 +176,7 @@ public class CustomerIntegrationTest {
 
 
         // customer2 deletes customer1 by id
+        sqlStatementBudget.reset();
         webTestClient.delete()
                 .uri(CUSTOMER_PATH + "/{id}" , id)
                 .accept(MediaType.APPLICATION_JSON)
@@ -173,6 +184,8 @@ public class CustomerIntegrationTest {
                 .exchange()
                 .expectStatus()
                 .isOk();
+        // loading the authenticated customer + the delete
+        sqlStatementBudget.assertAtMost(2, HttpMethod.DELETE, "/api/v1/customers/{customer_id}");
 
         //customer2 gets customer1 by id
         webTestClient.get()
@@ -185,12 +198,72 @@ public class CustomerIntegrationTest {
     }
 
     @Test
-    void canUpdateCustomer() {
+    void canRegisterCustomersInBatch() {
+        // register a customer to get a token
+        Faker faker = new Faker();
+        String email = (faker.name().lastName() + "_" + UUID.randomUUID() + "@groovanoscode.com").toLowerCase();
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                faker.name().fullName(), email, "password" , 30, Gender.MALE
+        );
+
+        String jwtToken = webTestClient.post()
+                .uri(CUSTOMER_PATH)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Void.class)
+                .getResponseHeaders()
+                .get(HttpHeaders.AUTHORIZATION)
+                .get(0);
+
+        // the batch has a new customer, the already registered one and an invalid one
+        String newEmail = (faker.name().lastName() + "_" + UUID.randomUUID() + "@groovanoscode.com").toLowerCase();
+        List<CustomerRegistrationRequest> batch = List.of(
+                new CustomerRegistrationRequest(faker.name().fullName(), newEmail, "password" , 40, Gender.FEMALE),
+                request,
+                new CustomerRegistrationRequest(null, "nobody@groovanoscode.com", "password" , 40, Gender.FEMALE)
+        );
+
+        List<CustomerBatchResult> results = webTestClient.post()
+                .uri(CUSTOMER_PATH + "/batch")
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, String.format("Bearer %s", jwtToken))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(batch)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(CustomerBatchResult.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(results).extracting(CustomerBatchResult::status).containsExactly(
+                CustomerBatchResult.Status.CREATED,
+                CustomerBatchResult.Status.DUPLICATE,
+                CustomerBatchResult.Status.INVALID
+        );
+
+        // the new customer can log in with its password
+        webTestClient.post()
+                .uri("/api/v1/auth/login")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new AuthenticationRequest(newEmail, "password"))
+                .exchange()
+                .expectStatus()
+                .isOk();
+    }
+
+    @Test
+    void canUpdateCustomer() throws InterruptedException {
         // create a registration request
         Faker faker = new Faker();
         Name fakerName = faker.name();
         String name = fakerName.fullName();
-        String email = fakerName.lastName() + "_" + UUID.randomUUID() + "@groovanoscode.com";
+        String email = (fakerName.lastName() + "_" + UUID.randomUUID() + "@groovanoscode.com").toLowerCase();
         int age = RANDOM.nextInt(1, 100);
 
         Gender gender = age % 2 == 0 ? Gender.MALE : Gender.FEMALE;
@@ -200,6 +273,7 @@ public class CustomerIntegrationTest {
         );
 
         // send a post request to our API
+        sqlStatementBudget.reset();
         String jwtToken = webTestClient.post()
                 .uri(CUSTOMER_PATH)
                 .accept(MediaType.APPLICATION_JSON)
@@ -212,6 +286,8 @@ public class CustomerIntegrationTest {
                 .getResponseHeaders()
                 .get(HttpHeaders.AUTHORIZATION)
                 .get(0);
+        // the registration is a single insert
+        sqlStatementBudget.assertAtMost(1, HttpMethod.POST, "/api/v1/customers");
 
         // get all customer
         List<CustomerDTO> allCustomers = webTestClient.get()
@@ -249,9 +325,11 @@ public class CustomerIntegrationTest {
                 .exchange()
                 .expectStatus()
                 .isOk();
+        // loading the authenticated customer + the update
+        sqlStatementBudget.assertAtMost(2, HttpMethod.PUT, "/api/v1/customers/{customer_id}");
 
         // get customer by id
-        CustomerDTO updatedCustomer = webTestClient.get()
+        EntityExchangeResult<CustomerDTO> result = webTestClient.get()
                 .uri(CUSTOMER_PATH + "/{id}" , id)
                 .accept(MediaType.APPLICATION_JSON)
                 .header(HttpHeaders.AUTHORIZATION, String.format("Bearer %s", jwtToken))
@@ -259,12 +337,160 @@ public class CustomerIntegrationTest {
                 .expectStatus()
                 .isOk()
                 .expectBody(CustomerDTO.class)
-                .returnResult()
-                .getResponseBody();
+                .returnResult();
+        sqlStatementBudget.assertAtMost(2, HttpMethod.GET, "/api/v1/customers/{customerId}");
+        CustomerDTO updatedCustomer = result.getResponseBody();
 
         CustomerDTO expectedCustomer = new CustomerDTO(
                 id, newName, email, gender, age, List.of("ROLE_USER"), email
         );
         assertThat(updatedCustomer).isEqualTo(expectedCustomer);
+
+        // update with the ETag of the customer we just read
+        String eTag = result.getResponseHeaders().getETag();
+        assertThat(eTag).isNotNull();
+
+        // the customer did not change since, we get a 304 without the customer
+        webTestClient.get()
+                .uri(CUSTOMER_PATH + "/{id}" , id)
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, String.format("Bearer %s", jwtToken))
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, eTag)
+                .expectBody()
+                .isEmpty();
+
+        webTestClient.put()
+                .uri(CUSTOMER_PATH + "/{id}" , id)
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, String.format("Bearer %s", jwtToken))
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerUpdateRequest("Alina", null, null, null)), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // the same ETag is stale now, so the second update must not overwrite the first one
+        webTestClient.put()
+                .uri(CUSTOMER_PATH + "/{id}" , id)
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, String.format("Bearer %s", jwtToken))
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerUpdateRequest("Aline", null, null, null)), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        // and it no longer matches on a read either
+        webTestClient.get()
+                .uri(CUSTOMER_PATH + "/{id}" , id)
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, String.format("Bearer %s", jwtToken))
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerDTO.class)
+                .value(customer -> assertThat(customer.name()).isEqualTo("Alina"));
+    }
+
+    @Test
+    void canPollCustomersWithETags() throws InterruptedException {
+        // register a customer
+        String email = (new Faker().name().lastName() + "_" + UUID.randomUUID() + "@groovanoscode.com").toLowerCase();
+        String jwtToken = webTestClient.post()
+                .uri(CUSTOMER_PATH)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest("Alex", email, "password" , 30, Gender.MALE)), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Void.class)
+                .getResponseHeaders()
+                .get(HttpHeaders.AUTHORIZATION)
+                .get(0);
+
+        int id = webTestClient.get()
+                .uri(CUSTOMER_PATH + "/me")
+                .header(HttpHeaders.AUTHORIZATION, String.format("Bearer %s", jwtToken))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerDTO.class)
+                .returnResult()
+                .getResponseBody()
+                .id();
+
+        // the page starting with our customer
+        String eTag = webTestClient.get()
+                .uri(CUSTOMER_PATH + "?after={after}&limit=1", id - 1)
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, String.format("Bearer %s", jwtToken))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader().cacheControl(CacheControl.noCache().cachePrivate())
+                .returnResult(Void.class)
+                .getResponseHeaders()
+                .getETag();
+        assertThat(eTag).isNotNull();
+
+        // polling the unchanged page: a 304, and no customer read
+        sqlStatementBudget.reset();
+        webTestClient.get()
+                .uri(CUSTOMER_PATH + "?after={after}&limit=1", id - 1)
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, String.format("Bearer %s", jwtToken))
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, eTag)
+                .expectBody()
+                .isEmpty();
+        // loading the authenticated customer + the digest of the page, in one query with the page
+        sqlStatementBudget.assertAtMost(2, HttpMethod.GET, "/api/v1/customers");
+
+        // once the customer changed, the page comes with a new ETag
+        webTestClient.put()
+                .uri(CUSTOMER_PATH + "/{id}" , id)
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, String.format("Bearer %s", jwtToken))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerUpdateRequest("Ali", null, null, null)), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // the changed page costs no more than the unchanged one: the digest and the customers come together
+        sqlStatementBudget.reset();
+        EntityExchangeResult<List<CustomerDTO>> result = webTestClient.get()
+                .uri(CUSTOMER_PATH + "?after={after}&limit=1", id - 1)
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, String.format("Bearer %s", jwtToken))
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(CustomerDTO.class)
+                .returnResult();
+        assertThat(result.getResponseBody()).extracting(CustomerDTO::name).containsExactly("Ali");
+        assertThat(result.getResponseHeaders().getETag()).isNotNull().isNotEqualTo(eTag);
+        sqlStatementBudget.assertAtMost(2, HttpMethod.GET, "/api/v1/customers");
+
+        // a cursor that is not a number is a bad request, not a server error
+        webTestClient.get()
+                .uri(CUSTOMER_PATH + "?after=first&limit=1")
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, String.format("Bearer %s", jwtToken))
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
     }
 }
@@ -0,0 +1,8 @@
+package com.groovanoscode.journey;
+
+import org.springframework.test.context.ActiveProfiles;
+
+// The same checks against the WebFlux stack
+@ActiveProfiles("reactive")
+public class ReactiveActuatorIT extends ActuatorIT {
+}
@@ -0,0 +1,217 @@
+package com.groovanoscode.journey;
+
+import com.github.javafaker.Faker;
+import com.github.javafaker.Name;
+import com.groovanoscode.auth.AuthenticationRequest;
+import com.groovanoscode.auth.AuthenticationResponse;
+import com.groovanoscode.customer.CustomerDTO;
+import com.groovanoscode.customer.CustomerRegistrationRequest;
+import com.groovanoscode.customer.CustomerUpdateRequest;
+import com.groovanoscode.customer.Gender;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The customer journey against the WebFlux + R2DBC stack
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("reactive")
+public class ReactiveCustomerIT {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    private static final Random RANDOM = new Random();
+    private  static  final String CUSTOMER_PATH = "api/v1/customers";
+    private  static  final String AUTHENTICATION_PATH = "api/v1/auth";
+
+    @Test
+    void canRegisterUpdateAndDeleteCustomer(){
+        // create a registration request
+        Faker faker = new Faker();
+        Name fakerName = faker.name();
+        String name = fakerName.fullName();
+        String email = (fakerName.lastName() + "_" + UUID.randomUUID() + "@groovanoscode.com").toLowerCase();
+        int age = RANDOM.nextInt(1, 100);
+        Gender gender = age % 2 == 0 ? Gender.MALE : Gender.FEMALE;
+
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                name, email, "password" , age, gender
+        );
+
+        String jwtToken = webTestClient.post()
+                .uri(CUSTOMER_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Void.class)
+                .getResponseHeaders()
+                .getFirst(HttpHeaders.AUTHORIZATION);
+
+        // registering the same email again is a conflict
+        webTestClient.post()
+                .uri(CUSTOMER_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(409);
+
+        // without a token
+        webTestClient.get()
+                .uri(CUSTOMER_PATH)
+                .exchange()
+                .expectStatus()
+                .isForbidden();
+
+        CustomerDTO me = webTestClient.get()
+                .uri(CUSTOMER_PATH + "/me")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerDTO.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(me.email()).isEqualTo(email);
+        assertThat(me.name()).isEqualTo(name);
+
+        // login
+        webTestClient.post()
+                .uri(AUTHENTICATION_PATH + "/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new AuthenticationRequest(email, "wrong password")), AuthenticationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isUnauthorized();
+
+        AuthenticationResponse login = webTestClient.post()
+                .uri(AUTHENTICATION_PATH + "/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new AuthenticationRequest(email, "password")), AuthenticationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .exists(HttpHeaders.AUTHORIZATION)
+                .expectBody(AuthenticationResponse.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(login.customerDTO().id()).isEqualTo(me.id());
+
+        // update with the ETag of the customer
+        webTestClient.get()
+                .uri(CUSTOMER_PATH + "/{id}", me.id())
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"0\"");
+
+        CustomerUpdateRequest update = new CustomerUpdateRequest(name + " Jr", null, null, null);
+
+        webTestClient.put()
+                .uri(CUSTOMER_PATH + "/{id}", me.id())
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(update), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"1\"")
+                .expectBody(CustomerDTO.class)
+                .value(updated -> assertThat(updated.name()).isEqualTo(name + " Jr"));
+
+        // the same version again is stale
+        webTestClient.put()
+                .uri(CUSTOMER_PATH + "/{id}", me.id())
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(update), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(412);
+
+        // delete
+        webTestClient.delete()
+                .uri(CUSTOMER_PATH + "/{id}", me.id())
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        webTestClient.post()
+                .uri(AUTHENTICATION_PATH + "/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new AuthenticationRequest(email, "password")), AuthenticationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isUnauthorized();
+    }
+
+    @Test
+    void canPageThroughCustomers(){
+        String jwtToken = webTestClient.post()
+                .uri(CUSTOMER_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest(
+                        "Paging", "paging_" + UUID.randomUUID() + "@groovanoscode.com", "password", 30, Gender.FEMALE)),
+                        CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Void.class)
+                .getResponseHeaders()
+                .getFirst(HttpHeaders.AUTHORIZATION);
+
+        webTestClient.get()
+                .uri(CUSTOMER_PATH + "?limit=1")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .exists("X-Next-Cursor")
+                .expectBodyList(CustomerDTO.class)
+                .hasSize(1);
+
+        webTestClient.get()
+                .uri(CUSTOMER_PATH + "?limit=0")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+
+        // not a number, a 400 like on the servlet stack
+        webTestClient.get()
+                .uri(CUSTOMER_PATH + "?limit=ten")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+
+        webTestClient.get()
+                .uri(CUSTOMER_PATH + "?after=first")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+}
@@ -0,0 +1,55 @@
+package com.groovanoscode.journey;
+
+import com.groovanoscode.sql.SqlStatementsEvent;
+import org.springframework.boot.test.context.TestComponent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpMethod;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fails a journey test when an endpoint runs more SQL statements than its budget.
+ * Import it into the test ({@code @Import(SqlStatementBudget.class)}), {@link #reset()} it and
+ * then call {@link #assertAtMost} after each request to check.
+ */
+@TestComponent
+public class SqlStatementBudget {
+
+    // The server counts a request once its response is sent, so the client may see the response first
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final BlockingQueue<SqlStatementsEvent> requests = new LinkedBlockingQueue<>();
+
+    @EventListener
+    void onRequest(SqlStatementsEvent event) {
+        requests.add(event);
+    }
+
+    public void reset() {
+        requests.clear();
+    }
+
+    /**
+     * Checks the next request to {@code uri} (the mapping pattern, e.g. /api/v1/customers/{customerId}),
+     * the requests to other endpoints before it are skipped.
+     */
+    public void assertAtMost(int maxStatements, HttpMethod method, String uri) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        SqlStatementsEvent request;
+        do {
+            request = requests.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } while (request != null && !(request.method().equals(method.name()) && request.uri().equals(uri)));
+
+        assertThat(request)
+                .as("no %s %s request was recorded", method, uri)
+                .isNotNull();
+        assertThat(request.statements())
+                .as("SQL statements of %s %s", method, uri)
+                .isLessThanOrEqualTo(maxStatements);
+    }
+}
@@ -0,0 +1,95 @@
+package com.groovanoscode.jwt;
+
+import com.groovanoscode.customer.Customer;
+import com.groovanoscode.customer.CustomerUserCache;
+import com.groovanoscode.customer.CustomerUserDetailsService;
+import com.groovanoscode.customer.Gender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MockitoExtension.class)
+class JWTAuthenticationFilterTest {
+
+    private final JWTUtil jwtUtil = new JWTUtil(new SimpleMeterRegistry());
+
+    @Mock
+    private CustomerUserDetailsService userDetailsService;
+    @Mock
+    private CustomerUserCache userCache;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void statelessModeAuthenticatesFromTheClaimsAlone() throws Exception {
+        // Given
+        var underTest = new JWTAuthenticationFilter(jwtUtil, userDetailsService, userCache, true);
+        String token = jwtUtil.issueToken("alex@gmail.com", 42, List.of("ROLE_USER"));
+
+        // When
+        underTest.doFilter(request(token), new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertThat(authentication.getName()).isEqualTo("alex@gmail.com");
+        assertThat(authentication.getPrincipal())
+                .isEqualTo(new JWTPrincipal("alex@gmail.com", 42, List.of("ROLE_USER")));
+        assertThat(authentication.getAuthorities())
+                .extracting(GrantedAuthority::getAuthority)
+                .containsExactly("ROLE_USER");
+        Mockito.verifyNoInteractions(userDetailsService, userCache);
+    }
+
+    @Test
+    void statefulModeLoadsTheCustomer() throws Exception {
+        // Given
+        var underTest = new JWTAuthenticationFilter(jwtUtil, userDetailsService, userCache, false);
+        String token = jwtUtil.issueToken("alex@gmail.com", 42, List.of("ROLE_USER"));
+        Customer alex = new Customer(42, "Alex", "alex@gmail.com", "password", 21, Gender.MALE);
+        Mockito.when(userDetailsService.loadUserByUsername("alex@gmail.com")).thenReturn(alex);
+
+        // When
+        underTest.doFilter(request(token), new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).isSameAs(alex);
+        Mockito.verify(userCache).putUserInCache(alex);
+    }
+
+    @Test
+    void anInvalidTokenLeavesTheRequestUnauthenticated() throws Exception {
+        // Given
+        var underTest = new JWTAuthenticationFilter(jwtUtil, userDetailsService, userCache, true);
+        MockFilterChain filterChain = new MockFilterChain();
+
+        // When
+        underTest.doFilter(request("not a token"), new MockHttpServletResponse(), filterChain);
+
+        // Then
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        assertThat(filterChain.getRequest()).isNotNull();
+    }
+
+    private static MockHttpServletRequest request(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/customers/42");
+        request.addHeader("Authorization", "Bearer " + token);
+        return request;
+    }
+}
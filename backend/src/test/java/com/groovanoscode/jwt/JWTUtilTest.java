@@ -0,0 +1,111 @@
+package com.groovanoscode.jwt;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JWTUtilTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final JWTUtil underTest = new JWTUtil(meterRegistry);
+
+    @Test
+    void verifyReturnsTheClaimsOfTheToken() {
+        // Given
+        String token = underTest.issueToken("alex@gmail.com", "ROLE_USER");
+
+        // When
+        var actual = underTest.verify(token);
+
+        // Then
+        assertThat(actual).hasValueSatisfying(verified -> {
+            assertThat(verified.subject()).isEqualTo("alex@gmail.com");
+            assertThat(verified.scopes()).containsExactly("ROLE_USER");
+            assertThat(verified.expiresAt()).isBetween(
+                    Instant.now().plus(14, ChronoUnit.DAYS),
+                    Instant.now().plus(15, ChronoUnit.DAYS));
+        });
+    }
+
+    @Test
+    void verifyReturnsTheCustomerIdClaim() {
+        // Given
+        String token = underTest.issueToken("alex@gmail.com", 42, List.of("ROLE_USER"));
+
+        // When
+        var actual = underTest.verify(token);
+
+        // Then
+        assertThat(actual).hasValueSatisfying(verified -> {
+            assertThat(verified.customerId()).isEqualTo(42);
+            assertThat(verified.scopes()).containsExactly("ROLE_USER");
+        });
+        assertThat(underTest.verify(underTest.issueToken("alex@gmail.com", "ROLE_USER")))
+                .hasValueSatisfying(verified -> assertThat(verified.customerId()).isNull());
+    }
+
+    @Test
+    void verifyParsesATokenOnlyOnce() {
+        // Given
+        String token = underTest.issueToken("alex@gmail.com", "ROLE_USER");
+
+        // When
+        var first = underTest.verify(token);
+        var second = underTest.verify(token);
+
+        // Then
+        assertThat(second).isEqualTo(first);
+        assertThat(meterRegistry.get("cache.gets").tags("cache", "jwt.verified.tokens", "result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void verifyRejectsATamperedToken() {
+        // Given
+        String token = underTest.issueToken("alex@gmail.com", "ROLE_USER");
+        String otherToken = underTest.issueToken("jamila@gmail.com", "ROLE_USER");
+        // The payload of one token with the signature of the other
+        String[] parts = token.split("\\.");
+        String[] otherParts = otherToken.split("\\.");
+        String tampered = parts[0] + "." + otherParts[1] + "." + parts[2];
+
+        // When
+        var actual = underTest.verify(tampered);
+
+        // Then
+        assertThat(actual).isEmpty();
+        assertThat(underTest.verify("not a token")).isEmpty();
+    }
+
+    @Test
+    void verifyIsTimedByOutcome() {
+        // Given
+        String token = underTest.issueToken("alex@gmail.com", "ROLE_USER");
+
+        // When
+        underTest.verify(token);
+        underTest.verify(token);
+        underTest.verify("not a token");
+
+        // Then
+        assertThat(meterRegistry.get("jwt.verify").tag("outcome", "valid").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("jwt.verify").tag("outcome", "invalid").timer().count()).isEqualTo(1);
+        // The second check of the token came from the cache
+        assertThat(meterRegistry.get("jwt.parse").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void isTokenValidChecksTheSubject() {
+        // Given
+        String token = underTest.issueToken("alex@gmail.com", "ROLE_USER");
+
+        // When / Then
+        assertThat(underTest.isTokenValid(token, "alex@gmail.com")).isTrue();
+        assertThat(underTest.isTokenValid(token, "jamila@gmail.com")).isFalse();
+    }
+}
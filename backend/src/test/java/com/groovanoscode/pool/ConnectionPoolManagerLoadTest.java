@@ -0,0 +1,94 @@
+package com.groovanoscode.pool;
+
+import com.groovanoscode.AbstractTestcontainers;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntPredicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The resize loop against a real pool: more clients than connections, each holding one for a slow query
+class ConnectionPoolManagerLoadTest extends AbstractTestcontainers {
+
+    private static final int MIN_SIZE = 2;
+    private static final int MAX_SIZE = 8;
+    private static final int CLIENTS = 16;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicBoolean loaded = new AtomicBoolean(true);
+
+    private HikariDataSource dataSource;
+    private ConnectionPoolManager underTest;
+    private ExecutorService clients;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(postgreSQLContainer.getJdbcUrl());
+        dataSource.setUsername(postgreSQLContainer.getUsername());
+        dataSource.setPassword(postgreSQLContainer.getPassword());
+        dataSource.setMinimumIdle(MIN_SIZE);
+        dataSource.setMaximumPoolSize(MIN_SIZE);
+        dataSource.setConnectionTimeout(5000);
+        // The hikaricp.connections.* metrics the manager reads
+        dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+
+        underTest = new ConnectionPoolManager(dataSource, meterRegistry, MIN_SIZE, MAX_SIZE, Duration.ofMillis(200));
+        underTest.afterPropertiesSet();
+        clients = Executors.newFixedThreadPool(CLIENTS);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        loaded.set(false);
+        clients.shutdownNow();
+        clients.awaitTermination(10, TimeUnit.SECONDS);
+        underTest.destroy();
+        dataSource.close();
+    }
+
+    @Test
+    void growsWhileThePoolIsSaturatedThenShrinksBack() throws InterruptedException {
+        // Given: every client runs 20 ms queries back to back, 8 times more clients than connections
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        for (int i = 0; i < CLIENTS; i++) {
+            clients.execute(() -> {
+                while (loaded.get()) {
+                    jdbcTemplate.execute("SELECT pg_sleep(0.02)");
+                }
+            });
+        }
+
+        // When / Then: the requests wait longer than they use a connection, the pool grows up to its max
+        int grown = awaitMaximumPoolSize(size -> size == MAX_SIZE);
+        assertThat(grown).isEqualTo(MAX_SIZE);
+        assertThat(meterRegistry.get("connection.pool.resizes").tag("direction", "up").counter().count()).isPositive();
+
+        // When / Then: without load nobody waits and no connection is busy, it shrinks back to its min
+        loaded.set(false);
+        int shrunk = awaitMaximumPoolSize(size -> size == MIN_SIZE);
+        assertThat(shrunk).isEqualTo(MIN_SIZE);
+        assertThat(meterRegistry.get("connection.pool.resizes").tag("direction", "down").counter().count()).isPositive();
+    }
+
+    private int awaitMaximumPoolSize(IntPredicate expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        int size = dataSource.getMaximumPoolSize();
+        while (!expected.test(size) && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+            size = dataSource.getMaximumPoolSize();
+        }
+        return size;
+    }
+}
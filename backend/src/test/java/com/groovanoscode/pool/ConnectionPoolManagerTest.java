@@ -0,0 +1,92 @@
+package com.groovanoscode.pool;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.health.Status;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MockitoExtension.class)
+class ConnectionPoolManagerTest {
+
+    @Mock
+    private DataSource dataSource;
+
+    private ConnectionPoolManager underTest;
+
+    @BeforeEach
+    void setUp() {
+        // Adjusted by hand
+        underTest = new ConnectionPoolManager(dataSource, new SimpleMeterRegistry(), 5, 30, Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.destroy();
+    }
+
+    @Test
+    void growsWhileRequestsWaitLongerThanTheyUseTheConnection() {
+        // Given: 4 ms per query with nobody waiting
+        underTest.nextSize(10, sample(0.1, 4, 6));
+
+        // When / Then
+        assertThat(underTest.nextSize(10, sample(12, 5, 10))).isEqualTo(12);
+        assertThat(underTest.nextSize(28, sample(12, 5, 28))).isEqualTo(30);
+        assertThat(underTest.nextSize(30, sample(12, 5, 30))).isEqualTo(30);
+    }
+
+    @Test
+    void doesNotGrowWhenTheDatabaseItselfSlowedDown() {
+        // Given
+        underTest.nextSize(10, sample(0.1, 4, 6));
+
+        // When: waiting, but every query now takes 20 ms instead of 4
+        int size = underTest.nextSize(10, sample(30, 20, 10));
+
+        // Then
+        assertThat(size).isEqualTo(10);
+    }
+
+    @Test
+    void shrinksWhileLessThanHalfOfThePoolIsBusy() {
+        assertThat(underTest.nextSize(10, sample(0.1, 4, 3))).isEqualTo(9);
+        assertThat(underTest.nextSize(5, sample(0.1, 4, 0.5))).isEqualTo(5);
+        assertThat(underTest.nextSize(10, sample(0.1, 4, 6))).isEqualTo(10);
+        // Waiting, though not long enough to grow
+        assertThat(underTest.nextSize(10, sample(3, 4, 3))).isEqualTo(10);
+        // Out of the bounds
+        assertThat(underTest.nextSize(50, sample(0.1, 4, 40))).isEqualTo(30);
+    }
+
+    @Test
+    void readinessIsDownWhileTheWaitIsAboveTheSlo() {
+        // Given
+        ConnectionPoolHealthIndicator health = new ConnectionPoolHealthIndicator(underTest, Duration.ofMillis(100));
+
+        // Then: nothing measured yet
+        assertThat(health.health().getStatus()).isEqualTo(Status.UP);
+
+        underTest.measured(sample(40, 4, 10));
+        assertThat(health.health().getStatus()).isEqualTo(Status.UP);
+
+        underTest.measured(sample(150, 4, 10));
+        assertThat(health.health().getStatus()).isEqualTo(Status.DOWN);
+        assertThat(health.health().getDetails()).containsEntry("meanWaitMs", 150.0);
+
+        underTest.measured(new ConnectionPoolManager.Sample(1000, 10, 4, 10, 2, 5));
+        assertThat(health.health().getStatus()).isEqualTo(Status.DOWN);
+    }
+
+    private static ConnectionPoolManager.Sample sample(double meanWaitMs, double meanUsageMs, double busyConnections) {
+        return new ConnectionPoolManager.Sample(1000, meanWaitMs, meanUsageMs, busyConnections, 0, 0);
+    }
+}
@@ -0,0 +1,99 @@
+package com.groovanoscode.replica;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import org.mockito.Mockito;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MockitoExtension.class)
+class ReplicaRoutingDataSourceTest {
+
+    private static final Duration MAX_LAG = Duration.ofSeconds(1);
+
+    @Mock
+    private DataSource primary;
+    @Mock
+    private DataSource first;
+    @Mock
+    private DataSource second;
+    @Mock
+    private Connection primaryConnection;
+    @Mock
+    private Connection firstConnection;
+    @Mock
+    private Connection secondConnection;
+
+    private Replica firstReplica;
+    private Replica secondReplica;
+    private ReplicaRoutingDataSource underTest;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        Mockito.lenient().when(primary.getConnection()).thenReturn(primaryConnection);
+        Mockito.lenient().when(first.getConnection()).thenReturn(firstConnection);
+        Mockito.lenient().when(second.getConnection()).thenReturn(secondConnection);
+        firstReplica = new Replica("replica-1", first);
+        secondReplica = new Replica("replica-2", second);
+        underTest = new ReplicaRoutingDataSource(primary, List.of(firstReplica, secondReplica));
+    }
+
+    @Test
+    void replicasAreOnlyUsedForReadsOnceInSync() {
+        // Not checked yet
+        assertThat(ReplicaRoutingDataSource.onReplica(underTest::determineCurrentLookupKey))
+                .isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+
+        // When
+        firstReplica.updateLag(0, MAX_LAG);
+        secondReplica.updateLag(0.5, MAX_LAG);
+
+        // Then: in turn
+        assertThat(List.of(
+                ReplicaRoutingDataSource.onReplica(underTest::determineCurrentLookupKey),
+                ReplicaRoutingDataSource.onReplica(underTest::determineCurrentLookupKey)))
+                .containsExactlyInAnyOrder("replica-1", "replica-2");
+        assertThat(underTest.determineCurrentLookupKey()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+        assertThat(connection()).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void laggingAndUnreachableReplicasAreLeftOut() {
+        // Given
+        firstReplica.updateLag(0, MAX_LAG);
+        secondReplica.updateLag(0, MAX_LAG);
+
+        // When
+        boolean changed = firstReplica.updateLag(3, MAX_LAG);
+
+        // Then
+        assertThat(changed).isTrue();
+        for (int i = 0; i < 3; i++) {
+            assertThat(ReplicaRoutingDataSource.onReplica(this::connection)).isSameAs(secondConnection);
+        }
+
+        // When: the second cannot be reached either
+        secondReplica.updateLag(Double.NaN, MAX_LAG);
+
+        // Then
+        assertThat(ReplicaRoutingDataSource.onReplica(this::connection)).isSameAs(primaryConnection);
+    }
+
+    private Connection connection() {
+        try {
+            return underTest.getConnection();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.groovanoscode.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MeteredBCryptPasswordEncoderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MeteredBCryptPasswordEncoder underTest = new MeteredBCryptPasswordEncoder(5, meterRegistry);
+
+    @Test
+    void encodeAndMatchesAreTimed() {
+        // When
+        String hash = underTest.encode("password");
+
+        // Then
+        assertThat(underTest.matches("password", hash)).isTrue();
+        assertThat(meterRegistry.get("password.hash").tag("operation", "encode").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("password.hash").tag("operation", "matches").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void upgradeEncodingWhenTheCostChanged() {
+        // Given
+        String sameCost = underTest.encode("password");
+        String lowerCost = new BCryptPasswordEncoder(4).encode("password");
+        String higherCost = new BCryptPasswordEncoder(6).encode("password");
+
+        // When / Then
+        assertThat(underTest.upgradeEncoding(sameCost)).isFalse();
+        assertThat(underTest.upgradeEncoding(lowerCost)).isTrue();
+        assertThat(underTest.upgradeEncoding(higherCost)).isTrue();
+        assertThat(underTest.upgradeEncoding("not a bcrypt hash")).isFalse();
+    }
+}
@@ -0,0 +1,88 @@
+package com.groovanoscode.security;
+
+import com.groovanoscode.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PasswordHashingExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PasswordHashingExecutor underTest = new PasswordHashingExecutor(meterRegistry, 1, 1);
+
+    @AfterEach
+    void tearDown() {
+        underTest.destroy();
+    }
+
+    @Test
+    void submitRunsTheTaskOnAHashingThread() {
+        // When
+        String actual = underTest.submit(() -> Thread.currentThread().getName()).join();
+
+        // Then
+        assertThat(actual).startsWith("login-hashing-");
+    }
+
+    @Test
+    void submitFailsFastWhenTheQueueIsFull() throws InterruptedException {
+        // Given: one task running and one waiting
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> running = underTest.submit(() -> {
+            started.countDown();
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        started.await();
+        CompletableFuture<String> queued = underTest.submit(() -> "queued");
+
+        // When / Then
+        assertThat(meterRegistry.get("password.hashing.queue.depth").gauge().value()).isEqualTo(1);
+        assertThatThrownBy(() -> underTest.submit(() -> "rejected"))
+                .isInstanceOf(ServiceUnavailableException.class);
+        assertThat(meterRegistry.get("password.hashing.rejected").counter().count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.join()).isTrue();
+        assertThat(queued.join()).isEqualTo("queued");
+    }
+
+    @Test
+    void submitOrRunRunsTheTaskInTheCallingThreadWhenTheQueueIsFull() throws InterruptedException {
+        // Given: one task running and one waiting
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> running = underTest.submit(() -> {
+            started.countDown();
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        started.await();
+        CompletableFuture<String> queued = underTest.submit(() -> "queued");
+
+        // When
+        String actual = underTest.submitOrRun(() -> Thread.currentThread().getName()).join();
+
+        // Then
+        assertThat(actual).isEqualTo(Thread.currentThread().getName());
+        assertThat(meterRegistry.get("password.hashing.rejected").counter().count()).isZero();
+
+        release.countDown();
+        assertThat(running.join()).isTrue();
+        assertThat(queued.join()).isEqualTo("queued");
+    }
+}
@@ -0,0 +1,22 @@
+package com.groovanoscode.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SecurityFilterChainConfigTest {
+
+    @Test
+    void adminEmailsAreTrimmedAndInLowerCase() {
+        // Given: admin.emails as Spring splits it
+        List<String> emails = List.of("alex@gmail.com", " Jamila@Gmail.com", "");
+
+        // When
+        var actual = SecurityFilterChainConfig.normalizeEmails(emails);
+
+        // Then
+        assertThat(actual).containsExactlyInAnyOrder("alex@gmail.com", "jamila@gmail.com");
+    }
+}
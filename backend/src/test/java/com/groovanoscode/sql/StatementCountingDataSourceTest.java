@@ -0,0 +1,135 @@
+package com.groovanoscode.sql;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MockitoExtension.class)
+class StatementCountingDataSourceTest {
+
+    @Mock
+    private DataSource dataSource;
+    @Mock
+    private Connection connection;
+    @Mock
+    private PreparedStatement preparedStatement;
+    @Mock
+    private ResultSet resultSet;
+
+    // Every statement is slow, so they all end up in the buffer
+    private final SqlStatementLog sqlStatementLog = new SqlStatementLog(Duration.ZERO, 2);
+
+    private StatementCountingDataSource underTest;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        Mockito.when(dataSource.getConnection()).thenReturn(connection);
+        underTest = new StatementCountingDataSource(dataSource, sqlStatementLog);
+    }
+
+    @Test
+    void queriesAreRecordedWithTheirParametersAndRowsWhenClosed() throws SQLException {
+        // Given
+        String sql = """
+                SELECT id, name
+                FROM customer
+                WHERE id = ? AND email = ?
+                """;
+        Mockito.when(connection.prepareStatement(sql)).thenReturn(preparedStatement);
+        Mockito.when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        Mockito.when(resultSet.next()).thenReturn(true, true, false);
+
+        // When
+        try (SqlStatementCounter counter = SqlStatementCounter.start(() -> "GET /api/v1/customers/{customerId}");
+             Connection connection = underTest.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, 1);
+            statement.setNull(2, Types.VARCHAR);
+            ResultSet rows = statement.executeQuery();
+            while (rows.next()) {
+                rows.getInt(1);
+            }
+            assertThat(sqlStatementLog.slowStatements()).isEmpty();
+            rows.close();
+
+            // Then
+            assertThat(counter.statements()).isEqualTo(1);
+        }
+        assertThat(sqlStatementLog.slowStatements()).singleElement().satisfies(slow -> {
+            assertThat(slow.sql()).isEqualTo("SELECT id, name FROM customer WHERE id = ? AND email = ?");
+            assertThat(slow.parameters()).isEqualTo("[Int, null]");
+            assertThat(slow.rows()).isEqualTo(2);
+            assertThat(slow.route()).isEqualTo("GET /api/v1/customers/{customerId}");
+        });
+    }
+
+    @Test
+    void batchesAreOneStatementWithTheSumOfTheirUpdateCounts() throws SQLException {
+        // Given
+        String sql = "UPDATE customer SET gender = ? WHERE id = ?";
+        Mockito.when(connection.prepareStatement(sql)).thenReturn(preparedStatement);
+        Mockito.when(preparedStatement.executeBatch()).thenReturn(new int[]{1, 1, PreparedStatement.SUCCESS_NO_INFO});
+
+        // When
+        try (Connection connection = underTest.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int id = 1; id <= 3; id++) {
+                statement.setObject(1, "MALE");
+                statement.setInt(2, id);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+
+        // Then
+        assertThat(sqlStatementLog.slowStatements()).singleElement().satisfies(slow -> {
+            assertThat(slow.parameters()).isEqualTo("3 x [String, Int]");
+            assertThat(slow.rows()).isEqualTo(2);
+            assertThat(slow.route()).isNull();
+        });
+    }
+
+    @Test
+    void theSameStatementInALoopIsRepeated() throws SQLException {
+        // Given
+        Mockito.when(connection.prepareStatement(Mockito.anyString())).thenReturn(preparedStatement);
+        Mockito.when(preparedStatement.executeUpdate()).thenReturn(1);
+
+        // When
+        try (SqlStatementCounter counter = SqlStatementCounter.start();
+             Connection connection = underTest.getConnection()) {
+            for (int id = 1; id <= 3; id++) {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "DELETE FROM customer WHERE id IN (" + "?, ".repeat(id) + "?)")) {
+                    statement.executeUpdate();
+                }
+            }
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM batch_job_checkpoint")) {
+                statement.executeUpdate();
+            }
+
+            // Then
+            assertThat(counter.statements()).isEqualTo(4);
+            assertThat(counter.repeatedStatements(3))
+                    .isEqualTo(Map.of("DELETE FROM customer WHERE id IN (?...)", 3));
+        }
+        // Only the last two are kept, newest first
+        assertThat(sqlStatementLog.slowStatements())
+                .extracting(SlowSqlStatement::sql)
+                .containsExactly("DELETE FROM batch_job_checkpoint", "DELETE FROM customer WHERE id IN (?...)");
+    }
+}
@@ -0,0 +1,37 @@
+package com.groovanoscode.threads;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class VirtualThreadsTest {
+
+    @Test
+    void runsTasksOnVirtualThreads() throws Exception {
+        assumeTrue(VirtualThreads.isSupported());
+
+        // Given
+        ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+
+        // When
+        Object virtual = executor.submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread())).get();
+
+        // Then
+        assertThat(virtual).isEqualTo(true);
+        executor.shutdown();
+    }
+
+    @Test
+    void failsWithAClearMessageBeforeJava21() {
+        assumeFalse(VirtualThreads.isSupported());
+
+        assertThatThrownBy(VirtualThreads::newVirtualThreadPerTaskExecutor)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("needs Java 21");
+    }
+}